@@ -36,6 +36,7 @@ import org.eclipse.jetty.util.AttributesMap;
 import org.eclipse.jetty.util.component.AggregateLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.HashedWheelTimeout;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ThreadPool;
 import org.eclipse.jetty.util.thread.Timeout;
@@ -81,8 +82,8 @@ public class HttpClient extends HttpBuffers implements Attributes, Dumpable
     private long _idleTimeout = 20000;
     private long _timeout = 320000;
     private int _connectTimeout = 75000;
-    private Timeout _timeoutQ = new Timeout();
-    private Timeout _idleTimeoutQ = new Timeout();
+    private Timeout _timeoutQ = new HashedWheelTimeout();
+    private Timeout _idleTimeoutQ = new HashedWheelTimeout();
     private Address _proxy;
     private Authentication _proxyAuthentication;
     private Set<String> _noProxy;
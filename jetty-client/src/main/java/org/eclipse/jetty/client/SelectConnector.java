@@ -323,6 +323,14 @@ class SelectConnector extends AbstractLifeCycle implements HttpClient.Connector
                 return plainEndPoint.flush(header, buffer, trailer);
         }
 
+        public int flush(Buffer[] buffers) throws IOException
+        {
+            if (upgraded)
+                return super.flush(buffers);
+            else
+                return plainEndPoint.flush(buffers);
+        }
+
         public String getLocalAddr()
         {
             if (upgraded)
@@ -21,6 +21,7 @@ import org.eclipse.jetty.io.ByteArrayBuffer;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.io.View;
+import org.eclipse.jetty.io.nio.FileRegionBuffer;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
@@ -70,6 +71,13 @@ public abstract class AbstractGenerator implements Generator
     protected Buffer _content; // Buffer passed to addContent
     
     protected Buffer _date;
+    protected StaticHttpFields _staticFields;
+
+    protected int _pipelineSize;
+    protected long _pipelineDelay;
+    protected boolean _pipelined;
+    protected Buffer _pipeline; // Buffer for completed messages held back
+    protected long _pipelineStart;
     
     private boolean _sendServerVersion;
 
@@ -124,12 +132,15 @@ public abstract class AbstractGenerator implements Generator
             if (_header!=null)
                 _buffers.returnBuffer(_header);
             _header=null;
+            returnPipelineBuffer();
         }
         else if (_header != null) 
             _header.clear();
 
+        closeContent();
         _content = null;
         _method=null;
+        _pipelined=false;
     }
 
     /* ------------------------------------------------------------------------------- */
@@ -146,6 +157,22 @@ public abstract class AbstractGenerator implements Generator
             _buffers.returnBuffer(_header);
             _header=null;
         }         
+
+        returnPipelineBuffer();
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * Return the buffer for messages held back if it is empty. A buffer that still
+     * holds messages is kept until they are written by {@link #flushPipelined()}.
+     */
+    private void returnPipelineBuffer()
+    {
+        if (_pipeline!=null && _pipeline.length()==0)
+        {
+            _buffers.returnBuffer(_pipeline);
+            _pipeline=null;
+        }
     }
     
     /* ------------------------------------------------------------------------------- */
@@ -158,11 +185,23 @@ public abstract class AbstractGenerator implements Generator
         _persistent=null;
         _contentWritten = 0;
         _contentLength = HttpTokens.UNKNOWN_CONTENT;
+        closeContent();
         _content=null;
         if (_buffer!=null)
             _buffer.clear();  
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Close the file of content passed as a {@link FileRegionBuffer}, which
+     * is otherwise only closed once all of it has been written.
+     */
+    protected void closeContent()
+    {
+        if (_content instanceof FileRegionBuffer)
+            ((FileRegionBuffer)_content).close();
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * @return Returns the contentBufferSize.
@@ -313,6 +352,57 @@ public abstract class AbstractGenerator implements Generator
         _date=timeStampBuffer;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @see org.eclipse.jetty.http.Generator#setStaticFields(org.eclipse.jetty.http.StaticHttpFields)
+     */
+    public void setStaticFields(StaticHttpFields fields)
+    {
+        _staticFields=fields;
+    }
+
+    /* ------------------------------------------------------------ */
+    public StaticHttpFields getStaticFields()
+    {
+        return _staticFields;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @see org.eclipse.jetty.http.Generator#setPipelineBuffer(int, long)
+     */
+    public void setPipelineBuffer(int size, long maxDelay)
+    {
+        _pipelineSize=size;
+        _pipelineDelay=maxDelay;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @see org.eclipse.jetty.http.Generator#setPipelined(boolean)
+     */
+    public void setPipelined(boolean pipelined)
+    {
+        _pipelined=pipelined;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @see org.eclipse.jetty.http.Generator#flushPipelined()
+     */
+    public boolean flushPipelined() throws IOException
+    {
+        if (_pipeline==null)
+            return true;
+        if (_pipeline.length()>0)
+            _endp.flush(_pipeline);
+        if (_pipeline.length()>0)
+            return false;
+        _buffers.returnBuffer(_pipeline);
+        _pipeline=null;
+        return true;
+    }
+
     /* ------------------------------------------------------------ */
     /**
      */
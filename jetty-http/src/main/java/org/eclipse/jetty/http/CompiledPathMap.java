@@ -0,0 +1,390 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.http;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.util.LazyList;
+
+/* ------------------------------------------------------------ */
+/** Immutable, compiled form of a {@link PathMap}.
+ * <p>
+ * The path specifications of a PathMap are compiled into a hash of the
+ * exact paths, a trie of path segments for the prefix specifications and
+ * a hash of the extensions of the suffix specifications. A match takes a
+ * single pass over the path for each kind of specification and allocates
+ * nothing, whereas {@link PathMap#getMatch(String)} looks up every
+ * leading part of the path in turn.
+ * <p>
+ * The matches are the same {@link PathMap.Entry} instances, in the same order,
+ * as those of the PathMap at the time it was compiled. Later changes to the
+ * PathMap are not seen by the compiled map.
+ */
+public class CompiledPathMap
+{
+    private final Map<String,PathMap.Entry> _exact;
+    private final Node _prefixes=new Node();
+    private final Table _suffixes;
+    private final PathMap.Entry _prefixDefault;
+    private final PathMap.Entry _default;
+    private final String _string;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param map The path map to compile
+     */
+    public CompiledPathMap(PathMap map)
+    {
+        _exact=new HashMap<String,PathMap.Entry>(map._exactMap.size()*2);
+        for (Iterator i=map._exactMap.entrySet().iterator();i.hasNext();)
+        {
+            Map.Entry e=(Map.Entry)i.next();
+            _exact.put((String)e.getKey(),(PathMap.Entry)e.getValue());
+        }
+
+        for (Iterator i=map._prefixMap.entrySet().iterator();i.hasNext();)
+        {
+            Map.Entry e=(Map.Entry)i.next();
+            String mapped=(String)e.getKey();
+            Node node=_prefixes;
+            int s=1;
+            while (s<=mapped.length())
+            {
+                int e2=mapped.indexOf('/',s);
+                if (e2<0)
+                    e2=mapped.length();
+                node=node.add(mapped.substring(s,e2));
+                s=e2+1;
+            }
+            node._entry=(PathMap.Entry)e.getValue();
+        }
+
+        _suffixes=new Table(map._suffixMap.size());
+        for (Iterator i=map._suffixMap.entrySet().iterator();i.hasNext();)
+        {
+            Map.Entry e=(Map.Entry)i.next();
+            String extension=(String)e.getKey();
+            int hash=0;
+            for (int c=extension.length();c-->0;)
+                hash=31*hash+extension.charAt(c);
+            _suffixes.put(extension,hash,e.getValue());
+        }
+
+        _prefixDefault=map._prefixDefault;
+        _default=map._default;
+        _string=map.toString();
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Get object matched by the path.
+     * @param path the path.
+     * @return Best matched object or null.
+     */
+    public Object match(String path)
+    {
+        PathMap.Entry entry=getMatch(path);
+        if (entry!=null)
+            return entry.getValue();
+        return null;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Get the entry mapped by the best specification.
+     * @param path the path.
+     * @return Map.Entry of the best matched  or null.
+     */
+    public PathMap.Entry getMatch(String path)
+    {
+        if (path==null)
+            return null;
+
+        PathMap.Entry entry=_exact.get(path);
+        if (entry!=null)
+            return entry;
+
+        entry=prefixMatch(path);
+        if (entry!=null)
+            return entry;
+
+        if (_prefixDefault!=null)
+            return _prefixDefault;
+
+        entry=suffixMatch(path);
+        if (entry!=null)
+            return entry;
+
+        return _default;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Get all entries matched by the path.
+     * Best match first.
+     * @param path Path to match
+     * @return List of Map.Entry instances key=pathSpec
+     */
+    public List getMatches(String path)
+    {
+        Object entries=null;
+        if (path!=null)
+        {
+            PathMap.Entry entry=_exact.get(path);
+            if (entry!=null)
+                entries=LazyList.add(entries,entry);
+
+            // The prefix matches, longest first. A trailing '/' is an exact match.
+            Object prefixes=null;
+            if (path.length()>0 && path.charAt(0)=='/')
+            {
+                Node node=_prefixes;
+                int s=1;
+                int e;
+                while (node!=null && (e=path.indexOf('/',s))>=0 && e<path.length()-1)
+                {
+                    node=node.get(path,s,e);
+                    if (node!=null && node._entry!=null)
+                        prefixes=LazyList.add(prefixes,0,node._entry);
+                    s=e+1;
+                }
+            }
+            for (int i=0;i<LazyList.size(prefixes);i++)
+                entries=LazyList.add(entries,LazyList.get(prefixes,i));
+
+            if (_prefixDefault!=null)
+                entries=LazyList.add(entries,_prefixDefault);
+
+            int i=0;
+            while ((i=path.indexOf('.',i+1))>0)
+            {
+                entry=(PathMap.Entry)_suffixes.get(path,i+1,path.length(),hashSuffix(path,i+1));
+                if (entry!=null)
+                    entries=LazyList.add(entries,entry);
+            }
+        }
+
+        if (_default!=null)
+            entries=LazyList.add(entries,_default);
+
+        return LazyList.getList(entries);
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Return whether the path matches any entries in the PathMap,
+     * excluding the default entry
+     * @param path Path to match
+     * @return Whether the PathMap contains any entries that match this
+     */
+    public boolean containsMatch(String path)
+    {
+        PathMap.Entry match=getMatch(path);
+        return match!=null && !match.equals(_default);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Walk the segment trie along the path. A prefix specification matches
+     * if its last segment is followed by a '/' in the path; a path equal to
+     * the specification without the "/*" is an exact match.
+     */
+    private PathMap.Entry prefixMatch(String path)
+    {
+        int l=path.length();
+        if (l==0 || path.charAt(0)!='/' || _prefixes._children==null)
+            return null;
+
+        PathMap.Entry best=null;
+        Node node=_prefixes;
+        int s=1;
+        while (node._children!=null)
+        {
+            int hash=0;
+            int e=s;
+            char c=0;
+            while (e<l && (c=path.charAt(e))!='/')
+            {
+                hash=31*hash+c;
+                e++;
+            }
+            if (e==l)
+                break;
+
+            node=(Node)node._children.get(path,s,e,hash);
+            if (node==null)
+                break;
+            if (node._entry!=null)
+                best=node._entry;
+            s=e+1;
+        }
+        return best;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Scan the path from the end, checking the suffix after each '.' so
+     * that the last one found is the longest.
+     */
+    private PathMap.Entry suffixMatch(String path)
+    {
+        if (_suffixes.size()==0)
+            return null;
+
+        PathMap.Entry best=null;
+        int l=path.length();
+        int hash=0;
+        for (int i=l;i-->1;)
+        {
+            char c=path.charAt(i);
+            if (c=='.')
+            {
+                PathMap.Entry entry=(PathMap.Entry)_suffixes.get(path,i+1,l,hash);
+                if (entry!=null)
+                    best=entry;
+            }
+            hash=31*hash+c;
+        }
+        return best;
+    }
+
+    /* ------------------------------------------------------------ */
+    private static int hashSuffix(String path, int start)
+    {
+        int hash=0;
+        for (int i=path.length();i-->start;)
+            hash=31*hash+path.charAt(i);
+        return hash;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return _string;
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    private static class Node
+    {
+        private Table _children;
+        private PathMap.Entry _entry;
+
+        Node add(String segment)
+        {
+            int hash=segment.hashCode();
+            if (_children==null)
+                _children=new Table(4);
+            Node node=(Node)_children.get(segment,0,segment.length(),hash);
+            if (node==null)
+            {
+                node=new Node();
+                _children.put(segment,hash,node);
+            }
+            return node;
+        }
+
+        Node get(String path, int start, int end)
+        {
+            if (_children==null)
+                return null;
+            int hash=0;
+            for (int i=start;i<end;i++)
+                hash=31*hash+path.charAt(i);
+            return (Node)_children.get(path,start,end,hash);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /**
+     * Open addressed hash of strings that is looked up with a region of
+     * another string and a hash of that region that the caller computes
+     * while scanning it.
+     */
+    private static class Table
+    {
+        private String[] _keys;
+        private int[] _hashes;
+        private Object[] _values;
+        private int _size;
+
+        Table(int capacity)
+        {
+            int size=4;
+            while (size<capacity*2)
+                size<<=1;
+            _keys=new String[size];
+            _hashes=new int[size];
+            _values=new Object[size];
+        }
+
+        int size()
+        {
+            return _size;
+        }
+
+        Object get(String s, int start, int end, int hash)
+        {
+            int mask=_keys.length-1;
+            int length=end-start;
+            for (int i=spread(hash)&mask;;i=(i+1)&mask)
+            {
+                String key=_keys[i];
+                if (key==null)
+                    return null;
+                if (_hashes[i]==hash && key.length()==length && s.regionMatches(start,key,0,length))
+                    return _values[i];
+            }
+        }
+
+        void put(String key, int hash, Object value)
+        {
+            if ((_size+1)*2>_keys.length)
+            {
+                String[] keys=_keys;
+                int[] hashes=_hashes;
+                Object[] values=_values;
+                _keys=new String[keys.length*2];
+                _hashes=new int[keys.length*2];
+                _values=new Object[keys.length*2];
+                _size=0;
+                for (int i=0;i<keys.length;i++)
+                    if (keys[i]!=null)
+                        put(keys[i],hashes[i],values[i]);
+            }
+
+            int mask=_keys.length-1;
+            int i=spread(hash)&mask;
+            while (_keys[i]!=null)
+            {
+                if (_hashes[i]==hash && _keys[i].equals(key))
+                {
+                    _values[i]=value;
+                    return;
+                }
+                i=(i+1)&mask;
+            }
+            _keys[i]=key;
+            _hashes[i]=hash;
+            _values[i]=value;
+            _size++;
+        }
+
+        private static int spread(int hash)
+        {
+            return hash^(hash>>>16);
+        }
+    }
+}
@@ -96,6 +96,32 @@ public interface Generator
     void setPersistent(boolean persistent);
 
     void setDate(Buffer timeStampBuffer);
+
+    /**
+     * @param fields Fields to send with every message unless the message has a field of the same name, or null
+     */
+    void setStaticFields(StaticHttpFields fields);
+
+    /**
+     * Set how completed messages are held back while more requests have already been received,
+     * so that the responses to pipelined requests are written together.
+     * @param size The maximum number of bytes held back, or 0 to write every message as it completes
+     * @param maxDelay The maximum time in ms a message is held back
+     */
+    void setPipelineBuffer(int size, long maxDelay);
+
+    /**
+     * @param pipelined True if the message being completed may be held back because
+     * more requests have already been received
+     */
+    void setPipelined(boolean pipelined);
+
+    /**
+     * Write the messages that have been held back.
+     * @return True if no messages remain held back
+     * @throws IOException
+     */
+    boolean flushPipelined() throws IOException;
     
 
 }
@@ -15,6 +15,8 @@ package org.eclipse.jetty.http;
 
 import org.eclipse.jetty.io.Buffers;
 import org.eclipse.jetty.io.BuffersFactory;
+import org.eclipse.jetty.io.nio.SlabAllocator;
+import org.eclipse.jetty.io.nio.SlabBuffers;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 
 /* ------------------------------------------------------------ */
@@ -29,6 +31,8 @@ public class HttpBuffers extends AbstractLifeCycle
     private int _responseBufferSize=32*1024;
     private int _responseHeaderSize=6*1024;
     private int _maxBuffers=1024;
+    private long _maxBufferMemory=-1;
+    private SlabAllocator _slabAllocator;
     
     private Buffers.Type _requestBufferType=Buffers.Type.BYTE_ARRAY;
     private Buffers.Type _requestHeaderType=Buffers.Type.BYTE_ARRAY;
@@ -192,8 +196,16 @@ public class HttpBuffers extends AbstractLifeCycle
     protected void doStart()
         throws Exception
     {
-        _requestBuffers=BuffersFactory.newBuffers(_requestHeaderType,_requestHeaderSize,_requestBufferType,_requestBufferSize,_requestBufferType,getMaxBuffers());
-        _responseBuffers=BuffersFactory.newBuffers(_responseHeaderType,_responseHeaderSize,_responseBufferType,_responseBufferSize,_responseBufferType,getMaxBuffers());
+        if (_slabAllocator!=null)
+        {
+            _requestBuffers=new SlabBuffers(_slabAllocator,_requestHeaderSize,_requestBufferSize);
+            _responseBuffers=new SlabBuffers(_slabAllocator,_responseHeaderSize,_responseBufferSize);
+        }
+        else
+        {
+            _requestBuffers=BuffersFactory.newBuffers(_requestHeaderType,_requestHeaderSize,_requestBufferType,_requestBufferSize,_requestBufferType,getMaxBuffers(),getMaxBufferMemory());
+            _responseBuffers=BuffersFactory.newBuffers(_responseHeaderType,_responseHeaderSize,_responseBufferType,_responseBufferSize,_responseBufferType,getMaxBuffers(),getMaxBufferMemory());
+        }
         super.doStart();
     }
     
@@ -225,5 +237,39 @@ public class HttpBuffers extends AbstractLifeCycle
     {
         return _maxBuffers;
     }
+
+    /**
+     * @return the maximum bytes retained by each of the request and response buffer pools, or -1 if not bounded by memory
+     */
+    public long getMaxBufferMemory()
+    {
+        return _maxBufferMemory;
+    }
+
+    /**
+     * @param maxBufferMemory If greater than zero, the request and response buffers are
+     * pooled by a {@link org.eclipse.jetty.io.StripedBuffers} that retains at most this many bytes each.
+     */
+    public void setMaxBufferMemory(long maxBufferMemory)
+    {
+        _maxBufferMemory = maxBufferMemory;
+    }
+
+    /**
+     * @return the slab allocator of direct buffers, or null if buffers are not allocated from slabs
+     */
+    public SlabAllocator getSlabAllocator()
+    {
+        return _slabAllocator;
+    }
+
+    /**
+     * @param slabAllocator If not null, all request and response buffers are direct
+     * buffers allocated from this slab allocator, regardless of the configured buffer types.
+     */
+    public void setSlabAllocator(SlabAllocator slabAllocator)
+    {
+        _slabAllocator = slabAllocator;
+    }
     
 }
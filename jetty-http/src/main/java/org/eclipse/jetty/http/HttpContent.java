@@ -13,11 +13,15 @@
 
 package org.eclipse.jetty.http;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
 import org.eclipse.jetty.io.Buffer;
 import org.eclipse.jetty.io.ByteArrayBuffer;
+import org.eclipse.jetty.io.nio.FileRegionBuffer;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.resource.Resource;
 
 /* ------------------------------------------------------------ */
@@ -31,6 +35,7 @@ public interface HttpContent
     Buffer getLastModified();
     Buffer getIndirectBuffer();
     Buffer getDirectBuffer();
+    Buffer getFileBuffer();
     Resource getResource();
     long getContentLength();
     InputStream getInputStream() throws IOException;
@@ -41,6 +46,8 @@ public interface HttpContent
     /* ------------------------------------------------------------ */
     public class ResourceAsHttpContent implements HttpContent
     {
+        private static final Logger LOG = Log.getLogger(ResourceAsHttpContent.class);
+
         final Resource _resource;
         final Buffer _mimeType;
         final int _maxBuffer;
@@ -94,6 +101,23 @@ public interface HttpContent
             }
         }
 
+        /* ------------------------------------------------------------ */
+        public Buffer getFileBuffer()
+        {
+            try
+            {
+                File file=_resource.getFile();
+                if (file==null || _resource.length()<=0 || _resource.length()>Integer.MAX_VALUE)
+                    return null;
+                return new FileRegionBuffer(file);
+            }
+            catch(IOException e)
+            {
+                LOG.warn(e);
+                return null;
+            }
+        }
+
         /* ------------------------------------------------------------ */
         public long getContentLength()
         {
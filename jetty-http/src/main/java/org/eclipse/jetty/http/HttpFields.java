@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -292,8 +293,15 @@ public class HttpFields
     public final static String __01Jan1970_COOKIE = formatCookieDate(0).trim();
 
     /* -------------------------------------------------------------- */
-    private final ArrayList<Field> _fields = new ArrayList<Field>(20);
-    private final HashMap<Buffer,Field> _names = new HashMap<Buffer,Field>(32);
+    // The fields in the order added. Fields from before the last clear() are
+    // kept after _size and recycled, so steady state reuse does not allocate.
+    private Field[] _fields = new Field[20];
+    private int _size;
+    // The first field of each name, by ordinal for known names and in an open
+    // addressed table with linear probing by name hash for other names.
+    private final Field[] _known = new Field[HttpHeaders.X_FORWARDED_HOST_ORDINAL+1];
+    private Field[] _unknown = new Field[16];
+    private int _unknownNames;
     private final int _maxCookieVersion;
     
     /* ------------------------------------------------------------ */
@@ -354,25 +362,20 @@ public class HttpFields
      */
     public Enumeration<String> getFieldNames()
     {
-        final Enumeration<?> buffers = Collections.enumeration(_names.keySet());
-        return new Enumeration<String>()
+        List<String> names = new ArrayList<String>(_size);
+        for (int i=0;i<_size;i++)
         {
-            public String nextElement()
-            {
-                return buffers.nextElement().toString();
-            }
-            
-            public boolean hasMoreElements()
-            {
-                return buffers.hasMoreElements();
-            }
-        }; 
+            Field field=_fields[i];
+            if (getIndexed(field._name)==field)
+                names.add(field._name.toString());
+        }
+        return Collections.enumeration(names);
     }
     
     /* ------------------------------------------------------------ */
     public int size()
     {
-        return _fields.size();
+        return _size;
     }
     
     /* ------------------------------------------------------------ */
@@ -383,31 +386,179 @@ public class HttpFields
      */
     public Field getField(int i)
     {
-        return _fields.get(i);
+        if (i<0 || i>=_size)
+            throw new IndexOutOfBoundsException("Index: "+i+", Size: "+_size);
+        return _fields[i];
     }
 
     /* ------------------------------------------------------------ */
     private Field getField(String name)
     {
-        return _names.get(HttpHeaders.CACHE.lookup(name));
+        return getIndexed(HttpHeaders.CACHE.lookup(name));
     }
 
     /* ------------------------------------------------------------ */
     private Field getField(Buffer name)
     {
-        return _names.get(HttpHeaders.CACHE.lookup(name));
+        return getIndexed(HttpHeaders.CACHE.lookup(name));
     }
 
     /* ------------------------------------------------------------ */
     public boolean containsKey(Buffer name)
     {
-        return _names.containsKey(HttpHeaders.CACHE.lookup(name));
+        return getField(name)!=null;
     }
 
     /* ------------------------------------------------------------ */
     public boolean containsKey(String name)
     {
-        return _names.containsKey(HttpHeaders.CACHE.lookup(name));
+        return getField(name)!=null;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The ordinal of a looked up name if it indexes {@link #_known}, else -1
+     */
+    private int knownOrdinal(Buffer name)
+    {
+        if (name instanceof CachedBuffer)
+        {
+            int ordinal=((CachedBuffer)name).getOrdinal();
+            if (ordinal<_known.length)
+                return ordinal;
+        }
+        return -1;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param name A looked up name
+     * @return The first field of the name or null
+     */
+    private Field getIndexed(Buffer name)
+    {
+        int ordinal=knownOrdinal(name);
+        if (ordinal>=0)
+            return _known[ordinal];
+        if (_unknownNames==0)
+            return null;
+
+        int mask=_unknown.length-1;
+        int i=name.hashCode()&mask;
+        Field field;
+        while ((field=_unknown[i])!=null)
+        {
+            if (field._name.equalsIgnoreCase(name))
+                return field;
+            i=(i+1)&mask;
+        }
+        return null;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the first field of a name.
+     * @param name A looked up name
+     * @param field The first field of the name, or null to remove the name
+     */
+    private void setIndexed(Buffer name, Field field)
+    {
+        int ordinal=knownOrdinal(name);
+        if (ordinal>=0)
+        {
+            _known[ordinal]=field;
+            return;
+        }
+
+        int mask=_unknown.length-1;
+        int i=name.hashCode()&mask;
+        Field f;
+        while ((f=_unknown[i])!=null)
+        {
+            if (f._name.equalsIgnoreCase(name))
+                break;
+            i=(i+1)&mask;
+        }
+
+        if (field!=null)
+        {
+            _unknown[i]=field;
+            if (f==null && ++_unknownNames*2>_unknown.length)
+            {
+                Field[] unknown=_unknown;
+                _unknown=new Field[unknown.length*2];
+                mask=_unknown.length-1;
+                for (Field u : unknown)
+                {
+                    if (u!=null)
+                    {
+                        int j=u._name.hashCode()&mask;
+                        while (_unknown[j]!=null)
+                            j=(j+1)&mask;
+                        _unknown[j]=u;
+                    }
+                }
+            }
+        }
+        else if (f!=null)
+        {
+            // Shift back the following fields that probed past the removed slot
+            _unknown[i]=null;
+            _unknownNames--;
+            int j=i;
+            while (true)
+            {
+                j=(j+1)&mask;
+                Field next=_unknown[j];
+                if (next==null)
+                    break;
+                int k=next._name.hashCode()&mask;
+                if (i<=j?(i<k && k<=j):(i<k || k<=j))
+                    continue;
+                _unknown[i]=next;
+                _unknown[j]=null;
+                i=j;
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Append a field, recycling a field from before the last {@link #clear()} if there is one.
+     */
+    private Field newField(Buffer name, Buffer value)
+    {
+        if (_size==_fields.length)
+        {
+            Field[] fields=new Field[_size*2];
+            System.arraycopy(_fields,0,fields,0,_size);
+            _fields=fields;
+        }
+        Field field=_fields[_size];
+        if (field==null)
+            field=_fields[_size]=new Field(name,value);
+        else
+            field.reset(name,value);
+        _size++;
+        return field;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Remove a field from the ordered fields. The field is not recycled as it may
+     * still be referenced.
+     */
+    private void removeField(Field field)
+    {
+        for (int i=0;i<_size;i++)
+        {
+            if (_fields[i]==field)
+            {
+                System.arraycopy(_fields,i+1,_fields,i,_size-i-1);
+                _fields[--_size]=null;
+                return;
+            }
+        }
     }
 
     /* -------------------------------------------------------------- */
@@ -611,9 +762,8 @@ public class HttpFields
             value= HttpHeaderValues.CACHE.lookup(value).asImmutableBuffer();
         
         // new value;
-        Field field = new Field(name, value);
-        _fields.add(field);
-        _names.put(name, field);
+        Field field = newField(name, value);
+        setIndexed(name, field);
     }
 
     /* -------------------------------------------------------------- */
@@ -691,7 +841,7 @@ public class HttpFields
             value= HttpHeaderValues.CACHE.lookup(value);
         value=value.asImmutableBuffer();
         
-        Field field = _names.get(name);
+        Field field = getIndexed(name);
         Field last = null;
         while (field != null)
         {
@@ -700,14 +850,13 @@ public class HttpFields
         }
 
         // create the field
-        field = new Field(name, value);
-        _fields.add(field);
+        field = newField(name, value);
 
         // look for chain to add too
         if (last != null)
             last._next = field;
         else
-            _names.put(name, field);
+            setIndexed(name, field);
     }
 
     /* ------------------------------------------------------------ */
@@ -731,10 +880,12 @@ public class HttpFields
     {
         if (!(name instanceof BufferCache.CachedBuffer)) 
             name = HttpHeaders.CACHE.lookup(name);
-        Field field = _names.remove(name);
+        Field field = getIndexed(name);
+        if (field != null)
+            setIndexed(name, null);
         while (field != null)
         {
-            _fields.remove(field);
+            removeField(field);
             field = field._next;
         }
     }
@@ -1010,9 +1161,9 @@ public class HttpFields
         {
             if (field._value!=null && field._value.toString().startsWith(start))
             {
-                _fields.remove(field);
+                removeField(field);
                 if (last==null)
-                    _names.put(HttpHeaders.SET_COOKIE_BUFFER,field._next);
+                    setIndexed(HttpHeaders.SET_COOKIE_BUFFER,field._next);
                 else
                     last._next=field._next;
                 break;
@@ -1030,12 +1181,8 @@ public class HttpFields
     /* -------------------------------------------------------------- */
     public void putTo(Buffer buffer) throws IOException
     {
-        for (int i = 0; i < _fields.size(); i++)
-        {
-            Field field = _fields.get(i);
-            if (field != null) 
-                field.putTo(buffer);
-        }
+        for (int i = 0; i < _size; i++)
+            _fields[i].putTo(buffer);
         BufferUtil.putCRLF(buffer);
     }
 
@@ -1045,9 +1192,9 @@ public class HttpFields
         try
         {
             StringBuffer buffer = new StringBuffer();
-            for (int i = 0; i < _fields.size(); i++)
+            for (int i = 0; i < _size; i++)
             {
-                Field field = (Field) _fields.get(i);
+                Field field = _fields[i];
                 if (field != null)
                 {
                     String tmp = field.getName();
@@ -1074,8 +1221,13 @@ public class HttpFields
      */
     public void clear()
     {
-        _fields.clear();
-        _names.clear();
+        _size=0;
+        Arrays.fill(_known,null);
+        if (_unknownNames>0)
+        {
+            Arrays.fill(_unknown,null);
+            _unknownNames=0;
+        }
     }
 
     /* ------------------------------------------------------------ */
@@ -1266,6 +1418,14 @@ public class HttpFields
             _value = value;
             _next = null;
         }
+
+        /* ------------------------------------------------------------ */
+        private void reset(Buffer name, Buffer value)
+        {
+            _name = name;
+            _value = value;
+            _next = null;
+        }
         
         /* ------------------------------------------------------------ */
         public void putTo(Buffer buffer) throws IOException
@@ -23,6 +23,7 @@ import org.eclipse.jetty.io.Buffers;
 import org.eclipse.jetty.io.ByteArrayBuffer;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.io.View;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -93,6 +94,8 @@ public class HttpGenerator extends AbstractGenerator
     private static final byte[] CONNECTION_CLOSE = StringUtil.getBytes("Connection: close\015\012");
     private static final byte[] CONNECTION_ = StringUtil.getBytes("Connection: ");
     private static final byte[] CRLF = StringUtil.getBytes("\015\012");
+    private static final Buffer CHUNK_END = new ByteArrayBuffer(CRLF,0,CRLF.length,Buffer.IMMUTABLE);
+    private static final Buffer CHUNK_END_LAST_CHUNK = new ByteArrayBuffer(StringUtil.getBytes("\015\0120\015\012\015\012"),0,7,Buffer.IMMUTABLE);
     private static final byte[] TRANSFER_ENCODING_CHUNKED = StringUtil.getBytes("Transfer-Encoding: chunked\015\012");
     private static byte[] SERVER = StringUtil.getBytes("Server: Jetty(7.0.x)\015\012");
 
@@ -109,6 +112,8 @@ public class HttpGenerator extends AbstractGenerator
     private boolean _needCRLF = false;
     private boolean _needEOC = false;
     private boolean _bufferChunked = false;
+    private final View _chunkTrailer = new View(); // CRLF (and last chunk) written with a bypass chunk
+    private final Buffer[] _chunk = new Buffer[3];
 
 
     /* ------------------------------------------------------------------------------- */
@@ -132,6 +137,7 @@ public class HttpGenerator extends AbstractGenerator
         _needCRLF = false;
         _needEOC = false;
         _bufferChunked=false;
+        _chunkTrailer.update(0,0);
         _method=null;
         _uri=null;
         _noContent=false;
@@ -327,6 +333,18 @@ public class HttpGenerator extends AbstractGenerator
         if (status==null)
             throw new IllegalArgumentException(code+"?");
 
+        // The responses held back for earlier pipelined requests go first
+        while (!flushPipelined())
+        {
+            if (!_endp.isOpen())
+                throw new EofException();
+            if (!_endp.isBlocking() && !_endp.blockWritable(_endp.getMaxIdleTime()))
+            {
+                _endp.close();
+                throw new EofException("timeout");
+            }
+        }
+
         // get a header buffer
         if (_header == null)
             _header = _buffers.getHeader();
@@ -506,6 +524,7 @@ public class HttpGenerator extends AbstractGenerator
             boolean close=false;
             boolean content_type=false;
             StringBuilder connection = null;
+            long known=0;
 
             if (fields != null)
             {
@@ -516,7 +535,10 @@ public class HttpGenerator extends AbstractGenerator
                     if (field==null)
                         continue;
 
-                    switch (field.getNameOrdinal())
+                    int ordinal=field.getNameOrdinal();
+                    if (ordinal>=0 && ordinal<64)
+                        known|=1L<<ordinal;
+                    switch (ordinal)
                     {
                         case HttpHeaders.CONTENT_LENGTH_ORDINAL:
                             content_length = field;
@@ -655,6 +677,10 @@ public class HttpGenerator extends AbstractGenerator
                 }
             }
 
+            // Static fields not overridden by the message fields
+            if (_staticFields!=null && (isRequest() || _status>=200))
+                has_server|=_staticFields.putTo(_header,fields,known,_noContent);
+
             // Calculate how to end _content and connection, _content length and transfer encoding
             // settings.
             // From RFC 2616 4.4:
@@ -809,7 +835,67 @@ public class HttpGenerator extends AbstractGenerator
                 _needEOC = true;
         }
 
+        if (!holdPipelined())
+            flushBuffer();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Hold back a completed message while more requests have already been received,
+     * so that it is written with the responses to those requests.
+     * @return True if the message was held back
+     */
+    private boolean holdPipelined() throws IOException
+    {
+        if (!_pipelined || _pipelineSize<=0 || _endp==null || !isPersistent() || _state!=STATE_FLUSHING)
+            return false;
+
+        long now=System.currentTimeMillis();
+        if (_pipeline!=null && _pipeline.length()>0 && now-_pipelineStart>=_pipelineDelay)
+            return false;
+
+        prepareBuffers();
+        int length=getBytesBuffered();
+        if (_needCRLF || _needEOC || length==0)
+            return false;
+
+        if (_pipeline==null)
+        {
+            _pipeline=_buffers.getBuffer(_pipelineSize);
+            if (_pipeline==null)
+                _pipeline=new ByteArrayBuffer(_pipelineSize);
+        }
+        else if (_pipeline.length()==0)
+            _pipeline.clear();
+        if (length>_pipeline.space())
+            return false;
+        if (_pipeline.length()==0)
+            _pipelineStart=now;
+
+        // header, buffered content, bypassed content and chunk trailer, in the order they are written
+        if (_header!=null && _header.length()>0)
+            _pipeline.put(_header);
+        if (_buffer!=null && _buffer.length()>0)
+            _pipeline.put(_buffer);
+        if (_content!=null && _content.length()>0)
+        {
+            _pipeline.put(_content);
+            _content.skip(_content.length());
+        }
+        if (_chunkTrailer.length()>0)
+        {
+            _pipeline.put(_chunkTrailer);
+            _chunkTrailer.update(0,0);
+        }
+        _content=null;
+        if (_header!=null)
+            _header.clear();
+        if (_buffer!=null)
+            _buffer.clear();
+
+        // Nothing is left to write, so this completes the message
         flushBuffer();
+        return true;
     }
 
     /* ------------------------------------------------------------ */
@@ -837,9 +923,45 @@ public class HttpGenerator extends AbstractGenerator
             int total= 0;
 
             int len = -1;
-            int to_flush = ((_header != null && _header.length() > 0)?4:0) | ((_buffer != null && _buffer.length() > 0)?2:0) | ((_bypass && _content != null && _content.length() > 0)?1:0);
+            int to_flush = toFlush();
+
+            // Messages held back for pipelined requests are written first, gathered with this one
+            if (to_flush != 0 && _pipeline != null && _pipeline.length() > 0)
+            {
+                switch (to_flush)
+                {
+                    case 6:
+                        len = _endp.flush(_pipeline, _header, _buffer);
+                        break;
+                    case 4:
+                        len = _endp.flush(_pipeline, _header, null);
+                        break;
+                    case 2:
+                        len = _endp.flush(_pipeline, _buffer, null);
+                        break;
+                    default:
+                        len = _endp.flush(_pipeline);
+                }
+                if (_pipeline.length() > 0)
+                    return len > 0 ? len : 0;
+                _buffers.returnBuffer(_pipeline);
+                _pipeline = null;
+                if (len > 0)
+                    total += len;
+                len = -1;
+                to_flush = toFlush();
+            }
+
             switch (to_flush)
             {
+                case 8:
+                    // chunk header, bypassed content and chunk trailer in a single gathering write
+                    _chunk[0] = _header;
+                    _chunk[1] = _bypass ? _content : null;
+                    _chunk[2] = _chunkTrailer;
+                    len = _endp.flush(_chunk);
+                    _chunk[0] = _chunk[1] = null;
+                    break;
                 case 7:
                     throw new IllegalStateException(); // should never happen!
                 case 6:
@@ -916,10 +1038,17 @@ public class HttpGenerator extends AbstractGenerator
         catch (IOException e)
         {
             LOG.ignore(e);
+            closeContent();
             throw (e instanceof EofException) ? e:new EofException(e);
         }
     }
 
+    /* ------------------------------------------------------------ */
+    private int toFlush()
+    {
+        return (_chunkTrailer.length() > 0)?8:(((_header != null && _header.length() > 0)?4:0) | ((_buffer != null && _buffer.length() > 0)?2:0) | ((_bypass && _content != null && _content.length() > 0)?1:0));
+    }
+
     /* ------------------------------------------------------------ */
     private void prepareBuffers()
     {
@@ -955,8 +1084,17 @@ public class HttpGenerator extends AbstractGenerator
                     BufferUtil.putHexInt(_header, size);
                     _header.put(HttpTokens.CRLF);
                     
-                    // Need a CRLF after the content
-                    _needCRLF=true;
+                    // Need a CRLF after the content, which an end point can gather with the
+                    // content, together with the last chunk if this is the last content
+                    if (_endp == null)
+                        _needCRLF=true;
+                    else if (_needEOC && !_head)
+                    {
+                        _chunkTrailer.update(CHUNK_END_LAST_CHUNK);
+                        _needEOC=false;
+                    }
+                    else
+                        _chunkTrailer.update(CHUNK_END);
                 }
                 else if (_buffer!=null)
                 {
@@ -1054,14 +1192,16 @@ public class HttpGenerator extends AbstractGenerator
     {
         return(_header==null?0:_header.length())+
         (_buffer==null?0:_buffer.length())+
-        (_content==null?0:_content.length());
+        (_content==null?0:_content.length())+
+        _chunkTrailer.length();
     }
 
     public boolean isEmpty()
     {
         return (_header==null||_header.length()==0) &&
         (_buffer==null||_buffer.length()==0) &&
-        (_content==null||_content.length()==0);
+        (_content==null||_content.length()==0) &&
+        _chunkTrailer.length()==0;
     }
 
     @Override
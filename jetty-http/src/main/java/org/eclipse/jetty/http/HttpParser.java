@@ -55,6 +55,9 @@ public class HttpParser implements Parser
     public static final int STATE_CHUNK_PARAMS=5;
     public static final int STATE_CHUNK=6;
 
+    // The longest header value that is remembered for the connection
+    private static final int __maxLearnedValue=1024;
+
     private final EventHandler _handler;
     private final Buffers _buffers; // source of buffers
     private final EndPoint _endp;
@@ -65,6 +68,9 @@ public class HttpParser implements Parser
     private View.CaseInsensitive _tok0; // Saved token: header name, request method or response version
     private View.CaseInsensitive _tok1; // Saved token: header value, request URI or response code
     private String _multiLineValue;
+    private CachedBuffer[] _learnedValues; // The last value of each known header, indexed by ordinal
+    private byte[][] _seenValues; // The last new value of each known header, indexed by ordinal
+    private int[] _seenLengths;
     private int _responseStatus; // If >0 then we are parsing a response
     private boolean _forceContentBuffer;
     
@@ -114,6 +120,81 @@ public class HttpParser implements Parser
         _handler=handler;
     }
 
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * Resolve the value of a known header to the value last parsed for that header.
+     * <p>
+     * Clients on persistent connections send the same values for most headers on
+     * every request, so the parser remembers the last repeated value of each known
+     * header as an immutable {@link CachedBuffer}. A repeated value is returned as the
+     * same buffer, with its cached String, so the handler and {@link HttpFields} do not
+     * copy it. A new value is only copied into a scratch array, and becomes a cached
+     * buffer if the next value of the header repeats it, so a header that changes on
+     * every request costs no String. New values are resolved from the static caches
+     * where possible so that they keep their ordinals.
+     * @param ordinal The ordinal of the header name
+     * @param value The value parsed
+     * @return The remembered value if equal to the value parsed, else the value parsed
+     */
+    private Buffer learn(int ordinal, Buffer value)
+    {
+        int length=value.length();
+        if (length>__maxLearnedValue)
+            return value;
+
+        if (_learnedValues==null)
+        {
+            _learnedValues=new CachedBuffer[HttpHeaders.X_FORWARDED_HOST_ORDINAL+1];
+            _seenValues=new byte[_learnedValues.length][];
+            _seenLengths=new int[_learnedValues.length];
+        }
+        else if (ordinal>=_learnedValues.length)
+            return value;
+
+        CachedBuffer learned=_learnedValues[ordinal];
+        if (learned!=null && equals(learned.array(),learned.length(),value))
+            return learned;
+
+        learned=ordinal==HttpHeaders.CONTENT_TYPE_ORDINAL?MimeTypes.CACHE.get(value):HttpHeaderValues.CACHE.get(value);
+        if (learned!=null)
+        {
+            // Leave case folding of known values to the handler
+            if (!equals(learned.array(),learned.length(),value))
+                return value;
+            _learnedValues[ordinal]=learned;
+            return learned;
+        }
+
+        byte[] seen=_seenValues[ordinal];
+        if (seen!=null && equals(seen,_seenLengths[ordinal],value))
+        {
+            learned=new CachedBuffer(value.toString(StringUtil.__ISO_8859_1),-1);
+            _learnedValues[ordinal]=learned;
+            return learned;
+        }
+
+        if (seen==null || seen.length<length)
+            _seenValues[ordinal]=seen=new byte[length];
+        value.peek(value.getIndex(),seen,0,length);
+        _seenLengths[ordinal]=length;
+        return value;
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * Header values are case sensitive, so compare bytes exactly
+     */
+    private static boolean equals(byte[] array, int length, Buffer value)
+    {
+        if (length!=value.length())
+            return false;
+        int index=value.getIndex();
+        int i=length;
+        while (i-->0 && array[i]==value.peek(index+i))
+            ;
+        return i<0;
+    }
+
     /* ------------------------------------------------------------------------------- */
     public long getContentLength()
     {
@@ -179,6 +260,42 @@ public class HttpParser implements Parser
              _body!=null && _body.hasContent());
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return True if the current message is complete and the buffer already holds
+     * the complete header of the next message, so that it can be parsed without filling.
+     */
+    public boolean isMessageInBuffer()
+    {
+        if (!isComplete())
+            return false;
+        Buffer buffer=(_header!=null && _header.hasContent())?_header:_body;
+        if (buffer==null || !buffer.hasContent())
+            return false;
+
+        int i=buffer.getIndex();
+        int end=buffer.putIndex();
+
+        // Skip the CRLFs allowed between messages
+        while (i<end && (buffer.peek(i)==HttpTokens.CARRIAGE_RETURN || buffer.peek(i)==HttpTokens.LINE_FEED))
+            i++;
+
+        // Look for the blank line that ends the header
+        int eols=0;
+        for (;i<end;i++)
+        {
+            byte b=buffer.peek(i);
+            if (b==HttpTokens.LINE_FEED)
+            {
+                if (++eols==2)
+                    return true;
+            }
+            else if (b!=HttpTokens.CARRIAGE_RETURN)
+                eols=0;
+        }
+        return false;
+    }
+
     /* ------------------------------------------------------------------------------- */
     public boolean isState(int state)
     {
@@ -405,6 +522,21 @@ public class HttpParser implements Parser
                         _handler.messageComplete(_contentPosition);
                         return 1;
                     }
+                    else if (array!=null)
+                    {
+                        // skip to the end of the URI
+                        int i=_buffer.getIndex();
+                        int end=_buffer.putIndex();
+                        while (i<end)
+                        {
+                            byte b=array[i];
+                            if (b<=HttpTokens.SPACE && b>=0)
+                                break;
+                            i++;
+                        }
+                        _buffer.setGetIndex(i);
+                        length=end-i;
+                    }
                     break;
 
                 case STATE_SPACE2:
@@ -442,7 +574,11 @@ public class HttpParser implements Parser
                         if (_responseStatus>0)
                             _handler.startResponse(HttpVersions.CACHE.lookup(_tok0), _responseStatus,_buffer.sliceFromMark());
                         else
-                            _handler.startRequest(HttpMethods.CACHE.lookup(_tok0), _tok1, HttpVersions.CACHE.lookup(_buffer.sliceFromMark()));
+                        {
+                            Buffer version=HttpVersions.CACHE.lookup(_buffer,_buffer.markIndex(),_buffer.getIndex()-_buffer.markIndex()-1);
+                            _buffer.setMarkIndex(-1);
+                            _handler.startRequest(HttpMethods.CACHE.lookup(_tok0), _tok1, version);
+                        }
                         _eol=ch;
                         _state=STATE_HEADER;
                         _tok0.setPutIndex(_tok0.getIndex());
@@ -476,6 +612,8 @@ public class HttpParser implements Parser
                                 Buffer value=_multiLineValue == null ? _tok1 : new ByteArrayBuffer(_multiLineValue);
                                 
                                 int ho=HttpHeaders.CACHE.getOrdinal(header);
+                                if (ho >= 0 && _multiLineValue == null && ho != HttpHeaders.CONTENT_LENGTH_ORDINAL)
+                                    value=learn(ho,value);
                                 if (ho >= 0)
                                 {
                                     int vo; 
@@ -653,6 +791,22 @@ public class HttpParser implements Parser
                         {
                             _cached=null;
                             _length++;
+                            if (array!=null)
+                            {
+                                // skip to the end of the name
+                                int i=_buffer.getIndex();
+                                int end=_buffer.putIndex();
+                                while (i<end)
+                                {
+                                    byte b=array[i];
+                                    if (b==HttpTokens.COLON || b==HttpTokens.SPACE || b==HttpTokens.CARRIAGE_RETURN || b==HttpTokens.LINE_FEED || b==HttpTokens.TAB)
+                                        break;
+                                    i++;
+                                }
+                                _length+=i-_buffer.getIndex();
+                                _buffer.setGetIndex(i);
+                                length=end-i;
+                            }
                         }
                     }
                     break;
@@ -716,6 +870,27 @@ public class HttpParser implements Parser
                             break;
                         default:
                             _length++;
+                            if (array!=null)
+                            {
+                                // skip to the end of the line, keeping trailing white space out of the value
+                                int i=_buffer.getIndex();
+                                int end=_buffer.putIndex();
+                                int value_end=i;
+                                while (i<end)
+                                {
+                                    byte b=array[i];
+                                    if (b==HttpTokens.CARRIAGE_RETURN || b==HttpTokens.LINE_FEED)
+                                        break;
+                                    i++;
+                                    if (b!=HttpTokens.SPACE && b!=HttpTokens.TAB)
+                                        value_end=i;
+                                }
+                                _length=value_end-_buffer.markIndex();
+                                if (value_end<i)
+                                    _state=STATE_HEADER_VALUE;
+                                _buffer.setGetIndex(i);
+                                length=end-i;
+                            }
                     }
                     break;
             }
@@ -856,6 +1031,15 @@ public class HttpParser implements Parser
                         else
                             _state=STATE_CHUNK;
                     }
+                    else if (array!=null)
+                    {
+                        // skip the chunk extensions
+                        int i=_buffer.getIndex();
+                        int end=_buffer.putIndex();
+                        while (i<end && array[i]!=HttpTokens.CARRIAGE_RETURN && array[i]!=HttpTokens.LINE_FEED)
+                            i++;
+                        _buffer.setGetIndex(i);
+                    }
                     break;
                 }
                 
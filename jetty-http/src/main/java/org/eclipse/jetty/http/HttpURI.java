@@ -583,6 +583,29 @@ public class HttpURI
         return _utf8b.toString();
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @param cache The cache of canonical paths, or null
+     * @return The decoded and canonical path, as {@link URIUtil#canonicalPath(String)} of
+     * {@link #getDecodedPath()}, from the cache if possible.
+     */
+    public String getCanonicalPath(PathCache cache)
+    {
+        if (cache==null || _path==_param)
+            return URIUtil.canonicalPath(getDecodedPath());
+
+        int length=_param-_path;
+        int hash=PathCache.hash(_raw,_path,length);
+        String path=cache.get(hash,_raw,_path,length);
+        if (path==null)
+        {
+            path=URIUtil.canonicalPath(getDecodedPath());
+            if (path!=null)
+                cache.put(hash,_raw,_path,length,path);
+        }
+        return path;
+    }
+
     public String getPathAndParam()
     {
         if (_path==_query)
@@ -634,8 +657,7 @@ public class HttpURI
     {
         if (_query==_fragment)
             return;
-        _utf8b.reset();
-        UrlEncoded.decodeUtf8To(_raw,_query+1,_fragment-_query-1,parameters,_utf8b);
+        UrlEncoded.decodeUtf8To(_raw,_query+1,_fragment-_query-1,parameters);
     }
 
     public void decodeQueryTo(MultiMap parameters, String encoding)
@@ -0,0 +1,293 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.http;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/* ------------------------------------------------------------ */
+/**
+ * A bounded cache of decoded and canonical request paths.
+ * <p>
+ * The cache is keyed by the raw bytes of the path of a {@link HttpURI}, so
+ * that a hit returns the path String that {@link HttpURI#getCanonicalPath(PathCache)}
+ * would otherwise decode and canonicalize, without allocating.
+ * <p>
+ * The cache is a fixed size, two way associative table that is safe for
+ * concurrent use without locking. A path is only admitted to the table
+ * the second time it misses within a period, as recorded by a bloom
+ * filter that is cleared after as many misses as the capacity of the table.
+ * An admitted path replaces a cached path only if the cached path has not
+ * been hit since it was last passed over, so paths requested only once, such
+ * as those of a scanner trying random URLs, do not displace the paths that
+ * are requested repeatedly.
+ */
+public class PathCache
+{
+    private final AtomicReferenceArray<Entry> _entries;
+    private final int _mask;
+    private final AtomicLongArray _doorkeeper;
+    private final int _doorkeeperMask;
+    private final int _period;
+    private final AtomicInteger _sightings = new AtomicInteger();
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _admissions = new AtomicLong();
+    private final AtomicLong _savedChars = new AtomicLong();
+
+    /* ------------------------------------------------------------ */
+    public PathCache()
+    {
+        this(4096);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param capacity The maximum number of cached paths, which is rounded up to a power of 2
+     */
+    public PathCache(int capacity)
+    {
+        int size=2;
+        while (size<capacity)
+            size<<=1;
+        _entries=new AtomicReferenceArray<Entry>(size);
+        _mask=size-1;
+
+        // 16 bits per entry, in at least one long
+        _doorkeeper=new AtomicLongArray(Math.max(1,size/4));
+        _doorkeeperMask=_doorkeeper.length()*64-1;
+        _period=_doorkeeper.length()*4;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum number of cached paths
+     */
+    public int getCapacity()
+    {
+        return _entries.length();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of paths returned from the cache
+     */
+    public long getHits()
+    {
+        return _hits.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of paths that were not in the cache
+     */
+    public long getMisses()
+    {
+        return _misses.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The ratio of hits to lookups, or 0 if there have been no lookups
+     */
+    public double getHitRatio()
+    {
+        long hits=_hits.get();
+        long lookups=hits+_misses.get();
+        return lookups==0?0.0:((double)hits)/lookups;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of paths added to the cache
+     */
+    public long getAdmissions()
+    {
+        return _admissions.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of chars of the paths returned from the cache, which
+     * were not allocated to decode and canonicalize them
+     */
+    public long getSavedChars()
+    {
+        return _savedChars.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Reset the hit, miss and admission counters.
+     */
+    public void statsReset()
+    {
+        _hits.set(0);
+        _misses.set(0);
+        _admissions.set(0);
+        _savedChars.set(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Remove all the paths from the cache.
+     */
+    public void clear()
+    {
+        for (int i=_entries.length();i-->0;)
+            _entries.set(i,null);
+        for (int i=_doorkeeper.length();i-->0;)
+            _doorkeeper.set(i,0);
+    }
+
+    /* ------------------------------------------------------------ */
+    static int hash(byte[] raw, int offset, int length)
+    {
+        int hash=0;
+        for (int i=offset;i<offset+length;i++)
+            hash=31*hash+raw[i];
+        return hash^(hash>>>16);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The cached path for the raw bytes, or null
+     */
+    String get(int hash, byte[] raw, int offset, int length)
+    {
+        int slot=hash&_mask;
+        Entry entry=_entries.get(slot);
+        if (entry==null || !entry.matches(hash,raw,offset,length))
+            entry=_entries.get(slot^1);
+        if (entry!=null && entry.matches(hash,raw,offset,length))
+        {
+            entry._hits++;
+            _hits.incrementAndGet();
+            _savedChars.addAndGet(entry._path.length());
+            return entry._path;
+        }
+        _misses.incrementAndGet();
+        return null;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Add a path to the cache if it has been seen before in this period.
+     */
+    void put(int hash, byte[] raw, int offset, int length, String path)
+    {
+        if (!admit(hash))
+            return;
+
+        // Replace the entry with the fewest hits, if it has none
+        int slot=hash&_mask;
+        Entry victim=_entries.get(slot);
+        if (victim!=null)
+        {
+            Entry other=_entries.get(slot^1);
+            if (other==null || other._hits<victim._hits)
+            {
+                slot^=1;
+                victim=other;
+            }
+        }
+        if (victim!=null && victim._hits>0)
+        {
+            victim._hits>>=1;
+            return;
+        }
+
+        byte[] key=new byte[length];
+        System.arraycopy(raw,offset,key,0,length);
+        _entries.set(slot,new Entry(hash,key,path));
+        _admissions.incrementAndGet();
+    }
+
+    /* ------------------------------------------------------------ */
+    private boolean admit(int hash)
+    {
+        if (_sightings.incrementAndGet()>=_period)
+        {
+            _sightings.set(0);
+            for (int i=_doorkeeper.length();i-->0;)
+                _doorkeeper.set(i,0);
+        }
+
+        int bit0=hash&_doorkeeperMask;
+        int bit1=(hash*0x9E3779B9>>>7)&_doorkeeperMask;
+        boolean seen=isSet(bit0)&isSet(bit1);
+        if (!seen)
+        {
+            set(bit0);
+            set(bit1);
+        }
+        return seen;
+    }
+
+    /* ------------------------------------------------------------ */
+    private boolean isSet(int bit)
+    {
+        return (_doorkeeper.get(bit>>>6)&(1L<<bit))!=0;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void set(int bit)
+    {
+        int i=bit>>>6;
+        long mask=1L<<bit;
+        while (true)
+        {
+            long bits=_doorkeeper.get(i);
+            if ((bits&mask)!=0 || _doorkeeper.compareAndSet(i,bits,bits|mask))
+                return;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%d,hits=%d,misses=%d,admissions=%d}",
+                getClass().getSimpleName(),hashCode(),getCapacity(),getHits(),getMisses(),getAdmissions());
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    private static class Entry
+    {
+        final int _hash;
+        final byte[] _key;
+        final String _path;
+        volatile int _hits;
+
+        Entry(int hash, byte[] key, String path)
+        {
+            _hash=hash;
+            _key=key;
+            _path=path;
+        }
+
+        boolean matches(int hash, byte[] raw, int offset, int length)
+        {
+            if (_hash!=hash || _key.length!=length)
+                return false;
+            for (int i=length;i-->0;)
+                if (_key[i]!=raw[offset+i])
+                    return false;
+            return true;
+        }
+    }
+}
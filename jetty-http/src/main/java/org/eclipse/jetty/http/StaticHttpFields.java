@@ -0,0 +1,179 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.http;
+
+import java.io.IOException;
+
+import org.eclipse.jetty.io.Buffer;
+import org.eclipse.jetty.io.ByteArrayBuffer;
+
+/* ------------------------------------------------------------ */
+/**
+ * Fields that are sent with every message, such as Server, X-Powered-By
+ * or a default Content-Type.
+ * <p>
+ * The fields are formatted once into an immutable block of header lines that a
+ * {@link HttpGenerator} copies into each header with a single put. A field is
+ * not sent if the fields of the message have a field of the same name, in which
+ * case the generator writes the other static fields line by line. A static
+ * Content-Type is not sent with a message that has no content.
+ * <p>
+ * Instances are immutable and may be shared by many generators.
+ */
+public class StaticHttpFields
+{
+    private final Buffer _block;
+    private final Buffer[] _lines;
+    private final Buffer[] _names;
+    private final Buffer[] _values;
+    private final int[] _ordinals;
+    private final long _known;
+    private final boolean _unknown;
+    private final boolean _contentType;
+    private final boolean _server;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param fields The fields to send with every message. The fields are copied.
+     */
+    public StaticHttpFields(HttpFields fields)
+    {
+        int size=fields.size();
+        _lines=new Buffer[size];
+        _names=new Buffer[size];
+        _values=new Buffer[size];
+        _ordinals=new int[size];
+
+        long known=0;
+        boolean unknown=false;
+        int length=0;
+        for (int i=0;i<size;i++)
+        {
+            HttpFields.Field field=fields.getField(i);
+            Buffer name=field.getNameBuffer();
+            Buffer value=field.getValueBuffer();
+            ByteArrayBuffer line=new ByteArrayBuffer(name.length()+value.length()+4);
+            try
+            {
+                field.putTo(line);
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException(e.toString());
+            }
+            _lines[i]=line.asImmutableBuffer();
+            _names[i]=name;
+            _values[i]=value;
+            _ordinals[i]=field.getNameOrdinal();
+            if (_ordinals[i]>=0 && _ordinals[i]<64)
+                known|=1L<<_ordinals[i];
+            else
+                unknown=true;
+            length+=line.length();
+        }
+
+        ByteArrayBuffer block=new ByteArrayBuffer(length);
+        for (Buffer line : _lines)
+            block.put(line);
+        _block=block.asImmutableBuffer();
+        _known=known;
+        _unknown=unknown;
+        _contentType=(known&(1L<<HttpHeaders.CONTENT_TYPE_ORDINAL))!=0;
+        _server=(known&(1L<<HttpHeaders.SERVER_ORDINAL))!=0;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of static fields
+     */
+    public int size()
+    {
+        return _lines.length;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param name The name of a field
+     * @param value The value of the field
+     * @return New static fields with these fields and the given field added
+     */
+    public StaticHttpFields add(String name, String value)
+    {
+        HttpFields fields=new HttpFields();
+        for (int i=0;i<_names.length;i++)
+            fields.add(_names[i],_values[i]);
+        fields.add(name,value);
+        return new StaticHttpFields(fields);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The formatted header lines of the static fields
+     */
+    public Buffer getBuffer()
+    {
+        return _block;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Put the static fields into a header.
+     * @param header The header buffer
+     * @param fields The fields of the message, or null
+     * @param known The bit mask of the ordinals less than 64 of the field names of the message
+     * @param noContent True if the message has no content
+     * @return True if a Server field was put
+     */
+    boolean putTo(Buffer header, HttpFields fields, long known, boolean noContent)
+    {
+        boolean all=(known&_known)==0 && !(noContent && _contentType);
+        if (all && _unknown && fields!=null)
+        {
+            for (int i=0;all && i<_names.length;i++)
+                if ((_ordinals[i]<0 || _ordinals[i]>=64) && fields.containsKey(_names[i]))
+                    all=false;
+        }
+
+        if (all)
+        {
+            header.put(_block);
+            return _server;
+        }
+
+        boolean server=false;
+        for (int i=0;i<_lines.length;i++)
+        {
+            int ordinal=_ordinals[i];
+            if (ordinal>=0 && ordinal<64)
+            {
+                if ((known&(1L<<ordinal))!=0 || noContent && ordinal==HttpHeaders.CONTENT_TYPE_ORDINAL)
+                    continue;
+            }
+            else if (fields!=null && fields.containsKey(_names[i]))
+                continue;
+
+            header.put(_lines[i]);
+            if (ordinal==HttpHeaders.SERVER_ORDINAL)
+                server=true;
+        }
+        return server;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return _block.toString();
+    }
+}
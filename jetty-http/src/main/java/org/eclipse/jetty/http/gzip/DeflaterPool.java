@@ -0,0 +1,240 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.http.gzip;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/* ------------------------------------------------------------ */
+/**
+ * A bounded pool of {@link Deflater}s.
+ * <p>
+ * A Deflater holds native memory that is only freed by {@link Deflater#end()}
+ * or by finalization, so creating one for every compressed response lets the
+ * native memory grow under load. The pool resets released Deflaters and keeps
+ * up to its capacity of them for reuse. Deflaters released to a full pool are
+ * ended.
+ * <p>
+ * The Deflaters are created with the configured level and strategy and produce
+ * raw deflate data, without the zlib header, as needed by {@link GzipOutputStream}.
+ * The pool also keeps statistics of the data compressed with its Deflaters.
+ */
+public class DeflaterPool
+{
+    private final int _level;
+    private final int _strategy;
+    private final int _capacity;
+    private final Queue<Deflater> _pool = new ConcurrentLinkedQueue<Deflater>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private final AtomicLong _created = new AtomicLong();
+    private final AtomicLong _bytesIn = new AtomicLong();
+    private final AtomicLong _bytesOut = new AtomicLong();
+    private final AtomicLong _nanos = new AtomicLong();
+
+    /* ------------------------------------------------------------ */
+    public DeflaterPool()
+    {
+        this(Deflater.DEFAULT_COMPRESSION,Deflater.DEFAULT_STRATEGY,64);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param level The compression level (0-9 or {@link Deflater#DEFAULT_COMPRESSION})
+     * @param strategy The compression strategy ({@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED}
+     * or {@link Deflater#HUFFMAN_ONLY})
+     * @param capacity The maximum number of idle Deflaters kept in the pool
+     */
+    public DeflaterPool(int level, int strategy, int capacity)
+    {
+        if (level<Deflater.DEFAULT_COMPRESSION || level>Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("level "+level);
+        if (strategy!=Deflater.DEFAULT_STRATEGY && strategy!=Deflater.FILTERED && strategy!=Deflater.HUFFMAN_ONLY)
+            throw new IllegalArgumentException("strategy "+strategy);
+        _level=level;
+        _strategy=strategy;
+        _capacity=capacity;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The compression level
+     */
+    public int getLevel()
+    {
+        return _level;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The compression strategy
+     */
+    public int getStrategy()
+    {
+        return _strategy;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum number of idle Deflaters kept in the pool
+     */
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return A Deflater from the pool, or a new Deflater if the pool is empty
+     */
+    public Deflater acquire()
+    {
+        Deflater deflater=_pool.poll();
+        if (deflater!=null)
+        {
+            _size.decrementAndGet();
+            return deflater;
+        }
+
+        _created.incrementAndGet();
+        deflater=new Deflater(_level,true);
+        if (_strategy!=Deflater.DEFAULT_STRATEGY)
+            deflater.setStrategy(_strategy);
+        return deflater;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Return a Deflater to the pool. The Deflater must not be used after it is released.
+     * @param deflater A Deflater obtained from {@link #acquire()}
+     */
+    public void release(Deflater deflater)
+    {
+        if (_size.incrementAndGet()<=_capacity)
+        {
+            deflater.reset();
+            _pool.offer(deflater);
+        }
+        else
+        {
+            _size.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Record the data compressed with a Deflater of this pool.
+     * @param bytesIn The number of uncompressed bytes
+     * @param bytesOut The number of compressed bytes
+     * @param nanos The time in ns spent compressing
+     */
+    public void compressed(long bytesIn, long bytesOut, long nanos)
+    {
+        _bytesIn.addAndGet(bytesIn);
+        _bytesOut.addAndGet(bytesOut);
+        _nanos.addAndGet(nanos);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * End the idle Deflaters of the pool.
+     */
+    public void clear()
+    {
+        Deflater deflater;
+        while ((deflater=_pool.poll())!=null)
+        {
+            _size.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of idle Deflaters in the pool
+     */
+    public int getSize()
+    {
+        return _size.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of Deflaters created by the pool
+     */
+    public long getCreated()
+    {
+        return _created.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of uncompressed bytes
+     */
+    public long getBytesIn()
+    {
+        return _bytesIn.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of compressed bytes
+     */
+    public long getBytesOut()
+    {
+        return _bytesOut.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The ratio of compressed to uncompressed bytes, or 0 if nothing has been compressed
+     */
+    public double getCompressionRatio()
+    {
+        long in=_bytesIn.get();
+        return in==0?0.0:((double)_bytesOut.get())/in;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The time in ns spent compressing per uncompressed byte, or 0 if nothing has been compressed
+     */
+    public double getNanosPerByte()
+    {
+        long in=_bytesIn.get();
+        return in==0?0.0:((double)_nanos.get())/in;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Reset the statistics of the compressed data.
+     */
+    public void statsReset()
+    {
+        _bytesIn.set(0);
+        _bytesOut.set(0);
+        _nanos.set(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{level=%d,strategy=%d,%d/%d,created=%d,ratio=%.3f}",
+                getClass().getSimpleName(),hashCode(),_level,_strategy,getSize(),_capacity,getCreated(),getCompressionRatio());
+    }
+}
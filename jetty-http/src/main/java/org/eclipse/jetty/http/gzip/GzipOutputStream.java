@@ -0,0 +1,139 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.http.gzip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/* ------------------------------------------------------------ */
+/**
+ * A GZIP output stream that compresses with a Deflater from a {@link DeflaterPool}.
+ * <p>
+ * The output is the same as that of {@link java.util.zip.GZIPOutputStream}, but
+ * the Deflater is returned to the pool when the stream is finished rather than
+ * being left for finalization. If there is no pool, a Deflater with the default
+ * level is created and ended when the stream is finished.
+ */
+public class GzipOutputStream extends DeflaterOutputStream
+{
+    private final static byte[] HEADER = {(byte)0x1f,(byte)0x8b,Deflater.DEFLATED,0,0,0,0,0,0,0};
+
+    private final DeflaterPool _pool;
+    private final CRC32 _crc = new CRC32();
+    private long _nanos;
+    private boolean _finished;
+    private boolean _closed;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param out The stream to write the compressed data to
+     * @param pool The pool of Deflaters, or null
+     * @param size The size of the output buffer
+     * @throws IOException
+     */
+    public GzipOutputStream(OutputStream out, DeflaterPool pool, int size) throws IOException
+    {
+        super(out,pool==null?new Deflater(Deflater.DEFAULT_COMPRESSION,true):pool.acquire(),size);
+        _pool=pool;
+        out.write(HEADER);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        if (_finished)
+            throw new IOException("Finished");
+        long start=System.nanoTime();
+        super.write(b,off,len);
+        _nanos+=System.nanoTime()-start;
+        _crc.update(b,off,len);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Write the remaining compressed data and the GZIP trailer without closing
+     * the underlying stream, then release the Deflater.
+     */
+    @Override
+    public void finish() throws IOException
+    {
+        if (_finished)
+            return;
+        _finished=true;
+
+        try
+        {
+            long start=System.nanoTime();
+            super.finish();
+            _nanos+=System.nanoTime()-start;
+
+            long crc=_crc.getValue();
+            long size=def.getBytesRead();
+            byte[] trailer = {
+                (byte)crc,(byte)(crc>>8),(byte)(crc>>16),(byte)(crc>>24),
+                (byte)size,(byte)(size>>8),(byte)(size>>16),(byte)(size>>24)};
+            out.write(trailer);
+            if (_pool!=null)
+                _pool.compressed(size,def.getBytesWritten()+HEADER.length+trailer.length,_nanos);
+        }
+        finally
+        {
+            release();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void close() throws IOException
+    {
+        if (_closed)
+            return;
+        _closed=true;
+        try
+        {
+            finish();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Release the Deflater without writing the remaining data, for a stream
+     * that will not be finished.
+     */
+    public void abort()
+    {
+        if (!_finished)
+        {
+            _finished=true;
+            release();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private void release()
+    {
+        if (_pool==null)
+            def.end();
+        else
+            _pool.release(def);
+    }
+}
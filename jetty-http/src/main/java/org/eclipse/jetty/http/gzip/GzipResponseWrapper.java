@@ -42,6 +42,7 @@ public class GzipResponseWrapper extends HttpServletResponseWrapper
     private Set<String> _mimeTypes;
     private int _bufferSize=DEFAULT_BUFFER_SIZE;
     private int _minGzipSize=DEFAULT_MIN_GZIP_SIZE;
+    private DeflaterPool _deflaterPool;
 
     private PrintWriter _writer;
     private GzipStream _gzStream;
@@ -91,6 +92,28 @@ public class GzipResponseWrapper extends HttpServletResponseWrapper
         _minGzipSize = minGzipSize;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Sets the pool of deflaters to compress with.
+     *
+     * @param deflaterPool the pool, or null to create a deflater for each response
+     */
+    public void setDeflaterPool(DeflaterPool deflaterPool)
+    {
+        _deflaterPool = deflaterPool;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Gets the pool of deflaters to compress with.
+     *
+     * @return the pool, or null
+     */
+    public DeflaterPool getDeflaterPool()
+    {
+        return _deflaterPool;
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * @see javax.servlet.ServletResponseWrapper#setContentType(java.lang.String)
@@ -400,7 +423,7 @@ public class GzipResponseWrapper extends HttpServletResponseWrapper
      */
     protected GzipStream newGzipStream(HttpServletRequest request,HttpServletResponse response,long contentLength,int bufferSize, int minGzipSize) throws IOException
     {
-        return new GzipStream(request,response,contentLength,bufferSize,minGzipSize);
+        return new GzipStream(request,response,contentLength,bufferSize,minGzipSize,_deflaterPool);
     }
 
     /* ------------------------------------------------------------ */
@@ -38,11 +38,13 @@ public class GzipStream extends ServletOutputStream
     protected OutputStream _out;
     protected ByteArrayOutputStream2 _bOut;
     protected GZIPOutputStream _gzOut;
+    protected DeflaterPool _deflaterPool;
     protected boolean _closed;
     protected int _bufferSize;
     protected int _minGzipSize;
     protected long _contentLength;
     protected boolean _doNotGzip;
+    private GzipOutputStream _pooledGzOut;
 
     /**
      * Instantiates a new gzip stream.
@@ -56,6 +58,23 @@ public class GzipStream extends ServletOutputStream
      */
     public GzipStream(HttpServletRequest request,HttpServletResponse response,long contentLength,int bufferSize, int minGzipSize) throws IOException
     {
+        this(request,response,contentLength,bufferSize,minGzipSize,null);
+    }
+
+    /**
+     * Instantiates a new gzip stream.
+     *
+     * @param request the request
+     * @param response the response
+     * @param contentLength the content length
+     * @param bufferSize the buffer size
+     * @param minGzipSize the min gzip size
+     * @param deflaterPool the pool of deflaters to compress with, or null to compress with a GZIPOutputStream
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public GzipStream(HttpServletRequest request,HttpServletResponse response,long contentLength,int bufferSize, int minGzipSize, DeflaterPool deflaterPool) throws IOException
+    {
+        _deflaterPool=deflaterPool;
         _request=request;
         _response=response;
         _contentLength=contentLength;
@@ -75,9 +94,14 @@ public class GzipStream extends ServletOutputStream
         _closed=false;
         _out=null;
         _bOut=null;
-        if (_gzOut!=null)
+        if (isGzipping())
+        {
             _response.setHeader("Content-Encoding",null);
+            if (_pooledGzOut!=null)
+                _pooledGzOut.abort();
+        }
         _gzOut=null;
+        _pooledGzOut=null;
         _doNotGzip=false;
     }
 
@@ -144,6 +168,8 @@ public class GzipStream extends ServletOutputStream
 
             if (_gzOut!=null)
                 _gzOut.close();
+            else if (_pooledGzOut!=null)
+                _pooledGzOut.close();
             else
                 _out.close();
             _closed=true;
@@ -167,10 +193,13 @@ public class GzipStream extends ServletOutputStream
                     doGzip();
             }
             
-            if (_gzOut!=null && !_closed)
+            if (isGzipping() && !_closed)
             {
                 _closed=true;
-                _gzOut.close();
+                if (_gzOut!=null)
+                    _gzOut.close();
+                else
+                    _pooledGzOut.close();
             }
         }
     }  
@@ -223,14 +252,17 @@ public class GzipStream extends ServletOutputStream
      */
     public void doGzip() throws IOException
     {
-        if (_gzOut==null) 
+        if (!isGzipping())
         {
             if (_response.isCommitted())
                 throw new IllegalStateException();
             
             if (setContentEncodingGzip())
             {
-                _out=_gzOut=new GZIPOutputStream(_response.getOutputStream(),_bufferSize);
+                if (_deflaterPool==null)
+                    _out=_gzOut=new GZIPOutputStream(_response.getOutputStream(),_bufferSize);
+                else
+                    _out=_pooledGzOut=new GzipOutputStream(_response.getOutputStream(),_deflaterPool,_bufferSize);
 
                 if (_bOut!=null)
                 {
@@ -250,7 +282,7 @@ public class GzipStream extends ServletOutputStream
      */
     public void doNotGzip() throws IOException
     {
-        if (_gzOut!=null) 
+        if (isGzipping())
             throw new IllegalStateException();
         if (_out==null || _bOut!=null )
         {
@@ -265,6 +297,14 @@ public class GzipStream extends ServletOutputStream
         }   
     }
     
+    /**
+     * @return true if the content is being gzipped, by either a GZIPOutputStream or a pooled deflater
+     */
+    protected boolean isGzipping()
+    {
+        return _gzOut!=null || _pooledGzOut!=null;
+    }
+
     /**
      * Check out.
      *
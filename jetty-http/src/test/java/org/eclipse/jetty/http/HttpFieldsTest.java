@@ -16,6 +16,7 @@ package org.eclipse.jetty.http;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 
@@ -283,6 +284,68 @@ public class HttpFieldsTest
         assertEquals(false, e.hasMoreElements());
     }
 
+    @Test
+    public void testRecycle() throws Exception
+    {
+        HttpFields header = new HttpFields();
+        HttpFields.Field[] fields = new HttpFields.Field[4];
+        for (int loop=0;loop<3;loop++)
+        {
+            header.put(HttpHeaders.HOST_BUFFER,"localhost");
+            header.add(HttpHeaders.ACCEPT_BUFFER,HttpHeaderValues.CACHE.lookup("text/html"));
+            header.add(HttpHeaders.ACCEPT_BUFFER,HttpHeaderValues.CACHE.lookup("text/plain"));
+            header.put("X-Custom","custom");
+            assertEquals(4,header.size());
+            assertEquals("localhost",header.getStringField("host"));
+            assertEquals("custom",header.getStringField("x-custom"));
+            Enumeration<String> e=header.getValues("Accept");
+            assertEquals("text/html",e.nextElement());
+            assertEquals("text/plain",e.nextElement());
+            assertFalse(e.hasMoreElements());
+
+            // The fields are recycled after a clear
+            for (int i=0;i<4;i++)
+            {
+                if (loop==0)
+                    fields[i]=header.getField(i);
+                else
+                    assertSame(fields[i],header.getField(i));
+            }
+            header.clear();
+            assertEquals(0,header.size());
+            assertNull(header.getStringField("host"));
+            assertNull(header.getStringField("x-custom"));
+        }
+    }
+
+    @Test
+    public void testManyNames() throws Exception
+    {
+        HttpFields header = new HttpFields();
+        for (int i=0;i<100;i++)
+            header.add("X-Name-"+i,"value"+i);
+        for (int i=0;i<100;i+=2)
+            header.remove("x-name-"+i);
+        header.put("X-NAME-1","one");
+
+        assertEquals(50,header.size());
+        for (int i=0;i<100;i++)
+        {
+            if (i==1)
+                assertEquals("one",header.getStringField("X-Name-1"));
+            else if (i%2==0)
+                assertFalse(header.containsKey("X-Name-"+i));
+            else
+                assertEquals("value"+i,header.getStringField("x-name-"+i));
+        }
+
+        Set<String> names=new HashSet<String>();
+        Enumeration<String> e=header.getFieldNames();
+        while (e.hasMoreElements())
+            assertTrue(names.add(e.nextElement().toLowerCase()));
+        assertEquals(50,names.size());
+    }
+
     @Test
     public void testCase() throws Exception
     {
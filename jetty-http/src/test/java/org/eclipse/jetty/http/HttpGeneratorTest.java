@@ -17,13 +17,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.io.Buffer;
 import org.eclipse.jetty.io.ByteArrayBuffer;
 import org.eclipse.jetty.io.ByteArrayEndPoint;
 import org.eclipse.jetty.io.SimpleBuffers;
 import org.eclipse.jetty.io.View;
+import org.eclipse.jetty.io.nio.FileRegionBuffer;
+import org.eclipse.jetty.toolchain.test.Stress;
 import org.junit.Test;
 
 /**
@@ -58,6 +63,283 @@ public class HttpGeneratorTest
         assertTrue(endp.getOut().toString().indexOf("Content-Length")==-1);
     }
 
+    @Test
+    public void testStaticFields() throws Exception
+    {
+        HttpFields statics = new HttpFields();
+        statics.add("Server","Static");
+        statics.add("X-Powered-By","Test");
+        statics.add("Content-Type","text/plain");
+        StaticHttpFields staticFields = new StaticHttpFields(statics);
+        assertEquals("Server: Static\015\012X-Powered-By: Test\015\012Content-Type: text/plain\015\012",staticFields.toString());
+
+        HttpFields fields = new HttpFields();
+        String response = generate(staticFields,fields,200);
+        assertEquals(1,count(response,"Server: "));
+        assertTrue(response.contains("Server: Static\015\012"));
+        assertTrue(response.contains("X-Powered-By: Test\015\012"));
+        assertTrue(response.contains("Content-Type: text/plain\015\012"));
+
+        fields.put("Content-Type","text/html");
+        fields.put("x-powered-by","Other");
+        response = generate(staticFields,fields,200);
+        assertEquals(1,count(response,"Content-Type: "));
+        assertEquals(1,count(response,"X-Powered-By: ")+count(response,"x-powered-by: "));
+        assertTrue(response.contains("Content-Type: text/html\015\012"));
+        assertTrue(response.contains("x-powered-by: Other\015\012"));
+        assertTrue(response.contains("Server: Static\015\012"));
+
+        fields.clear();
+        response = generate(staticFields,fields,304);
+        assertEquals(0,count(response,"Content-Type: "));
+        assertTrue(response.contains("X-Powered-By: Test\015\012"));
+    }
+
+    @Test
+    public void testStaticFieldsReuse() throws Exception
+    {
+        HttpFields statics = new HttpFields();
+        statics.add("X-Powered-By","Test");
+        statics.add("Content-Type","text/plain");
+        StaticHttpFields staticFields = new StaticHttpFields(statics);
+        int loops = Stress.isEnabled()?1000000:1000;
+
+        String[] responses = new String[2];
+        for (boolean useStatic : new boolean[]{false,true})
+        {
+            Buffer header=new ByteArrayBuffer(1500);
+            ByteArrayEndPoint endp = new ByteArrayEndPoint(new byte[0],4096);
+            HttpGenerator hg = new HttpGenerator(new SimpleBuffers(header,new ByteArrayBuffer(8096)),endp);
+            hg.setSendServerVersion(true);
+            HttpFields fields = new HttpFields();
+            Buffer content = new ByteArrayBuffer("Hello World\n");
+            String first=null;
+            for (int i=0;i<loops;i++)
+            {
+                hg.reset(true);
+                endp.reset();
+                fields.clear();
+                if (useStatic)
+                    hg.setStaticFields(staticFields);
+                else
+                {
+                    fields.put("X-Powered-By","Test");
+                    fields.put(HttpHeaders.CONTENT_TYPE_BUFFER,MimeTypes.TEXT_PLAIN_BUFFER);
+                }
+                hg.setResponse(200,null);
+                hg.setVersion(11);
+                content.setGetIndex(0);
+                hg.addContent(content,true);
+                hg.completeHeader(fields,true);
+                hg.complete();
+
+                // Every response from a reused generator is the same
+                String response=endp.getOut().toString();
+                if (first==null)
+                    first=response;
+                else
+                    assertEquals(first,response);
+            }
+            responses[useStatic?1:0]=first;
+        }
+
+        // The static fields produce the same response as the equivalent fields
+        assertTrue(responses[1].contains("X-Powered-By: Test"));
+        assertEquals(responses[0],responses[1]);
+    }
+
+    @Test
+    public void testPipelined() throws Exception
+    {
+        ByteArrayEndPoint endp = new ByteArrayEndPoint(new byte[0],4096);
+        HttpGenerator hg = new HttpGenerator(new SimpleBuffers(new ByteArrayBuffer(1500),new ByteArrayBuffer(8096)),endp);
+        hg.setPipelineBuffer(4096,60000);
+        HttpFields fields = new HttpFields();
+
+        // Responses completed while more requests are received are held back
+        respond(hg,fields,"one",false,true);
+        respond(hg,fields,"two",true,true);
+        assertEquals("",endp.getOut().toString());
+
+        // and written with the first response that is not
+        respond(hg,fields,"three",false,false);
+        String out=endp.getOut().toString();
+        assertTrue(out.indexOf("one")<out.indexOf("two"));
+        assertTrue(out.indexOf("two")<out.indexOf("three"));
+        assertEquals(3,count(out,"HTTP/1.1 200 OK"));
+        assertTrue(out.contains("\015\0123\015\012two\015\0120\015\012\015\012"));
+        endp.getOut().clear();
+
+        // or when flushed
+        respond(hg,fields,"four",false,true);
+        assertEquals("",endp.getOut().toString());
+        assertTrue(hg.flushPipelined());
+        assertTrue(endp.getOut().toString().endsWith("four"));
+        endp.getOut().clear();
+
+        // A response that does not fit is written with those held back
+        hg.setPipelineBuffer(200,60000);
+        respond(hg,fields,"five",false,true);
+        assertEquals("",endp.getOut().toString());
+        StringBuilder big=new StringBuilder();
+        while (big.length()<200)
+            big.append("0123456789");
+        respond(hg,fields,big.toString(),false,true);
+        out=endp.getOut().toString();
+        assertEquals(2,count(out,"HTTP/1.1 200 OK"));
+        assertTrue(out.endsWith("6789"));
+        endp.getOut().clear();
+
+        // A response is not held back longer than the delay
+        hg.setPipelineBuffer(4096,0);
+        respond(hg,fields,"six",false,true);
+        assertEquals("",endp.getOut().toString());
+        respond(hg,fields,"seven",false,true);
+        assertEquals(2,count(endp.getOut().toString(),"HTTP/1.1 200 OK"));
+        endp.getOut().clear();
+
+        // A response that closes the connection is not held back
+        hg.setPipelineBuffer(4096,60000);
+        fields.put(HttpHeaders.CONNECTION_BUFFER,HttpHeaderValues.CLOSE_BUFFER);
+        respond(hg,fields,"eight",false,true);
+        assertTrue(endp.getOut().toString().endsWith("eight"));
+    }
+
+    @Test
+    public void testPipelinedBufferReturned() throws Exception
+    {
+        final int size=100;
+        final AtomicInteger outstanding=new AtomicInteger();
+        SimpleBuffers buffers=new SimpleBuffers(new ByteArrayBuffer(1500),new ByteArrayBuffer(8096))
+        {
+            @Override
+            public Buffer getBuffer(int capacity)
+            {
+                if (capacity!=size)
+                    return super.getBuffer(capacity);
+                outstanding.incrementAndGet();
+                return new ByteArrayBuffer(capacity);
+            }
+
+            @Override
+            public void returnBuffer(Buffer buffer)
+            {
+                if (buffer.capacity()==size)
+                    outstanding.decrementAndGet();
+                else
+                    super.returnBuffer(buffer);
+            }
+        };
+        ByteArrayEndPoint endp = new ByteArrayEndPoint(new byte[0],4096);
+        HttpGenerator hg = new HttpGenerator(buffers,endp);
+        hg.setPipelineBuffer(size,60000);
+        HttpFields fields = new HttpFields();
+
+        // A held response survives a reset and the return of buffers
+        respond(hg,fields,"one",false,true);
+        assertEquals(1,outstanding.get());
+        hg.reset(true);
+        hg.returnBuffers();
+        assertEquals(1,outstanding.get());
+        assertEquals("",endp.getOut().toString());
+        assertTrue(hg.flushPipelined());
+        assertTrue(endp.getOut().toString().endsWith("one"));
+        assertEquals(0,outstanding.get());
+        endp.getOut().clear();
+
+        // An empty buffer left by a response that did not fit is returned
+        StringBuilder big=new StringBuilder();
+        while (big.length()<size)
+            big.append("0123456789");
+        respond(hg,fields,big.toString(),false,true);
+        assertTrue(endp.getOut().toString().endsWith("6789"));
+        assertEquals(1,outstanding.get());
+        hg.returnBuffers();
+        assertEquals(0,outstanding.get());
+
+        respond(hg,fields,big.toString(),false,true);
+        assertEquals(1,outstanding.get());
+        hg.reset(true);
+        assertEquals(0,outstanding.get());
+    }
+
+    @Test
+    public void testFileContentClosedOnReset() throws Exception
+    {
+        File file=File.createTempFile("content",".txt");
+        file.deleteOnExit();
+        FileOutputStream out=new FileOutputStream(file);
+        out.write(new byte[10000]);
+        out.close();
+
+        final AtomicInteger closes=new AtomicInteger();
+        FileRegionBuffer content=new FileRegionBuffer(file)
+        {
+            @Override
+            public synchronized void close()
+            {
+                closes.incrementAndGet();
+                super.close();
+            }
+        };
+
+        SimpleBuffers buffers=new SimpleBuffers(new ByteArrayBuffer(1500),new ByteArrayBuffer(8096));
+        ByteArrayEndPoint endp = new ByteArrayEndPoint(new byte[0],4096);
+        HttpGenerator hg = new HttpGenerator(buffers,endp);
+        hg.setResponse(200,null);
+        hg.setVersion(11);
+
+        // The content does not fit the buffer, so some of it is left unsent
+        hg.addContent(content,false);
+        assertTrue(content.length()>0);
+        int closed=closes.get();
+        hg.reset(true);
+        assertEquals(closed+1,closes.get());
+        file.delete();
+    }
+
+    private void respond(HttpGenerator hg, HttpFields fields, String content, boolean chunked, boolean pipelined) throws Exception
+    {
+        hg.reset(false);
+        hg.setResponse(200,null);
+        hg.setVersion(11);
+        if (chunked)
+        {
+            hg.completeHeader(fields,false);
+            hg.addContent(new View(new ByteArrayBuffer(content)),true);
+        }
+        else
+        {
+            hg.addContent(new View(new ByteArrayBuffer(content)),true);
+            hg.completeHeader(fields,true);
+        }
+        hg.setPipelined(pipelined);
+        hg.complete();
+        while (!hg.isComplete())
+            hg.flushBuffer();
+    }
+
+    private String generate(StaticHttpFields staticFields, HttpFields fields, int status) throws Exception
+    {
+        ByteArrayEndPoint endp = new ByteArrayEndPoint(new byte[0],4096);
+        HttpGenerator hg = new HttpGenerator(new SimpleBuffers(new ByteArrayBuffer(1500),new ByteArrayBuffer(8096)),endp);
+        hg.setSendServerVersion(true);
+        hg.setStaticFields(staticFields);
+        hg.setResponse(status,null);
+        hg.setVersion(11);
+        hg.completeHeader(fields,true);
+        hg.complete();
+        return endp.getOut().toString();
+    }
+
+    private int count(String s, String sub)
+    {
+        int count=0;
+        for (int i=s.indexOf(sub);i>=0;i=s.indexOf(sub,i+1))
+            count++;
+        return count;
+    }
+
     @Test
     public void testHTTP() throws Exception
     {
@@ -0,0 +1,130 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.jetty.util.URIUtil;
+import org.junit.Test;
+
+public class PathCacheTest
+{
+    private static String canonicalPath(PathCache cache, String uri)
+    {
+        HttpURI httpURI = new HttpURI();
+        byte[] bytes = ("xx"+uri).getBytes();
+        httpURI.parse(bytes,2,bytes.length-2);
+        return httpURI.getCanonicalPath(cache);
+    }
+
+    @Test
+    public void testAdmission() throws Exception
+    {
+        PathCache cache = new PathCache(16);
+
+        String first=canonicalPath(cache,"/context/path/info?query");
+        assertEquals(0,cache.getAdmissions());
+        String second=canonicalPath(cache,"/context/path/info?other");
+        assertEquals(1,cache.getAdmissions());
+        assertEquals(first,second);
+        assertEquals(2,cache.getMisses());
+
+        String third=canonicalPath(cache,"/context/path/info");
+        assertSame(second,third);
+        assertEquals(1,cache.getHits());
+        assertEquals(third.length(),cache.getSavedChars());
+        assertEquals(1.0/3,cache.getHitRatio(),0.0001);
+
+        cache.clear();
+        assertTrue(third!=canonicalPath(cache,"/context/path/info"));
+    }
+
+    @Test
+    public void testSmallCapacity() throws Exception
+    {
+        for (int capacity=1;capacity<=2;capacity++)
+        {
+            PathCache cache = new PathCache(capacity);
+            assertEquals(2,cache.getCapacity());
+
+            String first=canonicalPath(cache,"/a/b");
+            String second=canonicalPath(cache,"/a/b");
+            assertEquals(first,second);
+            assertEquals(1,cache.getAdmissions());
+            assertSame(second,canonicalPath(cache,"/a/b"));
+            assertEquals(1,cache.getHits());
+
+            for (int i=0;i<10;i++)
+                assertEquals("/x/"+i,canonicalPath(cache,"/x/"+i));
+        }
+    }
+
+    @Test
+    public void testSameAsUncached() throws Exception
+    {
+        PathCache cache = new PathCache(16);
+        String[] uris = {
+            "/", "/a/b/c", "/a/./b", "/a/../b", "/../x", "/a/b/..", "/%2e%2e/x", "/a%20b",
+            "/caf%C3%A9", "/a;jsessionid=123", "/a%2Fb", "http://host:8080/p/q?r", "*"};
+        for (int i=0;i<3;i++)
+        {
+            for (String uri : uris)
+            {
+                HttpURI httpURI = new HttpURI(uri);
+                assertEquals(uri,URIUtil.canonicalPath(httpURI.getDecodedPath()),canonicalPath(cache,uri));
+            }
+        }
+        assertTrue(cache.getHits()>0);
+    }
+
+    @Test
+    public void testScannerDoesNotPollute() throws Exception
+    {
+        PathCache cache = new PathCache(64);
+        String[] hot = new String[32];
+        for (int i=0;i<hot.length;i++)
+        {
+            hot[i]="/app/resource/"+i;
+            for (int j=0;j<4;j++)
+                canonicalPath(cache,hot[i]);
+        }
+        long admissions=cache.getAdmissions();
+
+        for (int i=0;i<10000;i++)
+        {
+            canonicalPath(cache,"/scan/"+Integer.toHexString(i*7919)+".php");
+            if (i%100==0)
+                canonicalPath(cache,hot[(i/100)%hot.length]);
+        }
+        assertTrue(cache.getAdmissions()-admissions<100);
+
+        long hits=cache.getHits();
+        for (String path : hot)
+            canonicalPath(cache,path);
+        assertTrue(cache.getHits()-hits>=hot.length*3/4);
+    }
+
+    @Test
+    public void testNoPath() throws Exception
+    {
+        PathCache cache = new PathCache(16);
+        assertNull(canonicalPath(cache,"http://host:8080"));
+        assertNull(canonicalPath(cache,"/.."));
+        assertNull(canonicalPath(cache,"/.."));
+        assertEquals(0,cache.getAdmissions());
+    }
+}
@@ -127,6 +127,54 @@ public class PathMapTest extends TestCase
         assertTrue("!match *.foo", !PathMap.match("*.foo", "anything.bar"));
     }
 
+    @Test
+    public void testCompiledPathMap() throws Exception
+    {
+        PathMap p = new PathMap();
+
+        p.put("/abs/path", "1");
+        p.put("/abs/path/longer", "2");
+        p.put("/animal/bird/*", "3");
+        p.put("/animal/fish/*", "4");
+        p.put("/animal/*", "5");
+        p.put("*.tar.gz", "6");
+        p.put("*.gz", "7");
+        p.put("/", "8");
+        p.put("/XXX:/YYY", "9");
+        p.put("/a//*", "10");
+
+        String[] paths = {
+                        "/abs/path", "/abs/path/xxx", "/abs/pith", "/abs/path/longer", "/abs/path/",
+                        "/animal/bird/eagle/bald", "/animal/fish/shark/grey", "/animal/insect/bug",
+                        "/animal", "/animal/", "/animal/x", "/animal/*", "/animal/fish", "/animal/fish/",
+                        "/animal/bird/path.tar.gz", "/suffix/path.tar.gz", "/suffix/path.gz",
+                        "/suffix.tar/path.gz", "/animal/path.gz", "/Other/path", "/XXX", "/YYY", "/XXX/",
+                        "/a", "/a/", "/a//", "/a//b", "/a/b", "/", "", "path.gz", ".gz", "/.gz", "/x.", "/animals/x"};
+
+        assertCompiled(p,paths);
+
+        p.put("/*", "0");
+        assertCompiled(p,paths);
+
+        PathMap nodefault = new PathMap(true);
+        nodefault.put("/", "1");
+        nodefault.put("*.jsp", "2");
+        assertCompiled(nodefault,paths);
+        assertCompiled(nodefault,new String[]{"/index.jsp","/x/index.jsp"});
+    }
+
+    private void assertCompiled(PathMap p, String[] paths)
+    {
+        CompiledPathMap compiled = new CompiledPathMap(p);
+        for (String path : paths)
+        {
+            assertSame(path, p.getMatch(path), compiled.getMatch(path));
+            assertEquals(path, p.match(path), compiled.match(path));
+            assertEquals(path, p.containsMatch(path), compiled.containsMatch(path));
+            assertEquals(path, p.getMatches(path), compiled.getMatches(path));
+        }
+    }
+
     /**
      * See JIRA issue: JETTY-88.
      */
@@ -0,0 +1,131 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.http.gzip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.jetty.util.IO;
+import org.junit.Test;
+
+public class DeflaterPoolTest
+{
+    private static byte[] content(int length)
+    {
+        StringBuilder b = new StringBuilder();
+        for (int i=0;b.length()<length;i++)
+            b.append("line ").append(i).append(" of some compressible content\n");
+        return b.substring(0,length).getBytes();
+    }
+
+    private static byte[] gunzip(byte[] gzipped) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IO.copy(new GZIPInputStream(new ByteArrayInputStream(gzipped)),out);
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(DeflaterPool pool, byte[] content) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GzipOutputStream gzip = new GzipOutputStream(out,pool,512);
+        gzip.write(content,0,content.length/2);
+        gzip.write(content[content.length/2]);
+        gzip.write(content,content.length/2+1,content.length-content.length/2-1);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testReuse() throws Exception
+    {
+        DeflaterPool pool = new DeflaterPool();
+        for (int length : new int[]{1,100,10000,100000})
+        {
+            byte[] content = content(length);
+            byte[] gzipped = gzip(pool,content);
+            assertEquals(new String(content),new String(gunzip(gzipped)));
+        }
+        assertEquals(1,pool.getCreated());
+        assertEquals(1,pool.getSize());
+
+        assertEquals(110101,pool.getBytesIn());
+        assertTrue(pool.getCompressionRatio()>0 && pool.getCompressionRatio()<0.5);
+        assertTrue(pool.getNanosPerByte()>0);
+
+        byte[] content = content(1000);
+        assertEquals(new String(content),new String(gunzip(gzip(null,content))));
+    }
+
+    @Test
+    public void testBounded() throws Exception
+    {
+        DeflaterPool pool = new DeflaterPool(Deflater.BEST_SPEED,Deflater.FILTERED,2);
+        Deflater[] deflaters = new Deflater[3];
+        for (int i=0;i<deflaters.length;i++)
+            deflaters[i]=pool.acquire();
+        assertEquals(3,pool.getCreated());
+        for (Deflater deflater : deflaters)
+            pool.release(deflater);
+        assertEquals(2,pool.getSize());
+
+        pool.acquire();
+        assertEquals(1,pool.getSize());
+        assertEquals(3,pool.getCreated());
+        pool.clear();
+        assertEquals(0,pool.getSize());
+    }
+
+    @Test
+    public void testFinishAndAbort() throws Exception
+    {
+        DeflaterPool pool = new DeflaterPool();
+        byte[] content = content(1000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GzipOutputStream gzip = new GzipOutputStream(out,pool,512);
+        gzip.write(content);
+        gzip.finish();
+        assertEquals(1,pool.getSize());
+        try
+        {
+            gzip.write(content);
+            fail();
+        }
+        catch(IOException e)
+        {
+            // expected
+        }
+        gzip.close();
+        assertEquals(1,pool.getSize());
+        assertEquals(new String(content),new String(gunzip(out.toByteArray())));
+
+        gzip = new GzipOutputStream(new ByteArrayOutputStream(),pool,512);
+        assertEquals(0,pool.getSize());
+        gzip.write(content);
+        gzip.abort();
+        assertEquals(1,pool.getSize());
+
+        // The reset deflater compresses a new stream
+        assertEquals(new String(content),new String(gunzip(gzip(pool,content))));
+        assertEquals(1,pool.getCreated());
+    }
+}
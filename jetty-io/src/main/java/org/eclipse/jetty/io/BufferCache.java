@@ -14,6 +14,7 @@
 package org.eclipse.jetty.io;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map.Entry;
 
@@ -23,14 +24,44 @@ import org.eclipse.jetty.util.StringMap;
 /** 
  * Stores a collection of {@link Buffer} objects.
  * Buffers are stored in an ordered collection and can retreived by index or value
- * 
+ * <p>
+ * Buffers are looked up case insensitively by walking a trie of the bytes of the
+ * cached values, so that a header name or value can be resolved directly from the
+ * bytes of the buffer it was parsed into without hashing it. Each row of the trie
+ * has a column for each letter, in either case, and for the common punctuation of
+ * HTTP tokens. The rows of the other ASCII bytes are held in a sparse index.
  */
 public class BufferCache
 {
+    private static final int ROW_SIZE=32;
+    private static final int[] __column = new int[128];
+    static
+    {
+        Arrays.fill(__column,-1);
+        for (int c='A';c<='Z';c++)
+        {
+            __column[c]=c-'A';
+            __column[c-'A'+'a']=c-'A';
+        }
+        __column['-']=26;
+        __column['.']=27;
+        __column['/']=28;
+        __column[' ']=29;
+        __column[':']=30;
+        __column[';']=31;
+    }
+
     private final HashMap _bufferMap=new HashMap();
     private final StringMap _stringMap=new StringMap(StringMap.CASE_INSENSTIVE);
     private final ArrayList _index= new ArrayList();
 
+    // The trie. Row 0 is the root and 0 is used as the null row.
+    private int[] _trie=new int[ROW_SIZE*16];
+    private int[][] _bigIndex=new int[16][];
+    private CachedBuffer[] _values=new CachedBuffer[16];
+    private int _rows=1;
+    private boolean _trieComplete=true;
+
     /* ------------------------------------------------------------------------------- */
     /** Add a buffer to the cache at the specified index.
      * @param value The content of the buffer.
@@ -40,6 +71,7 @@ public class BufferCache
         CachedBuffer buffer= new CachedBuffer(value, ordinal);
         _bufferMap.put(buffer, buffer);
         _stringMap.put(value, buffer);
+        addTrie(value, buffer);
         while ((ordinal - _index.size()) >= 0)
             _index.add(null);
         if (_index.get(ordinal)==null)
@@ -56,9 +88,38 @@ public class BufferCache
 
     public CachedBuffer get(Buffer buffer)
     {
+        if (_trieComplete)
+            return get(buffer,buffer.getIndex(),buffer.length());
         return (CachedBuffer)_bufferMap.get(buffer);
     }
 
+    /* ------------------------------------------------------------------------------- */
+    /** Get a cached buffer from the bytes of a buffer without creating a {@link View}.
+     * @param buffer The buffer holding the bytes
+     * @param index The index of the first byte
+     * @param length The number of bytes
+     * @return The cached buffer that is equal ignoring case to the bytes, or null
+     */
+    public CachedBuffer get(Buffer buffer, int index, int length)
+    {
+        if (!_trieComplete)
+            return (CachedBuffer)_bufferMap.get(buffer.peek(index,length));
+
+        int row=0;
+        byte[] array=buffer.array();
+        if (array!=null)
+        {
+            for (int i=index,end=index+length;i<end && row>=0;i++)
+                row=next(row,array[i]);
+        }
+        else
+        {
+            for (int i=index,end=index+length;i<end && row>=0;i++)
+                row=next(row,buffer.peek(i));
+        }
+        return row<0?null:_values[row];
+    }
+
     public CachedBuffer get(String value)
     {
         return (CachedBuffer)_stringMap.get(value);
@@ -79,6 +140,26 @@ public class BufferCache
 
         return b;
     }
+
+    /* ------------------------------------------------------------------------------- */
+    /** Lookup the bytes of a buffer without creating a {@link View}.
+     * @param buffer The buffer holding the bytes
+     * @param index The index of the first byte
+     * @param length The number of bytes
+     * @return The cached buffer that is equal ignoring case to the bytes, or else
+     * a new case insensitive buffer holding a copy of the bytes.
+     */
+    public Buffer lookup(Buffer buffer, int index, int length)
+    {
+        Buffer b= get(buffer,index,length);
+        if (b == null)
+        {
+            byte[] bytes=new byte[length];
+            buffer.peek(index,bytes,0,length);
+            return new ByteArrayBuffer.CaseInsensitive(bytes,0,length,Buffer.IMMUTABLE);
+        }
+        return b;
+    }
     
     public CachedBuffer getBest(byte[] value, int offset, int maxLength)
     {
@@ -113,6 +194,77 @@ public class BufferCache
         return -1;
     }
     
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * @return The row of the trie for the byte after the given row, or -1 if there is none
+     */
+    private int next(int row, byte b)
+    {
+        if (b<0)
+            return -1;
+        int column=__column[b];
+        int next;
+        if (column>=0)
+            next=_trie[row*ROW_SIZE+column];
+        else
+        {
+            int[] big=_bigIndex[row];
+            next=big==null?0:big[b];
+        }
+        return next==0?-1:next;
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    private void addTrie(String value, CachedBuffer buffer)
+    {
+        for (int i=0;i<value.length();i++)
+        {
+            if (value.charAt(i)>=128)
+            {
+                // Only ASCII values are held in the trie
+                _trieComplete=false;
+                return;
+            }
+        }
+
+        int row=0;
+        for (int i=0;i<value.length();i++)
+        {
+            char c=value.charAt(i);
+            if (c>='a' && c<='z')
+                c=(char)(c-'a'+'A');
+            int column=__column[c];
+            int next=column>=0?_trie[row*ROW_SIZE+column]:(_bigIndex[row]==null?0:_bigIndex[row][c]);
+            if (next==0)
+            {
+                next=_rows++;
+                if (_rows>_values.length)
+                {
+                    int rows=_values.length*2;
+                    int[] trie=new int[rows*ROW_SIZE];
+                    System.arraycopy(_trie,0,trie,0,_trie.length);
+                    _trie=trie;
+                    int[][] bigIndex=new int[rows][];
+                    System.arraycopy(_bigIndex,0,bigIndex,0,_bigIndex.length);
+                    _bigIndex=bigIndex;
+                    CachedBuffer[] values=new CachedBuffer[rows];
+                    System.arraycopy(_values,0,values,0,_values.length);
+                    _values=values;
+                }
+                if (column>=0)
+                    _trie[row*ROW_SIZE+column]=next;
+                else
+                {
+                    if (_bigIndex[row]==null)
+                        _bigIndex[row]=new int[128];
+                    _bigIndex[row][c]=next;
+                }
+            }
+            row=next;
+        }
+        _values[row]=buffer;
+    }
+    
     public static class CachedBuffer extends ByteArrayBuffer.CaseInsensitive
     {
         private final int _ordinal;
@@ -18,10 +18,16 @@ import java.util.Locale;
 
 import org.eclipse.jetty.util.DateCache;
 
+/* ------------------------------------------------------------ */
+/** Date Format Cache of Buffers.
+ * <p>
+ * As for {@link DateCache}, the buffer of the current second is published
+ * through a volatile reference so that it may be fetched without locking.
+ * The buffers are immutable and may be shared by many threads.
+ */
 public class BufferDateCache extends DateCache
 {
-    Buffer _buffer;
-    String _last;
+    private volatile Tick _tick;
     
     public BufferDateCache()
     {
@@ -43,15 +49,32 @@ public class BufferDateCache extends DateCache
         super(format);
     }
 
-    public synchronized Buffer formatBuffer(long date)
+    public Buffer formatBuffer(long date)
     {
         String d = super.format(date);
+        Tick tick=_tick;
         //noinspection StringEquality
-        if (d==_last)
-            return _buffer;
-        _last=d;
-        _buffer=new ByteArrayBuffer(d);
-        
-        return _buffer;
+        if (tick!=null && d==tick._string)
+            return tick._buffer;
+
+        // Racing threads may each create a buffer for a new second,
+        // but they are equal and the last one published is kept.
+        tick=new Tick(d,new ByteArrayBuffer(d));
+        _tick=tick;
+        return tick._buffer;
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    private static class Tick
+    {
+        final String _string;
+        final Buffer _buffer;
+
+        Tick(String string, Buffer buffer)
+        {
+            _string=string;
+            _buffer=buffer;
+        }
     }
 }
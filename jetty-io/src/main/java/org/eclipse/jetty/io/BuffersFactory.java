@@ -8,4 +8,15 @@ public class BuffersFactory
             return new PooledBuffers(headerType,headerSize,bufferType,bufferSize,otherType,maxSize);
         return new ThreadLocalBuffers(headerType,headerSize,bufferType,bufferSize,otherType);
     }
+
+    /**
+     * @param maxRetainedBytes If greater than zero, a {@link StripedBuffers} retaining at most
+     * this many bytes is returned, otherwise as {@link #newBuffers(Buffers.Type, int, Buffers.Type, int, Buffers.Type, int)}
+     */
+    public static Buffers newBuffers(Buffers.Type headerType, int headerSize, Buffers.Type bufferType, int bufferSize, Buffers.Type otherType,int maxSize,long maxRetainedBytes)
+    {
+        if (maxRetainedBytes>0)
+            return new StripedBuffers(headerType,headerSize,bufferType,bufferSize,otherType,maxRetainedBytes);
+        return newBuffers(headerType,headerSize,bufferType,bufferSize,otherType,maxSize);
+    }
 }
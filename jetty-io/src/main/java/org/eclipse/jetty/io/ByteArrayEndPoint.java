@@ -282,6 +282,30 @@ public class ByteArrayEndPoint implements ConnectedEndPoint
         return flushed;
     }
 
+    /* ------------------------------------------------------------ */
+    /*
+     * @see org.eclipse.io.EndPoint#flush(org.eclipse.io.Buffer[])
+     */
+    public int flush(Buffer[] buffers) throws IOException
+    {
+        if (_closed)
+            throw new IOException("CLOSED");
+
+        int flushed=0;
+        for (Buffer buffer : buffers)
+        {
+            if (buffer!=null && buffer.length()>0)
+            {
+                int length=buffer.length();
+                int f=flush(buffer);
+                flushed+=f;
+                if (f<length)
+                    break;
+            }
+        }
+        return flushed;
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * 
@@ -77,6 +77,16 @@ public interface EndPoint
      */
     int flush(Buffer header, Buffer buffer, Buffer trailer) throws IOException;
 
+    /**
+     * Flush the buffers in order, each from its getIndex to its putIndex, as a single
+     * gathering write if the implementation supports it. The getIndex of each buffer is
+     * updated with the number of its bytes flushed, so a partial write leaves the
+     * remaining bytes of the buffers ready for another call.
+     * @param buffers The buffers to flush, any of which may be null or empty.
+     * @return the total number of bytes written.
+     */
+    int flush(Buffer[] buffers) throws IOException;
+
     
     /* ------------------------------------------------------------ */
     /**
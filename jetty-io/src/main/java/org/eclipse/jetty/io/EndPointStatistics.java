@@ -0,0 +1,321 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.component.AggregateLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+
+/* ------------------------------------------------------------ */
+/**
+ * I/O statistics aggregated over the {@link EndPoint}s of a connector.
+ * <p>
+ * Unlike a {@link NetworkTrafficListener}, which is notified of every
+ * buffer, end points record only counters and times here: the bytes read
+ * and written, the number of read and write system calls, the writes that
+ * could not write all the bytes offered and the time spent in those calls
+ * and blocked waiting for a channel to become readable or writable.
+ * <p>
+ * End points without statistics do not take any time samples, so the cost
+ * when disabled is a null check per call.
+ */
+public class EndPointStatistics implements Dumpable
+{
+    private final AtomicLong _bytesFilled = new AtomicLong();
+    private final AtomicLong _bytesFlushed = new AtomicLong();
+    private final AtomicLong _emptyFills = new AtomicLong();
+    private final AtomicLong _partialFlushes = new AtomicLong();
+    private final HistogramStatistic _fillTime = new HistogramStatistic();
+    private final HistogramStatistic _flushTime = new HistogramStatistic();
+    private final HistogramStatistic _blockReadableTime = new HistogramStatistic();
+    private final HistogramStatistic _blockWritableTime = new HistogramStatistic();
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Record a read system call.
+     * @param filled The bytes read, or -1 for end of file
+     * @param nanos The time of the call in ns
+     */
+    public void filled(int filled, long nanos)
+    {
+        if (filled>0)
+            _bytesFilled.addAndGet(filled);
+        else if (filled==0)
+            _emptyFills.incrementAndGet();
+        _fillTime.set(nanos/1000);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Record a write system call.
+     * @param flushed The bytes written
+     * @param offered The bytes that were offered to the write
+     * @param nanos The time of the call in ns
+     */
+    public void flushed(long flushed, long offered, long nanos)
+    {
+        if (flushed>0)
+            _bytesFlushed.addAndGet(flushed);
+        if (flushed<offered)
+            _partialFlushes.incrementAndGet();
+        _flushTime.set(nanos/1000);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Record a wait for a channel to become readable.
+     * @param millis The time blocked in ms
+     */
+    public void blockedReadable(long millis)
+    {
+        _blockReadableTime.set(millis);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Record a wait for a channel to become writable.
+     * @param millis The time blocked in ms
+     */
+    public void blockedWritable(long millis)
+    {
+        _blockWritableTime.set(millis);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Reset the statistics.
+     */
+    public void reset()
+    {
+        _bytesFilled.set(0);
+        _bytesFlushed.set(0);
+        _emptyFills.set(0);
+        _partialFlushes.set(0);
+        _fillTime.reset();
+        _flushTime.reset();
+        _blockReadableTime.reset();
+        _blockWritableTime.reset();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of bytes read
+     */
+    public long getBytesFilled()
+    {
+        return _bytesFilled.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of bytes written
+     */
+    public long getBytesFlushed()
+    {
+        return _bytesFlushed.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of read system calls
+     */
+    public long getFills()
+    {
+        return _fillTime.getCount();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of read system calls that read no bytes
+     */
+    public long getEmptyFills()
+    {
+        return _emptyFills.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of write system calls
+     */
+    public long getFlushes()
+    {
+        return _flushTime.getCount();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of write system calls that did not write all the bytes offered
+     */
+    public long getPartialFlushes()
+    {
+        return _partialFlushes.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of times an end point blocked waiting to read
+     */
+    public long getBlockReadables()
+    {
+        return _blockReadableTime.getCount();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of times an end point blocked waiting to write
+     */
+    public long getBlockWritables()
+    {
+        return _blockWritableTime.getCount();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The histogram of the time in &micro;s of read system calls
+     */
+    public HistogramStatistic getFillTime()
+    {
+        return _fillTime;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The histogram of the time in &micro;s of write system calls
+     */
+    public HistogramStatistic getFlushTime()
+    {
+        return _flushTime;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The histogram of the time in ms blocked waiting to read
+     */
+    public HistogramStatistic getBlockReadableTime()
+    {
+        return _blockReadableTime;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The histogram of the time in ms blocked waiting to write
+     */
+    public HistogramStatistic getBlockWritableTime()
+    {
+        return _blockWritableTime;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum time in &micro;s of a read system call
+     */
+    public long getFillTimeMax()
+    {
+        return _fillTime.getMax();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return An upper bound of the 99th percentile of the time in &micro;s of a read system call
+     */
+    public long getFillTime99()
+    {
+        return _fillTime.getPercentile(99);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum time in &micro;s of a write system call
+     */
+    public long getFlushTimeMax()
+    {
+        return _flushTime.getMax();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return An upper bound of the 99th percentile of the time in &micro;s of a write system call
+     */
+    public long getFlushTime99()
+    {
+        return _flushTime.getPercentile(99);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum time in ms blocked waiting to read
+     */
+    public long getBlockReadableTimeMax()
+    {
+        return _blockReadableTime.getMax();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return An upper bound of the 99th percentile of the time in ms blocked waiting to read
+     */
+    public long getBlockReadableTime99()
+    {
+        return _blockReadableTime.getPercentile(99);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum time in ms blocked waiting to write
+     */
+    public long getBlockWritableTimeMax()
+    {
+        return _blockWritableTime.getMax();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return An upper bound of the 99th percentile of the time in ms blocked waiting to write
+     */
+    public long getBlockWritableTime99()
+    {
+        return _blockWritableTime.getPercentile(99);
+    }
+
+    /* ------------------------------------------------------------ */
+    public String dump()
+    {
+        return AggregateLifeCycle.dump(this);
+    }
+
+    /* ------------------------------------------------------------ */
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        out.append(String.valueOf(this)).append("\n");
+        AggregateLifeCycle.dump(out,indent,Arrays.asList(new Object[]{
+                "fill(us) "+_fillTime,
+                "flush(us) "+_flushTime,
+                "blockReadable(ms) "+_blockReadableTime,
+                "blockWritable(ms) "+_blockWritableTime}));
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{in=%d/%d,out=%d/%d,empty=%d,partial=%d,blocked=%d/%d}",
+                getClass().getSimpleName(),hashCode(),
+                getBytesFilled(),getFills(),getBytesFlushed(),getFlushes(),
+                getEmptyFills(),getPartialFlushes(),getBlockReadables(),getBlockWritables());
+    }
+}
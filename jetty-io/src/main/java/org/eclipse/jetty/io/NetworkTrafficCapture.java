@@ -0,0 +1,449 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/* ------------------------------------------------------------ */
+/**
+ * Capture of network traffic to a file.
+ * <p>
+ * Unlike a {@link NetworkTrafficListener}, the capture does not hand out buffers
+ * on the I/O path. The bytes of each event are copied into a slot of a bounded
+ * ring that is allocated when the capture is created, and a background thread
+ * drains the ring to the file. Claiming a slot is lock free and if the ring is
+ * full the event is dropped and counted rather than waiting for the drainer.
+ * Events larger than the snap length are truncated, as with tcpdump.
+ * <p>
+ * Only connections from the remote addresses added with {@link #addRemoteAddress(String)}
+ * are captured, or all connections if none have been added. A capture records the
+ * connections of the connectors it is set on.
+ * <p>
+ * The file starts with the int {@link #MAGIC}, the short {@link #VERSION} and the int
+ * snap length, followed by a record per event:
+ * <pre>
+ * byte   event ({@link #OPENED}, {@link #INCOMING}, {@link #OUTGOING} or {@link #CLOSED})
+ * long   timestamp in ms
+ * long   connection id
+ * int    length of the event
+ * int    captured length
+ * byte[] captured bytes
+ * </pre>
+ * The bytes of an {@link #OPENED} event are the ISO-8859-1 string
+ * <code>remote-address:port&gt;local-address:port</code>.
+ */
+public class NetworkTrafficCapture extends AbstractLifeCycle implements Runnable
+{
+    private static final Logger LOG = Log.getLogger(NetworkTrafficCapture.class);
+
+    public static final int MAGIC=0x4A545443; // JTTC
+    public static final short VERSION=1;
+
+    public static final byte OPENED=1;
+    public static final byte INCOMING=2;
+    public static final byte OUTGOING=3;
+    public static final byte CLOSED=4;
+
+    private final Slot[] _ring;
+    private final int _mask;
+    private final int _snapLength;
+    private final AtomicLong _tail = new AtomicLong();
+    private long _head;
+    private final AtomicLong _connections = new AtomicLong();
+    private final AtomicLong _captured = new AtomicLong();
+    private final AtomicLong _dropped = new AtomicLong();
+    private final Set<String> _remoteAddresses = new CopyOnWriteArraySet<String>();
+    private String _fileName;
+    private long _drainInterval=10;
+    private volatile Thread _drainer;
+    private DataOutputStream _out;
+
+    /* ------------------------------------------------------------ */
+    public NetworkTrafficCapture()
+    {
+        this(1024,2048);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param slots The number of events the ring can hold, which is rounded up to a power of 2
+     * @param snapLength The maximum number of bytes captured for each event
+     */
+    public NetworkTrafficCapture(int slots, int snapLength)
+    {
+        int size=1;
+        while (size<slots)
+            size<<=1;
+        _ring=new Slot[size];
+        for (int i=0;i<size;i++)
+            _ring[i]=new Slot(i,snapLength);
+        _mask=size-1;
+        _snapLength=snapLength;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The name of the file the capture is written to
+     */
+    public String getFileName()
+    {
+        return _fileName;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param fileName The name of the file the capture is written to. An existing file is overwritten.
+     */
+    public void setFileName(String fileName)
+    {
+        if (isRunning())
+            throw new IllegalStateException("Running");
+        _fileName=fileName;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The time in ms the drainer waits when the ring is empty
+     */
+    public long getDrainInterval()
+    {
+        return _drainInterval;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param drainInterval The time in ms the drainer waits when the ring is empty
+     */
+    public void setDrainInterval(long drainInterval)
+    {
+        _drainInterval=drainInterval;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param address The remote host address (eg "127.0.0.1") of connections to capture
+     */
+    public void addRemoteAddress(String address)
+    {
+        _remoteAddresses.add(address);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param address The remote host address of connections to no longer capture
+     */
+    public void removeRemoteAddress(String address)
+    {
+        _remoteAddresses.remove(address);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of events the ring can hold
+     */
+    public int getSlots()
+    {
+        return _ring.length;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum number of bytes captured for each event
+     */
+    public int getSnapLength()
+    {
+        return _snapLength;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of connections captured
+     */
+    public long getConnections()
+    {
+        return _connections.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of events captured
+     */
+    public long getCaptured()
+    {
+        return _captured.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of events dropped because the ring was full
+     */
+    public long getDropped()
+    {
+        return _dropped.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Start capturing a connection.
+     * @param socket The socket of the connection
+     * @return The id of the connection to pass to the other capture methods, or -1 if the connection is not captured.
+     */
+    public long opened(Socket socket)
+    {
+        InetSocketAddress remote=(InetSocketAddress)socket.getRemoteSocketAddress();
+        String address=remote==null||remote.getAddress()==null?null:remote.getAddress().getHostAddress();
+        if (!_remoteAddresses.isEmpty() && !_remoteAddresses.contains(address))
+            return -1;
+
+        long id=_connections.incrementAndGet();
+        Slot slot=claim();
+        if (slot!=null)
+        {
+            String opened=address+":"+socket.getPort()+">"+socket.getLocalAddress().getHostAddress()+":"+socket.getLocalPort();
+            int length=opened.length();
+            int captured=Math.min(length,_snapLength);
+            for (int i=0;i<captured;i++)
+                slot._data[i]=(byte)opened.charAt(i);
+            publish(slot,OPENED,id,length,captured);
+        }
+        return id;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Capture bytes received on a connection.
+     * @param id The id returned from {@link #opened(Socket)}
+     * @param buffer The buffer holding the bytes
+     * @param index The index of the first byte
+     * @param length The number of bytes
+     */
+    public void incoming(long id, Buffer buffer, int index, int length)
+    {
+        capture(INCOMING,id,buffer,index,length);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Capture bytes sent on a connection.
+     * @param id The id returned from {@link #opened(Socket)}
+     * @param buffer The buffer holding the bytes
+     * @param index The index of the first byte
+     * @param length The number of bytes
+     */
+    public void outgoing(long id, Buffer buffer, int index, int length)
+    {
+        capture(OUTGOING,id,buffer,index,length);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Stop capturing a connection.
+     * @param id The id returned from {@link #opened(Socket)}
+     */
+    public void closed(long id)
+    {
+        Slot slot=claim();
+        if (slot!=null)
+            publish(slot,CLOSED,id,0,0);
+    }
+
+    /* ------------------------------------------------------------ */
+    private void capture(byte event, long id, Buffer buffer, int index, int length)
+    {
+        if (length<=0)
+            return;
+        Slot slot=claim();
+        if (slot!=null)
+        {
+            int captured=Math.min(length,_snapLength);
+            buffer.peek(index,slot._data,0,captured);
+            publish(slot,event,id,length,captured);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Claim the slot at the tail of the ring.
+     * @return The slot, or null if the ring is full
+     */
+    private Slot claim()
+    {
+        while (true)
+        {
+            long tail=_tail.get();
+            Slot slot=_ring[(int)(tail&_mask)];
+            long sequence=slot._sequence;
+            if (sequence==tail)
+            {
+                if (_tail.compareAndSet(tail,tail+1))
+                {
+                    slot._position=tail;
+                    return slot;
+                }
+            }
+            else if (sequence<tail)
+            {
+                // The slot has not been drained since the last lap
+                _dropped.incrementAndGet();
+                return null;
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private void publish(Slot slot, byte event, long id, int length, int captured)
+    {
+        slot._event=event;
+        slot._timestamp=System.currentTimeMillis();
+        slot._id=id;
+        slot._length=length;
+        slot._captured=captured;
+        _captured.incrementAndGet();
+        // The volatile write makes the slot visible to the drainer
+        slot._sequence=slot._position+1;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Write the slots published at the head of the ring.
+     * @return The number of events written
+     * @throws IOException
+     */
+    private int drain() throws IOException
+    {
+        int drained=0;
+        while (true)
+        {
+            Slot slot=_ring[(int)(_head&_mask)];
+            if (slot._sequence!=_head+1)
+                return drained;
+
+            _out.writeByte(slot._event);
+            _out.writeLong(slot._timestamp);
+            _out.writeLong(slot._id);
+            _out.writeInt(slot._length);
+            _out.writeInt(slot._captured);
+            _out.write(slot._data,0,slot._captured);
+
+            // Release the slot for the next lap of the ring
+            slot._sequence=_head+_ring.length;
+            _head++;
+            drained++;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    public void run()
+    {
+        try
+        {
+            while (_drainer==Thread.currentThread())
+            {
+                if (drain()==0)
+                {
+                    _out.flush();
+                    try
+                    {
+                        Thread.sleep(_drainInterval);
+                    }
+                    catch(InterruptedException e)
+                    {
+                        LOG.ignore(e);
+                    }
+                }
+            }
+            drain();
+            _out.flush();
+        }
+        catch(IOException e)
+        {
+            LOG.warn(e);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_fileName==null)
+            throw new IllegalStateException("No file");
+        _out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_fileName),32*1024));
+        _out.writeInt(MAGIC);
+        _out.writeShort(VERSION);
+        _out.writeInt(_snapLength);
+
+        Thread drainer=new Thread(this,"NetworkTrafficCapture-"+_fileName);
+        drainer.setDaemon(true);
+        _drainer=drainer;
+        drainer.start();
+        super.doStart();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected void doStop() throws Exception
+    {
+        Thread drainer=_drainer;
+        _drainer=null;
+        if (drainer!=null)
+        {
+            drainer.interrupt();
+            drainer.join();
+        }
+        _out.close();
+        _out=null;
+        super.doStop();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,%d/%d,connections=%d,captured=%d,dropped=%d}",
+                getClass().getSimpleName(),hashCode(),_fileName,_ring.length,_snapLength,
+                getConnections(),getCaptured(),getDropped());
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    private static class Slot
+    {
+        private volatile long _sequence;
+        private long _position;
+        private byte _event;
+        private long _timestamp;
+        private long _id;
+        private int _length;
+        private int _captured;
+        private final byte[] _data;
+
+        Slot(long sequence, int snapLength)
+        {
+            _sequence=sequence;
+            _data=new byte[snapLength];
+        }
+    }
+}
@@ -0,0 +1,34 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io;
+
+/* ------------------------------------------------------------ */
+/**
+ * A {@link Connection} that may be handled without blocking.
+ * <p>
+ * When {@link #isNonBlocking()} returns true, a selecting end point may call
+ * {@link #handle()} directly from the selector thread rather than dispatching
+ * it to a thread pool, which saves a thread hand off for short exchanges.
+ * The end point falls back to dispatching the connection if handling blocks
+ * or takes longer than the time budget of the selector.
+ */
+public interface NonBlockingConnection extends Connection
+{
+    /* ------------------------------------------------------------ */
+    /**
+     * This is called with the end point locked, so it must be quick and must not block.
+     * @return True if the next call to {@link #handle()} will not block
+     */
+    boolean isNonBlocking();
+}
@@ -0,0 +1,409 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.component.AggregateLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+
+/* ------------------------------------------------------------ */
+/** Size classed, striped buffer pool.
+ * <p>
+ * Buffers are pooled by size class: one class each for the header and buffer
+ * sizes and one class per distinct size passed to {@link #getBuffer(int)}
+ * (eg the SSL packet size or larger websocket frames).
+ * Each thread keeps a single slot per header, buffer and other class, which
+ * is backed by a set of lock free queues (stripes) shared by all threads.
+ * Threads poll their own stripe first, so that returns and gets from
+ * different threads rarely touch the same queue.
+ * <p>
+ * The memory retained by the shared stripes is bounded by
+ * {@link #getMaxRetainedBytes()}.  Buffers returned when the bound is
+ * reached are left for the garbage collector.  The per thread slots are not
+ * counted, as they are bounded by the number of threads.
+ */
+public class StripedBuffers extends AbstractBuffers implements Dumpable
+{
+    private final ThreadLocal<ThreadBuffers> _thread=new ThreadLocal<ThreadBuffers>()
+    {
+        @Override
+        protected ThreadBuffers initialValue()
+        {
+            return new ThreadBuffers();
+        }
+    };
+
+    private final int _stripes;
+    private final long _maxRetainedBytes;
+    private final SizeClass _headers;
+    private final SizeClass _buffers;
+    private final ConcurrentMap<Integer,SizeClass> _others = new ConcurrentHashMap<Integer,SizeClass>();
+    private final AtomicLong _retainedBytes = new AtomicLong();
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _discards = new AtomicLong();
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param headerType The type of header buffers
+     * @param headerSize The size of header buffers
+     * @param bufferType The type of content buffers
+     * @param bufferSize The size of content buffers
+     * @param otherType The type of buffers of any other size
+     * @param maxRetainedBytes The maximum number of bytes retained by the shared pools, or -1 for no limit.
+     */
+    public StripedBuffers(Buffers.Type headerType, int headerSize, Buffers.Type bufferType, int bufferSize, Buffers.Type otherType, long maxRetainedBytes)
+    {
+        this(headerType,headerSize,bufferType,bufferSize,otherType,maxRetainedBytes,Runtime.getRuntime().availableProcessors());
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param headerType The type of header buffers
+     * @param headerSize The size of header buffers
+     * @param bufferType The type of content buffers
+     * @param bufferSize The size of content buffers
+     * @param otherType The type of buffers of any other size
+     * @param maxRetainedBytes The maximum number of bytes retained by the shared pools, or -1 for no limit.
+     * @param stripes The number of lock free queues per size class.
+     */
+    public StripedBuffers(Buffers.Type headerType, int headerSize, Buffers.Type bufferType, int bufferSize, Buffers.Type otherType, long maxRetainedBytes, int stripes)
+    {
+        super(headerType,headerSize,bufferType,bufferSize,otherType);
+        _stripes=stripes<1?1:stripes;
+        _maxRetainedBytes=maxRetainedBytes<0?Long.MAX_VALUE:maxRetainedBytes;
+        _headers=new SizeClass(headerSize);
+        _buffers=(headerSize==bufferSize && headerType==bufferType)?_headers:new SizeClass(bufferSize);
+        if (otherType==headerType)
+            _others.put(headerSize,_headers);
+        if (otherType==bufferType)
+            _others.put(bufferSize,_buffers);
+    }
+
+    /* ------------------------------------------------------------ */
+    public Buffer getHeader()
+    {
+        ThreadBuffers thread = _thread.get();
+        Buffer buffer=thread._header;
+        if (buffer!=null)
+        {
+            thread._header=null;
+            _hits.incrementAndGet();
+            return buffer;
+        }
+
+        buffer=_headers.poll();
+        if (buffer==null)
+        {
+            _misses.incrementAndGet();
+            buffer=newHeader();
+        }
+        return buffer;
+    }
+
+    /* ------------------------------------------------------------ */
+    public Buffer getBuffer()
+    {
+        ThreadBuffers thread = _thread.get();
+        Buffer buffer=thread._buffer;
+        if (buffer!=null)
+        {
+            thread._buffer=null;
+            _hits.incrementAndGet();
+            return buffer;
+        }
+
+        buffer=_buffers.poll();
+        if (buffer==null)
+        {
+            _misses.incrementAndGet();
+            buffer=newBuffer();
+        }
+        return buffer;
+    }
+
+    /* ------------------------------------------------------------ */
+    public Buffer getBuffer(int size)
+    {
+        SizeClass sizeClass=_others.get(size);
+        if (sizeClass==_headers)
+            return getHeader();
+        if (sizeClass==_buffers)
+            return getBuffer();
+
+        ThreadBuffers thread = _thread.get();
+        Buffer buffer=thread._other;
+        if (buffer!=null && buffer.capacity()==size)
+        {
+            thread._other=null;
+            _hits.incrementAndGet();
+            return buffer;
+        }
+
+        // A slot buffer of another size stays in the slot
+        buffer=sizeClass==null?null:sizeClass.poll();
+        if (buffer==null)
+        {
+            _misses.incrementAndGet();
+            buffer=newBuffer(size);
+        }
+        return buffer;
+    }
+
+    /* ------------------------------------------------------------ */
+    public void returnBuffer(Buffer buffer)
+    {
+        buffer.clear();
+        if (buffer.isVolatile() || buffer.isImmutable())
+            return;
+
+        ThreadBuffers thread = _thread.get();
+        SizeClass sizeClass;
+        if (isHeader(buffer))
+        {
+            if (thread._header==null)
+            {
+                thread._header=buffer;
+                return;
+            }
+            sizeClass=_headers;
+        }
+        else if (isBuffer(buffer))
+        {
+            if (thread._buffer==null)
+            {
+                thread._buffer=buffer;
+                return;
+            }
+            sizeClass=_buffers;
+        }
+        else
+        {
+            if (thread._other==null)
+            {
+                thread._other=buffer;
+                return;
+            }
+
+            int size=buffer.capacity();
+            sizeClass=_others.get(size);
+            if (sizeClass==null)
+            {
+                sizeClass=new SizeClass(size);
+                SizeClass existing=_others.putIfAbsent(size,sizeClass);
+                if (existing!=null)
+                    sizeClass=existing;
+            }
+        }
+
+        sizeClass.offer(buffer);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum number of bytes retained by the shared pools
+     */
+    public long getMaxRetainedBytes()
+    {
+        return _maxRetainedBytes;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of bytes currently retained by the shared pools
+     */
+    public long getRetainedBytes()
+    {
+        return _retainedBytes.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of buffers currently retained by the shared pools
+     */
+    public int getRetainedBuffers()
+    {
+        int retained=0;
+        for (SizeClass sizeClass : getSizeClasses())
+            retained+=sizeClass._retained.get();
+        return retained;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of buffers obtained from a pool
+     */
+    public long getHits()
+    {
+        return _hits.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of buffers that had to be allocated
+     */
+    public long getMisses()
+    {
+        return _misses.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of returned buffers not retained because of the memory bound
+     */
+    public long getDiscards()
+    {
+        return _discards.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of stripes per size class
+     */
+    public int getStripes()
+    {
+        return _stripes;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Reset the hit, miss and discard counters.
+     */
+    public void statsReset()
+    {
+        _hits.set(0);
+        _misses.set(0);
+        _discards.set(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    private List<SizeClass> getSizeClasses()
+    {
+        List<SizeClass> classes = new ArrayList<SizeClass>();
+        classes.add(_headers);
+        if (_buffers!=_headers)
+            classes.add(_buffers);
+        for (SizeClass sizeClass : _others.values())
+            if (!classes.contains(sizeClass))
+                classes.add(sizeClass);
+        return classes;
+    }
+
+    /* ------------------------------------------------------------ */
+    public String dump()
+    {
+        return AggregateLifeCycle.dump(this);
+    }
+
+    /* ------------------------------------------------------------ */
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        out.append(String.valueOf(this)).append("\n");
+        AggregateLifeCycle.dump(out,indent,getSizeClasses());
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{{%d,%d},hits=%d,misses=%d,discards=%d,retained=%d/%d}",
+                getClass().getSimpleName(),hashCode(),getHeaderSize(),getBufferSize(),
+                getHits(),getMisses(),getDiscards(),getRetainedBytes(),getMaxRetainedBytes());
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    private class SizeClass
+    {
+        private final int _size;
+        private final Queue<Buffer>[] _queues;
+        private final AtomicInteger _retained = new AtomicInteger();
+
+        /* ------------------------------------------------------------ */
+        @SuppressWarnings("unchecked")
+        SizeClass(int size)
+        {
+            _size=size;
+            _queues=new Queue[_stripes];
+            for (int i=0;i<_queues.length;i++)
+                _queues[i]=new ConcurrentLinkedQueue<Buffer>();
+        }
+
+        /* ------------------------------------------------------------ */
+        Buffer poll()
+        {
+            if (_retained.get()==0)
+                return null;
+
+            int stripe=stripe();
+            for (int i=0;i<_queues.length;i++)
+            {
+                Buffer buffer=_queues[(stripe+i)%_queues.length].poll();
+                if (buffer!=null)
+                {
+                    _retained.decrementAndGet();
+                    _retainedBytes.addAndGet(-buffer.capacity());
+                    _hits.incrementAndGet();
+                    return buffer;
+                }
+            }
+            return null;
+        }
+
+        /* ------------------------------------------------------------ */
+        void offer(Buffer buffer)
+        {
+            int capacity=buffer.capacity();
+            if (_retainedBytes.addAndGet(capacity)>_maxRetainedBytes)
+            {
+                _retainedBytes.addAndGet(-capacity);
+                _discards.incrementAndGet();
+                return;
+            }
+            _retained.incrementAndGet();
+            _queues[stripe()].offer(buffer);
+        }
+
+        /* ------------------------------------------------------------ */
+        private int stripe()
+        {
+            return (int)(Thread.currentThread().getId()%_queues.length);
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public String toString()
+        {
+            return String.format("size=%d retained=%d",_size,_retained.get());
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    protected static class ThreadBuffers
+    {
+        Buffer _buffer;
+        Buffer _header;
+        Buffer _other;
+    }
+}
@@ -24,6 +24,7 @@ import java.nio.channels.SocketChannel;
 
 import org.eclipse.jetty.io.Buffer;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.EndPointStatistics;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -39,10 +40,13 @@ public class ChannelEndPoint implements EndPoint
 
     protected final ByteChannel _channel;
     protected final ByteBuffer[] _gather2=new ByteBuffer[2];
+    private ByteBuffer[] _gather=new ByteBuffer[0];
+    private Object[] _gatherSources=new Object[0];
     protected final Socket _socket;
     protected final InetSocketAddress _local;
     protected final InetSocketAddress _remote;
     protected int _maxIdleTime;
+    protected EndPointStatistics _statistics;
 
     public ChannelEndPoint(ByteChannel channel) throws IOException
     {
@@ -169,7 +173,14 @@ public class ChannelEndPoint implements EndPoint
                     try
                     {
                         bbuf.position(buffer.putIndex());
-                        len=_channel.read(bbuf);
+                        if (_statistics==null)
+                            len=_channel.read(bbuf);
+                        else
+                        {
+                            long start=System.nanoTime();
+                            len=_channel.read(bbuf);
+                            _statistics.filled(len,System.nanoTime()-start);
+                        }
                     }
                     finally
                     {
@@ -212,10 +223,28 @@ public class ChannelEndPoint implements EndPoint
      * @see org.eclipse.io.EndPoint#flush(org.eclipse.io.Buffer)
      */
     public int flush(Buffer buffer) throws IOException
+    {
+        if (_statistics==null)
+            return doFlush(buffer);
+        int offered=buffer.length();
+        long start=System.nanoTime();
+        int len=doFlush(buffer);
+        _statistics.flushed(len,offered,System.nanoTime()-start);
+        return len;
+    }
+
+    /* ------------------------------------------------------------ */
+    private int doFlush(Buffer buffer) throws IOException
     {
         Buffer buf = buffer.buffer();
         int len=0;
-        if (buf instanceof NIOBuffer)
+        if (buf instanceof FileRegionBuffer)
+        {
+            len = ((FileRegionBuffer)buf).writeTo(_channel,buffer.getIndex(),buffer.length());
+            if (len>0)
+                buffer.skip(len);
+        }
+        else if (buf instanceof NIOBuffer)
         {
             final NIOBuffer nbuf = (NIOBuffer)buf;
             final ByteBuffer bbuf=nbuf.getByteBuffer();
@@ -270,7 +299,7 @@ public class ChannelEndPoint implements EndPoint
 
         if (_channel instanceof GatheringByteChannel &&
             header!=null && header.length()!=0 && buf0 instanceof NIOBuffer &&
-            buffer!=null && buffer.length()!=0 && buf1 instanceof NIOBuffer)
+            buffer!=null && buffer.length()!=0 && buf1 instanceof NIOBuffer && !(buf1 instanceof FileRegionBuffer))
         {
             length = gatheringFlush(header,((NIOBuffer)buf0).getByteBuffer(),buffer,((NIOBuffer)buf1).getByteBuffer());
         }
@@ -334,7 +363,15 @@ public class ChannelEndPoint implements EndPoint
                         _gather2[1]=bbuf1;
 
                         // do the gathering write.
-                        length=(int)((GatheringByteChannel)_channel).write(_gather2);
+                        if (_statistics==null)
+                            length=(int)((GatheringByteChannel)_channel).write(_gather2);
+                        else
+                        {
+                            int offered=header.length()+buffer.length();
+                            long start=System.nanoTime();
+                            length=(int)((GatheringByteChannel)_channel).write(_gather2);
+                            _statistics.flushed(length,offered,System.nanoTime()-start);
+                        }
 
                         int hl=header.length();
                         if (length>hl)
@@ -360,6 +397,183 @@ public class ChannelEndPoint implements EndPoint
         return length;
     }
 
+    /* ------------------------------------------------------------ */
+    /*
+     * @see org.eclipse.io.EndPoint#flush(org.eclipse.io.Buffer[])
+     */
+    public int flush(Buffer[] buffers) throws IOException
+    {
+        int flushed=0;
+        int i=0;
+        while (i<buffers.length)
+        {
+            // Find the run of buffers that can be written with a single gathering write
+            int end=i;
+            int available=0;
+            while (end<buffers.length)
+            {
+                Buffer buffer=buffers[end];
+                if (buffer!=null && buffer.length()>0)
+                {
+                    if (!isGatherable(buffer))
+                        break;
+                    available+=buffer.length();
+                }
+                end++;
+            }
+
+            if (available>0)
+            {
+                int f=gatheringFlush(buffers,i,end-i);
+                flushed+=f;
+                if (f<available)
+                    return flushed;
+            }
+
+            // Write a buffer that cannot be gathered (eg a file region) on its own
+            if (end<buffers.length)
+            {
+                Buffer buffer=buffers[end];
+                int length=buffer.length();
+                int f=flush(buffer);
+                if (f<0)
+                    return flushed>0?flushed:f;
+                flushed+=f;
+                if (f<length)
+                    return flushed;
+            }
+            i=end+1;
+        }
+        return flushed;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Write buffers with a single gathering write and update their get indexes.
+     * The buffers are written through ByteBuffers private to this endpoint, so no
+     * lock is needed for buffers shared with other connections. The ByteBuffers
+     * are kept for the next write, which usually flushes the same buffers.
+     * @param buffers The buffers, all of which must be null, empty or gatherable
+     * @param offset The index of the first buffer to write
+     * @param length The number of buffers to write
+     * @return The number of bytes written
+     * @throws IOException
+     */
+    protected int gatheringFlush(Buffer[] buffers, int offset, int length) throws IOException
+    {
+        long written;
+        synchronized(this)
+        {
+            if (_gather.length<length)
+            {
+                ByteBuffer[] gather=new ByteBuffer[length];
+                System.arraycopy(_gather,0,gather,0,_gather.length);
+                _gather=gather;
+                Object[] sources=new Object[length];
+                System.arraycopy(_gatherSources,0,sources,0,_gatherSources.length);
+                _gatherSources=sources;
+            }
+
+            int n=0;
+            for (int i=offset;i<offset+length;i++)
+            {
+                Buffer buffer=buffers[i];
+                if (buffer!=null && buffer.length()>0)
+                    toByteBuffer(buffer,n++);
+            }
+            ByteBuffer[] gather=_gather;
+
+            long offered=0;
+            long start=0;
+            if (_statistics!=null)
+            {
+                for (int i=0;i<n;i++)
+                    offered+=gather[i].remaining();
+                start=System.nanoTime();
+            }
+
+            if (n==1)
+                written=_channel.write(gather[0]);
+            else if (_channel instanceof GatheringByteChannel)
+                written=((GatheringByteChannel)_channel).write(gather,0,n);
+            else
+            {
+                written=0;
+                for (int i=0;i<n;i++)
+                {
+                    written+=_channel.write(gather[i]);
+                    if (gather[i].hasRemaining())
+                        break;
+                }
+            }
+            if (_statistics!=null)
+                _statistics.flushed(written,offered,System.nanoTime()-start);
+        }
+
+        long remaining=written;
+        for (int i=offset;remaining>0 && i<offset+length;i++)
+        {
+            Buffer buffer=buffers[i];
+            if (buffer!=null && buffer.length()>0)
+            {
+                int skip=(int)Math.min(remaining,buffer.length());
+                buffer.skip(skip);
+                remaining-=skip;
+            }
+        }
+        return (int)written;
+    }
+
+    /* ------------------------------------------------------------ */
+    private static boolean isGatherable(Buffer buffer)
+    {
+        Buffer buf=buffer.buffer();
+        if (buf instanceof FileRegionBuffer)
+            return false;
+        return buf instanceof NIOBuffer || buffer.array()!=null;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the ByteBuffer at an index of the gather array to the content of a buffer,
+     * reusing the ByteBuffer of the last write if it was for the same memory.
+     */
+    private void toByteBuffer(Buffer buffer, int index)
+    {
+        Buffer buf=buffer.buffer();
+        Object source=buf instanceof NIOBuffer?((NIOBuffer)buf).getByteBuffer():buffer.array();
+        ByteBuffer bbuf=_gather[index];
+        if (bbuf==null || _gatherSources[index]!=source)
+        {
+            bbuf=source instanceof ByteBuffer?((ByteBuffer)source).duplicate():ByteBuffer.wrap((byte[])source);
+            _gather[index]=bbuf;
+            _gatherSources[index]=source;
+        }
+        bbuf.clear();
+        bbuf.limit(buffer.putIndex());
+        bbuf.position(buffer.getIndex());
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The statistics this end point records its I/O in, or null if it records none.
+     */
+    public EndPointStatistics getStatistics()
+    {
+        return _statistics;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the statistics to record the I/O of this end point in.
+     * This should be called before the end point is used.
+     * @param statistics The statistics, or null to record none.
+     */
+    public void setStatistics(EndPointStatistics statistics)
+    {
+        _statistics=statistics;
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * @return Returns the channel.
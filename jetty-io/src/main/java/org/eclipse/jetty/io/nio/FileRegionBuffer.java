@@ -0,0 +1,232 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io.nio;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.eclipse.jetty.io.AbstractBuffer;
+
+/* ------------------------------------------------------------ */
+/** Read only buffer over a region of a file.
+ * <p>
+ * The content of the region is not read into memory.  A {@link ChannelEndPoint}
+ * flushes it with {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+ * so that the kernel can send the file directly to the socket.  Any other access to the
+ * content, including {@link #getByteBuffer()} as used by SSL end points, is served from
+ * a read only mapping of the region, which is created on first use.
+ * <p>
+ * The file is opened when first needed and closed once the end of the region has been
+ * transferred or the buffer is cleared or closed.  The HTTP generator closes the buffer
+ * when it is reset or fails to write it, so that an abandoned response does not leave
+ * the file open until the garbage collector finds it.
+ */
+public class FileRegionBuffer extends AbstractBuffer implements NIOBuffer
+{
+    private final File _file;
+    private final long _position;
+    private final int _length;
+    private FileInputStream _in;
+    private FileChannel _channel;
+    private ByteBuffer _mapped;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param file The file, which must not be longer than {@link Integer#MAX_VALUE}
+     */
+    public FileRegionBuffer(File file)
+    {
+        this(file,0,length(file));
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param file The file
+     * @param position The position in the file of the start of the region
+     * @param length The length of the region
+     */
+    public FileRegionBuffer(File file, long position, int length)
+    {
+        super(READONLY,NON_VOLATILE);
+        if (position<0 || length<0)
+            throw new IllegalArgumentException("position="+position+" length="+length);
+        _file=file;
+        _position=position;
+        _length=length;
+        setGetIndex(0);
+        setPutIndex(length);
+    }
+
+    /* ------------------------------------------------------------ */
+    private static int length(File file)
+    {
+        long length=file.length();
+        if (length>Integer.MAX_VALUE)
+            throw new IllegalArgumentException("too large: "+file);
+        return (int)length;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The file
+     */
+    public File getFile()
+    {
+        return _file;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The position in the file of the start of the region
+     */
+    public long getPosition()
+    {
+        return _position;
+    }
+
+    /* ------------------------------------------------------------ */
+    public byte[] array()
+    {
+        return null;
+    }
+
+    /* ------------------------------------------------------------ */
+    public int capacity()
+    {
+        return _length;
+    }
+
+    /* ------------------------------------------------------------ */
+    public boolean isDirect()
+    {
+        return true;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return A read only mapping of the region
+     */
+    public synchronized ByteBuffer getByteBuffer()
+    {
+        if (_mapped==null)
+        {
+            try
+            {
+                _mapped=channel().map(FileChannel.MapMode.READ_ONLY,_position,_length);
+                close();
+            }
+            catch(IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+        return _mapped;
+    }
+
+    /* ------------------------------------------------------------ */
+    private FileChannel channel() throws IOException
+    {
+        if (_channel==null)
+        {
+            _in=new FileInputStream(_file);
+            _channel=_in.getChannel();
+        }
+        return _channel;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void clear()
+    {
+        super.clear();
+        close();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Close the file. It is reopened if the content is accessed again.
+     */
+    public synchronized void close()
+    {
+        try
+        {
+            if (_in!=null)
+                _in.close();
+        }
+        catch(IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            _in=null;
+            _channel=null;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    public byte peek(int index)
+    {
+        return getByteBuffer().get(index);
+    }
+
+    /* ------------------------------------------------------------ */
+    public int peek(int index, byte[] b, int offset, int length)
+    {
+        if (index+length>_length)
+            length=_length-index;
+        if (length<=0)
+            return -1;
+
+        ByteBuffer mapped=getByteBuffer().duplicate();
+        mapped.position(index);
+        mapped.get(b,offset,length);
+        return length;
+    }
+
+    /* ------------------------------------------------------------ */
+    public void poke(int index, byte b)
+    {
+        throw new IllegalStateException(__READONLY);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Transfer part of the region to a channel.
+     * @param channel The channel to write to
+     * @param index The index within the region of the first byte to transfer
+     * @param length The number of bytes to transfer
+     * @return The number of bytes transferred, which may be less than length.
+     * @throws IOException
+     */
+    public synchronized int writeTo(WritableByteChannel channel, int index, int length)
+        throws IOException
+    {
+        int transferred=(int)channel().transferTo(_position+index,length,channel);
+        if (index+transferred>=_length)
+            close();
+        return transferred;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,%d,%d,%d}",getClass().getSimpleName(),hashCode(),_file,_position,getIndex(),putIndex());
+    }
+}
@@ -20,6 +20,7 @@ import java.nio.channels.SocketChannel;
 import java.util.List;
 
 import org.eclipse.jetty.io.Buffer;
+import org.eclipse.jetty.io.NetworkTrafficCapture;
 import org.eclipse.jetty.io.NetworkTrafficListener;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -29,6 +30,9 @@ public class NetworkTrafficSelectChannelEndPoint extends SelectChannelEndPoint
     private static final Logger LOG = Log.getLogger(NetworkTrafficSelectChannelEndPoint.class);
 
     private final List<NetworkTrafficListener> listeners;
+    private NetworkTrafficCapture capture;
+    private long captureId = -1;
+    private int[] positions = new int[0];
 
     public NetworkTrafficSelectChannelEndPoint(SocketChannel channel, SelectorManager.SelectSet selectSet, SelectionKey key, int maxIdleTime, List<NetworkTrafficListener> listeners) throws IOException
     {
@@ -36,11 +40,30 @@ public class NetworkTrafficSelectChannelEndPoint extends SelectChannelEndPoint
         this.listeners = listeners;
     }
 
+    /**
+     * <p>Captures the traffic of this end point, if the capture accepts the connection.</p>
+     * <p>This method must be called before the end point is used.</p>
+     *
+     * @param capture the capture to record the traffic in
+     */
+    public void setCapture(NetworkTrafficCapture capture)
+    {
+        long id = capture.opened(_socket);
+        if (id >= 0)
+        {
+            this.capture = capture;
+            this.captureId = id;
+        }
+    }
+
     @Override
     public int fill(Buffer buffer) throws IOException
     {
+        int position = buffer.putIndex();
         int read = super.fill(buffer);
         notifyIncoming(buffer, read);
+        if (capture != null && read > 0)
+            capture.incoming(captureId, buffer, position, read);
         return read;
     }
 
@@ -65,6 +88,27 @@ public class NetworkTrafficSelectChannelEndPoint extends SelectChannelEndPoint
         return written;
     }
 
+    @Override
+    protected int gatheringFlush(Buffer[] buffers, int offset, int length) throws IOException
+    {
+        // Only one thread flushes at a time, so the positions are kept for the next write
+        if (positions.length < length)
+            positions = new int[length];
+        for (int i = 0; i < length; ++i)
+        {
+            Buffer buffer = buffers[offset + i];
+            positions[i] = buffer == null ? 0 : buffer.getIndex();
+        }
+        int written = super.gatheringFlush(buffers, offset, length);
+        for (int i = 0; i < length; ++i)
+        {
+            Buffer buffer = buffers[offset + i];
+            if (buffer != null)
+                notifyOutgoing(buffer, positions[i], buffer.getIndex() - positions[i]);
+        }
+        return written;
+    }
+
     public void notifyOpened()
     {
         if (listeners != null && !listeners.isEmpty())
@@ -104,6 +148,8 @@ public class NetworkTrafficSelectChannelEndPoint extends SelectChannelEndPoint
 
     public void notifyOutgoing(Buffer buffer, int position, int written)
     {
+        if (capture != null && written > 0)
+            capture.outgoing(captureId, buffer, position, written);
         if (listeners != null && !listeners.isEmpty() && written > 0)
         {
             for (NetworkTrafficListener listener : listeners)
@@ -125,6 +171,8 @@ public class NetworkTrafficSelectChannelEndPoint extends SelectChannelEndPoint
 
     public void notifyClosed()
     {
+        if (capture != null)
+            capture.closed(captureId);
         if (listeners != null && !listeners.isEmpty())
         {
             for (NetworkTrafficListener listener : listeners)
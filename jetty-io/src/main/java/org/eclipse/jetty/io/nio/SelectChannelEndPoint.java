@@ -24,6 +24,7 @@ import org.eclipse.jetty.io.Buffer;
 import org.eclipse.jetty.io.ConnectedEndPoint;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.io.NonBlockingConnection;
 import org.eclipse.jetty.io.nio.SelectorManager.SelectSet;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -50,10 +51,14 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
 
     private  SelectionKey _key;
     private int _interestOps;
+    private boolean _changePending;
     private boolean _readBlocked;
     private boolean _writeBlocked;
+    private volatile boolean _woken;
     private boolean _open;
     private volatile long _idleTimestamp;
+    private boolean _inline;
+    private boolean _inlineDisabled;
 
     /* ------------------------------------------------------------ */
     public SelectChannelEndPoint(SocketChannel channel, SelectSet selectSet, SelectionKey key, int maxIdleTime)
@@ -132,6 +137,7 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
      */
     public void schedule()
     {
+        boolean inline=false;
         synchronized (this)
         {
             // If there is no key, then do nothing
@@ -178,18 +184,92 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
                 _writable = true; // Once writable is in ops, only removed with dispatch.
             }
 
-            // Dispatch if we are not already
+            // Handle inline or dispatch if we are not already
             if (!_dispatched)
             {
-                dispatch();
-                if (_dispatched && !_selectSet.getManager().isDeferringInterestedOps0())
+                if (isInlineable())
                 {
-                    _key.interestOps(0);
+                    _dispatched=true;
+                    inline=true;
                 }
+                else
+                {
+                    dispatch();
+                    if (_dispatched && !_selectSet.getManager().isDeferringInterestedOps0())
+                    {
+                        _key.interestOps(0);
+                    }
+                }
+            }
+        }
+
+        if (inline)
+            handleInline();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return True if the connection can be handled by the selector thread
+     */
+    private boolean isInlineable()
+    {
+        return !_inlineDisabled &&
+            _manager.getMaxInlineTime()>0 &&
+            _connection instanceof NonBlockingConnection &&
+            ((NonBlockingConnection)_connection).isNonBlocking();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Handle the connection with the selector thread. If the handling takes
+     * longer than {@link SelectorManager#getMaxInlineTime()}, the connection
+     * is dispatched from now on.
+     */
+    private void handleInline()
+    {
+        long start=System.nanoTime();
+        _inline=true;
+        try
+        {
+            handle();
+        }
+        finally
+        {
+            _inline=false;
+            long time=System.nanoTime()-start;
+            _selectSet.inlineHandled(time);
+            if (time>_manager.getMaxInlineTime()*1000 && !_inlineDisabled)
+            {
+                _inlineDisabled=true;
+                _selectSet.inlineFallback();
             }
         }
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Called when the connection needs to block while it is handled inline.
+     * The selector thread must not block, as that would stall all the other
+     * connections of the select set, so selecting is handed over to another
+     * thread and the current thread carries on as a dispatched thread for
+     * this connection, which is dispatched from now on.
+     */
+    private void handOverInline() throws IOException
+    {
+        _inline=false;
+        if (!_inlineDisabled)
+        {
+            _inlineDisabled=true;
+            _selectSet.inlineFallback();
+        }
+
+        if (!_selectSet.handOver())
+        {
+            close();
+            throw new EofException("no thread to select");
+        }
+    }
+
     /* ------------------------------------------------------------ */
     public void dispatch()
     {
@@ -213,6 +293,33 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
         }
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Wake the threads blocked in {@link #blockReadable(long)} or {@link #blockWritable(long)},
+     * or if there are none, dispatch the endpoint. This is used when the endpoint can make
+     * progress for a reason other than a selected key, such as an SSL task that has completed.
+     * A thread that is about to block, but has not yet done so, returns from its next
+     * block call without waiting.
+     */
+    public void dispatchOrWakeup()
+    {
+        synchronized(this)
+        {
+            if (_readBlocked || _writeBlocked)
+            {
+                _readBlocked=false;
+                _writeBlocked=false;
+                _woken=false;
+                this.notifyAll();
+            }
+            else
+            {
+                _woken=true;
+                dispatch();
+            }
+        }
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * Called when a dispatched thread is no longer handling the endpoint.
@@ -317,6 +424,39 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
         return l;
     }
 
+    /* ------------------------------------------------------------ */
+    /*
+     */
+    @Override
+    public int flush(Buffer[] buffers) throws IOException
+    {
+        int l = super.flush(buffers);
+
+        // If there was something to write and it wasn't written, then we are not writable.
+        if (l==0 && hasContent(buffers))
+        {
+            synchronized (this)
+            {
+                _writable=false;
+                if (!_dispatched)
+                    updateKey();
+            }
+        }
+        else
+            _writable=true;
+
+        return l;
+    }
+
+    /* ------------------------------------------------------------ */
+    private static boolean hasContent(Buffer[] buffers)
+    {
+        for (Buffer buffer : buffers)
+            if (buffer!=null && buffer.length()>0)
+                return true;
+        return false;
+    }
+
     /* ------------------------------------------------------------ */
     public boolean isReadyForDispatch()
     {
@@ -334,10 +474,21 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
     @Override
     public boolean blockReadable(long timeoutMs) throws IOException
     {
+        if (_inline && _selectSet.isSelectorThread())
+            handOverInline();
+
         synchronized (this)
         {
             long now=_selectSet.getNow();
             long end=now+timeoutMs;
+            // Progress was made since the caller last tried to read
+            if (_woken)
+            {
+                _woken=false;
+                return true;
+            }
+
+            long started=_statistics==null?0:System.currentTimeMillis();
             try
             {
                 _readBlocked=true;
@@ -364,6 +515,8 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
             finally
             {
                 _readBlocked=false;
+                if (_statistics!=null)
+                    _statistics.blockedReadable(System.currentTimeMillis()-started);
             }
         }
         return true;
@@ -376,6 +529,9 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
     @Override
     public boolean blockWritable(long timeoutMs) throws IOException
     {
+        if (_inline && _selectSet.isSelectorThread())
+            handOverInline();
+
         synchronized (this)
         {
             if (!isOpen() || isOutputShutdown())
@@ -383,6 +539,14 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
             
             long now=_selectSet.getNow();
             long end=now+timeoutMs;
+            // Progress was made since the caller last tried to write
+            if (_woken)
+            {
+                _woken=false;
+                return true;
+            }
+
+            long started=_statistics==null?0:System.currentTimeMillis();
             try
             {
                 _writeBlocked=true;
@@ -418,6 +582,8 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
             finally
             {
                 _writeBlocked=false;
+                if (_statistics!=null)
+                    _statistics.blockedWritable(System.currentTimeMillis()-started);
                 if (_idleTimestamp!=-1)
                     scheduleIdle();
             }
@@ -436,10 +602,13 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
     /**
      * Updates selection key. Adds operations types to the selection key as needed. No operations
      * are removed as this is only done during dispatch. This method records the new key and
-     * schedules a call to doUpdateKey to do the keyChange
+     * either calls doUpdateKey directly if called from the selector thread, or
+     * schedules a call to doUpdateKey to do the keyChange. Only one such call is queued at
+     * a time, as it applies the latest interest operations.
      */
     private void updateKey()
     {
+        boolean inline;
         synchronized (this)
         {
             int ops=-1;
@@ -461,9 +630,23 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
 
             if(_interestOps == ops && getChannel().isOpen())
                 return;
+
+            inline=_selectSet.isSelectorThread();
+            if (!inline)
+            {
+                if (_changePending)
+                    return;
+                _changePending=true;
+            }
+        }
+
+        if (inline)
+            doUpdateKey();
+        else
+        {
+            _selectSet.addChange(this);
+            _selectSet.wakeup();
         }
-        _selectSet.addChange(this);
-        _selectSet.wakeup();
     }
 
     /* ------------------------------------------------------------ */
@@ -474,6 +657,7 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
     {
         synchronized (this)
         {
+            _changePending=false;
             if (getChannel().isOpen())
             {
                 if (_interestOps>0)
@@ -483,7 +667,10 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
                         SelectableChannel sc = (SelectableChannel)getChannel();
                         if (sc.isRegistered())
                         {
-                            updateKey();
+                            // The cancelled key is deregistered by the next select,
+                            // so retry from the next select loop.
+                            _changePending=true;
+                            _selectSet.addChange(this);
                         }
                         else
                         {
@@ -631,7 +818,8 @@ public class SelectChannelEndPoint extends ChannelEndPoint implements AsyncEndPo
         {
             return "SCEP@" + hashCode() + _channel+            
             "[d=" + _dispatched + ",io=" + _interestOps+
-            ",w=" + _writable + ",rb=" + _readBlocked + ",wb=" + _writeBlocked + "]";
+            ",w=" + _writable + ",rb=" + _readBlocked + ",wb=" + _writeBlocked +
+            (_inline?",inline":"") + "]";
         }
     }
 
@@ -23,12 +23,15 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.io.ConnectedEndPoint;
 import org.eclipse.jetty.io.Connection;
@@ -39,6 +42,8 @@ import org.eclipse.jetty.util.component.AggregateLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.eclipse.jetty.util.thread.HashedWheelTimeout;
 import org.eclipse.jetty.util.thread.Timeout;
 import org.eclipse.jetty.util.thread.Timeout.Task;
 
@@ -66,6 +71,7 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
     private volatile int _set;
     private boolean _deferringInterestedOps0=true;
     private int _selectorPriorityDelta=0;
+    private volatile long _maxInlineTime=1000;
 
     /* ------------------------------------------------------------ */
     /**
@@ -233,6 +239,26 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
     }
 
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the maximum time in microseconds that a {@link org.eclipse.jetty.io.NonBlockingConnection}
+     * may be handled by the selector thread before it is dispatched instead
+     */
+    public long getMaxInlineTime()
+    {
+        return _maxInlineTime;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param maxInlineTime the maximum time in microseconds that a {@link org.eclipse.jetty.io.NonBlockingConnection}
+     * may be handled by the selector thread before it is dispatched instead, or 0 to always dispatch connections.
+     */
+    public void setMaxInlineTime(long maxInlineTime)
+    {
+        _maxInlineTime=maxInlineTime;
+    }
+
     /* ------------------------------------------------------------------------------- */
     public abstract boolean dispatch(Runnable task);
 
@@ -251,56 +277,66 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
 
         // start a thread to Select
         for (int i=0;i<getSelectSets();i++)
+            dispatchSelector(i);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Dispatch a thread that selects for a select set until the manager is
+     * stopped or the set is handed over to another thread.
+     * @param id The index of the select set
+     * @return True if the thread was dispatched
+     */
+    private boolean dispatchSelector(final int id)
+    {
+        return dispatch(new Runnable()
         {
-            final int id=i;
-            dispatch(new Runnable()
+            public void run()
             {
-                public void run()
+                String name=Thread.currentThread().getName();
+                int priority=Thread.currentThread().getPriority();
+                try
                 {
-                    String name=Thread.currentThread().getName();
-                    int priority=Thread.currentThread().getPriority();
-                    try
+                    SelectSet[] sets=_selectSet;
+                    if (sets==null)
+                        return;
+                    SelectSet set=sets[id];
+                    set._selectorThread=Thread.currentThread();
+
+                    Thread.currentThread().setName(name+" Selector"+id);
+                    if (getSelectorPriorityDelta()!=0)
+                        Thread.currentThread().setPriority(Thread.currentThread().getPriority()+getSelectorPriorityDelta());
+                    LOG.debug("Starting {} on {}",Thread.currentThread(),this);
+                    while (isRunning() && set._selectorThread==Thread.currentThread())
                     {
-                        SelectSet[] sets=_selectSet;
-                        if (sets==null)
-                            return;
-                        SelectSet set=sets[id];
-
-                        Thread.currentThread().setName(name+" Selector"+id);
-                        if (getSelectorPriorityDelta()!=0)
-                            Thread.currentThread().setPriority(Thread.currentThread().getPriority()+getSelectorPriorityDelta());
-                        LOG.debug("Starting {} on {}",Thread.currentThread(),this);
-                        while (isRunning())
+                        try
                         {
-                            try
-                            {
-                                set.doSelect();
-                            }
-                            catch(ThreadDeath e)
-                            {
-                                throw e;
-                            }
-                            catch(IOException e)
-                            {
-                                LOG.ignore(e);
-                            }
-                            catch(Exception e)
-                            {
-                                LOG.warn(e);
-                            }
+                            set.doSelect();
+                        }
+                        catch(ThreadDeath e)
+                        {
+                            throw e;
+                        }
+                        catch(IOException e)
+                        {
+                            LOG.ignore(e);
+                        }
+                        catch(Exception e)
+                        {
+                            LOG.warn(e);
                         }
-                    }
-                    finally
-                    {
-                        LOG.debug("Stopped {} on {}",Thread.currentThread(),this);
-                        Thread.currentThread().setName(name);
-                        if (getSelectorPriorityDelta()!=0)
-                            Thread.currentThread().setPriority(priority);
                     }
                 }
+                finally
+                {
+                    LOG.debug("Stopped {} on {}",Thread.currentThread(),this);
+                    Thread.currentThread().setName(name);
+                    if (getSelectorPriorityDelta()!=0)
+                        Thread.currentThread().setPriority(priority);
+                }
+            }
 
-            });
-        }
+        });
     }
 
 
@@ -357,6 +393,135 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
         LOG.debug(ex);
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of calls to {@link Selector#wakeup()} made by all select sets
+     */
+    public long getWakeups()
+    {
+        long wakeups=0;
+        SelectSet[] sets=_selectSet;
+        if (sets!=null)
+            for (SelectSet set : sets)
+                wakeups+=set.getWakeups();
+        return wakeups;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of select loops run by all select sets
+     */
+    public long getSelects()
+    {
+        long selects=0;
+        SelectSet[] sets=_selectSet;
+        if (sets!=null)
+            for (SelectSet set : sets)
+                selects+=set.getSelects();
+        return selects;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of queued changes handled by all select sets
+     */
+    public long getChanges()
+    {
+        long changes=0;
+        SelectSet[] sets=_selectSet;
+        if (sets!=null)
+            for (SelectSet set : sets)
+                changes+=set.getChanges();
+        return changes;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the maximum number of queued changes handled by a single select loop
+     */
+    public long getChangesPerSelectMax()
+    {
+        long max=0;
+        SelectSet[] sets=_selectSet;
+        if (sets!=null)
+            for (SelectSet set : sets)
+                max=Math.max(max,set.getChangesPerSelectMax());
+        return max;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the mean time in microseconds of a select loop, excluding the time blocked in select
+     */
+    public double getSelectLoopTimeMean()
+    {
+        long total=0;
+        long count=0;
+        SelectSet[] sets=_selectSet;
+        if (sets!=null)
+            for (SelectSet set : sets)
+            {
+                total+=set._loopTime.getTotal();
+                count+=set._loopTime.getCount();
+            }
+        return count==0?0.0:total/1000.0/count;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the maximum time in microseconds of a select loop, excluding the time blocked in select
+     */
+    public long getSelectLoopTimeMax()
+    {
+        long max=0;
+        SelectSet[] sets=_selectSet;
+        if (sets!=null)
+            for (SelectSet set : sets)
+                max=Math.max(max,set.getSelectLoopTimeMax());
+        return max;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of times connections were handled by the selector threads
+     */
+    public long getInlineHandles()
+    {
+        long handles=0;
+        SelectSet[] sets=_selectSet;
+        if (sets!=null)
+            for (SelectSet set : sets)
+                handles+=set.getInlineHandles();
+        return handles;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of connections that are dispatched because they blocked or exceeded
+     * the maximum inline time when handled by a selector thread
+     */
+    public long getInlineFallbacks()
+    {
+        long fallbacks=0;
+        SelectSet[] sets=_selectSet;
+        if (sets!=null)
+            for (SelectSet set : sets)
+                fallbacks+=set.getInlineFallbacks();
+        return fallbacks;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Reset the select statistics of all select sets
+     */
+    public void statsReset()
+    {
+        SelectSet[] sets=_selectSet;
+        if (sets!=null)
+            for (SelectSet set : sets)
+                set.statsReset();
+    }
+
     /* ------------------------------------------------------------ */
     public String dump()
     {
@@ -380,10 +545,18 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
         private final Timeout _timeout;
 
         private final ConcurrentLinkedQueue<Object> _changes = new ConcurrentLinkedQueue<Object>();
+        private final AtomicBoolean _wakeupPending = new AtomicBoolean();
+        private final AtomicLong _wakeups = new AtomicLong();
+        private final SampleStatistic _changesPerSelect = new SampleStatistic();
+        private final SampleStatistic _loopTime = new SampleStatistic();
+        private final SampleStatistic _inlineTime = new SampleStatistic();
+        private final AtomicLong _inlineFallbacks = new AtomicLong();
 
         private volatile Selector _selector;
 
         private volatile Thread _selecting;
+        private volatile Thread _selectorThread;
+        private volatile boolean _blocking;
         private int _busySelects;
         private long _monitorNext;
         private boolean _pausing;
@@ -397,7 +570,7 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
             _setID=acceptorID;
 
             _idleTick = System.currentTimeMillis();
-            _timeout = new Timeout(this);
+            _timeout = new HashedWheelTimeout(this);
             _timeout.setDuration(0L);
 
             // create a selector;
@@ -430,6 +603,9 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
          */
         public void doSelect() throws IOException
         {
+            long start=System.nanoTime();
+            long blocked=0;
+            int handled=0;
             try
             {
                 _selecting=Thread.currentThread();
@@ -441,8 +617,9 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
                 // Make any key changes required
                 Object change;
                 int changes=_changes.size();
-                while (changes-->0 && (change=_changes.poll())!=null)
+                while (changes-->0 && isSelectorThread() && (change=_changes.poll())!=null)
                 {
+                    handled++;
                     Channel ch=null;
                     SelectionKey key=null;
 
@@ -522,6 +699,10 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
                 }
 
 
+                // Stop if the set was handed over while a connection was handled
+                if (!isSelectorThread())
+                    return;
+
                 // Do and instant select to see if any connections can be handled.
                 int selected=selector.selectNow();
 
@@ -548,6 +729,11 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
                     _timeout.setNow(now);
                     long to_next_timeout=_timeout.getTimeToNext();
 
+                    // From here a change added to the queue needs a wakeup, unless the
+                    // queue is seen to be not empty below or another wakeup is already pending.
+                    _wakeupPending.set(false);
+                    _blocking=true;
+
                     long wait = _changes.size()==0?__IDLE_TICK:0L;
                     if (wait > 0 && to_next_timeout >= 0 && wait > to_next_timeout)
                         wait = to_next_timeout;
@@ -556,7 +742,10 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
                     if (wait>0)
                     {
                         long before=now;
+                        long blocking=System.nanoTime();
                         selected=selector.select(wait);
+                        blocked=System.nanoTime()-blocking;
+                        _blocking=false;
                         now = System.currentTimeMillis();
                         _timeout.setNow(now);
 
@@ -588,6 +777,7 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
                             }
                         }
                     }
+                    _blocking=false;
                 }
 
                 // have we been destroyed while sleeping
@@ -595,8 +785,11 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
                     return;
 
                 // Look for things to do
-                for (SelectionKey key: selector.selectedKeys())
+                Iterator<SelectionKey> keys=selector.selectedKeys().iterator();
+                while (isSelectorThread() && keys.hasNext())
                 {
+                    SelectionKey key=keys.next();
+                    keys.remove();
                     SocketChannel channel=null;
 
                     try
@@ -681,6 +874,10 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
                     }
                 }
 
+                // The keys not handled are selected again by the thread the set was handed over to
+                if (!isSelectorThread())
+                    return;
+
                 // Everything always handled
                 selector.selectedKeys().clear();
 
@@ -738,10 +935,41 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
             }
             finally
             {
-                _selecting=null;
+                if (isSelectorThread())
+                {
+                    _blocking=false;
+                    _selecting=null;
+                    _changesPerSelect.set(handled);
+                    _loopTime.set(System.nanoTime()-start-blocked);
+                }
             }
         }
 
+        /* ------------------------------------------------------------ */
+        /**
+         * Hand the selecting for this set over to another thread, so that the
+         * calling selector thread may block while handling a connection without
+         * stalling the other connections of the set. The calling thread stops
+         * selecting when it returns to {@link #doSelect()}.
+         * @return True if the set was handed over, false if the calling thread is not
+         * the selector thread or no other thread could be dispatched to select.
+         */
+        boolean handOver()
+        {
+            if (!isSelectorThread())
+                return false;
+
+            Thread thread=Thread.currentThread();
+            _selectorThread=null;
+            _selecting=null;
+            if (dispatchSelector(_setID))
+                return true;
+
+            _selectorThread=thread;
+            _selecting=thread;
+            return false;
+        }
+
 
         /* ------------------------------------------------------------ */
         private void renewSelector()
@@ -810,13 +1038,38 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
         }
 
         /* ------------------------------------------------------------ */
+        /**
+         * @return true if the calling thread is the thread currently selecting for this set
+         */
+        public boolean isSelectorThread()
+        {
+            return _selecting==Thread.currentThread();
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * Wakeup the selector, if needed, so that queued changes are handled.
+         * Changes are always handled before the selector blocks, so
+         * {@link Selector#wakeup()} is only called if the selector is blocked
+         * (or about to block) in select and no other wakeup is pending.
+         */
         public void wakeup()
+        {
+            if (_blocking && _wakeupPending.compareAndSet(false,true))
+                doWakeup();
+        }
+
+        /* ------------------------------------------------------------ */
+        private void doWakeup()
         {
             try
             {
                 Selector selector = _selector;
                 if (selector!=null)
+                {
+                    _wakeups.incrementAndGet();
                     selector.wakeup();
+                }
             }
             catch(Exception e)
             {
@@ -863,7 +1116,7 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
             {
                 for (int i=0;i<100 && _selecting!=null;i++)
                 {
-                    wakeup();
+                    doWakeup();
                     Thread.sleep(10);
                 }
             }
@@ -911,6 +1164,92 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
             }
         }
 
+        /* ------------------------------------------------------------ */
+        /**
+         * @return the number of calls to {@link Selector#wakeup()}
+         */
+        public long getWakeups()
+        {
+            return _wakeups.get();
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return the number of select loops
+         */
+        public long getSelects()
+        {
+            return _loopTime.getCount();
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return the number of queued changes handled
+         */
+        public long getChanges()
+        {
+            return _changesPerSelect.getTotal();
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return the maximum number of queued changes handled by a single select loop
+         */
+        public long getChangesPerSelectMax()
+        {
+            return _changesPerSelect.getMax();
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return the maximum time in microseconds of a select loop, excluding the time blocked in select
+         */
+        public long getSelectLoopTimeMax()
+        {
+            return _loopTime.getMax()/1000;
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return the number of times connections were handled by the selector thread
+         */
+        public long getInlineHandles()
+        {
+            return _inlineTime.getCount();
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return the number of connections that are dispatched because they blocked
+         * or exceeded the maximum inline time when handled by the selector thread
+         */
+        public long getInlineFallbacks()
+        {
+            return _inlineFallbacks.get();
+        }
+
+        /* ------------------------------------------------------------ */
+        void inlineHandled(long nanos)
+        {
+            _inlineTime.set(nanos);
+        }
+
+        /* ------------------------------------------------------------ */
+        void inlineFallback()
+        {
+            _inlineFallbacks.incrementAndGet();
+        }
+
+        /* ------------------------------------------------------------ */
+        public void statsReset()
+        {
+            _wakeups.set(0);
+            _changesPerSelect.reset();
+            _loopTime.reset();
+            _inlineTime.reset();
+            _inlineFallbacks.set(0);
+        }
+
         /* ------------------------------------------------------------ */
         public String dump()
         {
@@ -920,7 +1259,14 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
         /* ------------------------------------------------------------ */
         public void dump(Appendable out, String indent) throws IOException
         {
-            out.append(String.valueOf(this)).append(" id=").append(String.valueOf(_setID)).append("\n");
+            out.append(String.valueOf(this)).append(" id=").append(String.valueOf(_setID))
+                .append(" selects=").append(String.valueOf(getSelects()))
+                .append(" wakeups=").append(String.valueOf(getWakeups()))
+                .append(" changes=").append(String.valueOf(getChanges()))
+                .append(" maxChanges/select=").append(String.valueOf(getChangesPerSelectMax()))
+                .append(" maxLoop=").append(String.valueOf(getSelectLoopTimeMax())).append("us")
+                .append(" inline=").append(String.valueOf(getInlineHandles()))
+                .append(" fallbacks=").append(String.valueOf(getInlineFallbacks())).append("\n");
 
             Thread selecting = _selecting;
 
@@ -0,0 +1,419 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io.nio;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.component.AggregateLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/* ------------------------------------------------------------ */
+/** Direct buffer slab allocator.
+ * <p>
+ * Direct buffers are carved as {@link SlabBuffer}s out of large direct
+ * regions (slabs), so that the cost of {@link ByteBuffer#allocateDirect(int)}
+ * and of freeing native memory is paid once per slab rather than once per
+ * buffer.  Each distinct buffer size has its own slabs, which are split into
+ * equal chunks.
+ * <p>
+ * A {@link SlabBuffer} is allocated with a reference count of one and its
+ * chunk is made available again once it is {@link SlabBuffer#release() released}
+ * as many times as it was {@link SlabBuffer#retain() retained} plus one.
+ * Once the native memory held by slabs reaches {@link #getMaxMemory()}, buffers
+ * are allocated as plain {@link DirectNIOBuffer}s that are freed by the garbage collector.
+ * <p>
+ * A SlabBuffer that is garbage collected without being released loses its
+ * chunk.  In {@link #setDebug(boolean) debug} mode such leaks are detected,
+ * logged with the stack of the allocation and the chunk is recovered.
+ */
+public class SlabAllocator implements Dumpable
+{
+    private static final Logger LOG = Log.getLogger(SlabAllocator.class);
+
+    private final int _slabSize;
+    private final long _maxMemory;
+    private final ConcurrentMap<Integer,SizeClass> _classes = new ConcurrentHashMap<Integer,SizeClass>();
+    private final AtomicLong _memory = new AtomicLong();
+    private final AtomicInteger _slabs = new AtomicInteger();
+    private final AtomicLong _unpooled = new AtomicLong();
+    private final AtomicLong _leaks = new AtomicLong();
+    private final ReferenceQueue<SlabBuffer> _leakQueue = new ReferenceQueue<SlabBuffer>();
+    private final ConcurrentMap<LeakReference,Boolean> _tracked = new ConcurrentHashMap<LeakReference,Boolean>();
+    private volatile boolean _debug;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param slabSize The size in bytes of each slab
+     * @param maxMemory The maximum native memory in bytes to allocate as slabs
+     */
+    public SlabAllocator(int slabSize, long maxMemory)
+    {
+        if (slabSize<=0)
+            throw new IllegalArgumentException("slabSize<=0");
+        _slabSize=slabSize;
+        _maxMemory=maxMemory;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Allocate a buffer with a reference count of one.
+     * @param size The capacity of the buffer
+     * @return A cleared buffer, which is a {@link SlabBuffer} unless the memory limit has been reached.
+     */
+    public DirectNIOBuffer allocate(int size)
+    {
+        if (_debug)
+            reclaimLeaks();
+
+        SizeClass sizeClass=_classes.get(size);
+        if (sizeClass==null)
+        {
+            sizeClass=new SizeClass(size);
+            SizeClass existing=_classes.putIfAbsent(size,sizeClass);
+            if (existing!=null)
+                sizeClass=existing;
+        }
+
+        SlabBuffer buffer=sizeClass.allocate();
+        if (buffer==null)
+        {
+            _unpooled.incrementAndGet();
+            return new DirectNIOBuffer(size);
+        }
+
+        buffer.clear();
+        buffer._references.set(1);
+        if (_debug)
+        {
+            LeakReference leak=new LeakReference(buffer,_leakQueue);
+            buffer._leak=leak;
+            _tracked.put(leak,Boolean.TRUE);
+        }
+        return buffer;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void reclaimLeaks()
+    {
+        LeakReference leak=(LeakReference)_leakQueue.poll();
+        while (leak!=null)
+        {
+            if (_tracked.remove(leak)!=null)
+            {
+                _leaks.incrementAndGet();
+                LOG.warn("Leaked buffer {"+leak._class+"} allocated at:",leak._allocated);
+                leak._class.free(new SlabBuffer(SlabAllocator.this,leak._class,leak._chunk));
+            }
+            leak=(LeakReference)_leakQueue.poll();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return True if allocations are tracked to report leaked buffers
+     */
+    public boolean isDebug()
+    {
+        return _debug;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param debug True if allocations are tracked to report leaked buffers.
+     * Tracking captures the stack of every allocation and should not be used in production.
+     */
+    public void setDebug(boolean debug)
+    {
+        _debug = debug;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The size in bytes of each slab
+     */
+    public int getSlabSize()
+    {
+        return _slabSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum native memory in bytes allocated as slabs
+     */
+    public long getMaxMemory()
+    {
+        return _maxMemory;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The native memory in bytes currently allocated as slabs
+     */
+    public long getMemory()
+    {
+        return _memory.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of slabs allocated
+     */
+    public int getSlabs()
+    {
+        return _slabs.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of buffers allocated outside of slabs because of the memory limit
+     */
+    public long getUnpooled()
+    {
+        return _unpooled.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of leaked buffers detected in debug mode
+     */
+    public long getLeaks()
+    {
+        return _leaks.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of slab buffers currently in use
+     */
+    public int getInUse()
+    {
+        int in_use=0;
+        for (SizeClass sizeClass : _classes.values())
+            in_use+=sizeClass._inUse.get();
+        return in_use;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The allocation stacks of the buffers currently in use, if in debug mode.
+     */
+    public List<Throwable> getInUseStacks()
+    {
+        List<Throwable> stacks = new ArrayList<Throwable>();
+        for (LeakReference leak : _tracked.keySet())
+            stacks.add(leak._allocated);
+        return stacks;
+    }
+
+    /* ------------------------------------------------------------ */
+    public String dump()
+    {
+        return AggregateLifeCycle.dump(this);
+    }
+
+    /* ------------------------------------------------------------ */
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        out.append(String.valueOf(this)).append("\n");
+        AggregateLifeCycle.dump(out,indent,_classes.values());
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{slabs=%d,memory=%d/%d,unpooled=%d,leaks=%d}",
+                getClass().getSimpleName(),hashCode(),getSlabs(),getMemory(),getMaxMemory(),getUnpooled(),getLeaks());
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    private class SizeClass
+    {
+        private final int _size;
+        private final int _chunksPerSlab;
+        private final Queue<SlabBuffer> _free = new ConcurrentLinkedQueue<SlabBuffer>();
+        private final AtomicInteger _inUse = new AtomicInteger();
+
+        /* ------------------------------------------------------------ */
+        SizeClass(int size)
+        {
+            _size=size;
+            _chunksPerSlab=Math.max(1,_slabSize/size);
+        }
+
+        /* ------------------------------------------------------------ */
+        SlabBuffer allocate()
+        {
+            SlabBuffer buffer=_free.poll();
+            while (buffer==null)
+            {
+                if (!newSlab())
+                    return null;
+                buffer=_free.poll();
+            }
+            _inUse.incrementAndGet();
+            return buffer;
+        }
+
+        /* ------------------------------------------------------------ */
+        private boolean newSlab()
+        {
+            long slab_size=(long)_size*_chunksPerSlab;
+            if (_memory.addAndGet(slab_size)>_maxMemory)
+            {
+                _memory.addAndGet(-slab_size);
+                return false;
+            }
+
+            ByteBuffer slab=ByteBuffer.allocateDirect((int)slab_size);
+            _slabs.incrementAndGet();
+            for (int i=0;i<_chunksPerSlab;i++)
+            {
+                slab.limit((i+1)*_size);
+                slab.position(i*_size);
+                _free.offer(new SlabBuffer(SlabAllocator.this,this,slab.slice()));
+            }
+            return true;
+        }
+
+        /* ------------------------------------------------------------ */
+        void free(SlabBuffer buffer)
+        {
+            _inUse.decrementAndGet();
+            _free.offer(buffer);
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public String toString()
+        {
+            return String.format("size=%d inUse=%d free=%d",_size,_inUse.get(),_free.size());
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    private static class LeakReference extends WeakReference<SlabBuffer>
+    {
+        final SizeClass _class;
+        final ByteBuffer _chunk;
+        final Throwable _allocated;
+
+        LeakReference(SlabBuffer buffer, ReferenceQueue<SlabBuffer> queue)
+        {
+            super(buffer,queue);
+            _class=buffer._class;
+            _chunk=buffer._buf;
+            _allocated=new Throwable("allocated");
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /** A reference counted direct buffer backed by a chunk of a slab.
+     */
+    public static class SlabBuffer extends DirectNIOBuffer
+    {
+        private final SlabAllocator _allocator;
+        private final SizeClass _class;
+        private final AtomicInteger _references = new AtomicInteger();
+        private volatile LeakReference _leak;
+
+        /* ------------------------------------------------------------ */
+        private SlabBuffer(SlabAllocator allocator, SizeClass sizeClass, ByteBuffer chunk)
+        {
+            super(chunk,false);
+            _allocator=allocator;
+            _class=sizeClass;
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return The allocator of this buffer
+         */
+        public SlabAllocator getAllocator()
+        {
+            return _allocator;
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return The current reference count
+         */
+        public int getReferences()
+        {
+            return _references.get();
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * Increment the reference count.
+         * @return this buffer
+         */
+        public SlabBuffer retain()
+        {
+            while (true)
+            {
+                int references=_references.get();
+                if (references<=0)
+                    throw new IllegalStateException("released");
+                if (_references.compareAndSet(references,references+1))
+                    return this;
+            }
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * Decrement the reference count, returning the chunk to the slab
+         * when it reaches zero. The buffer must not be used after its last release.
+         * @return True if the chunk was returned to the slab
+         */
+        public boolean release()
+        {
+            int references=_references.decrementAndGet();
+            if (references>0)
+                return false;
+            if (references<0)
+            {
+                _references.incrementAndGet();
+                throw new IllegalStateException("released");
+            }
+
+            LeakReference leak=_leak;
+            if (leak!=null)
+            {
+                _leak=null;
+                _allocator._tracked.remove(leak);
+                leak.clear();
+            }
+            clear();
+            _class.free(this);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io.nio;
+
+import org.eclipse.jetty.io.Buffer;
+import org.eclipse.jetty.io.Buffers;
+
+/* ------------------------------------------------------------ */
+/** Buffers backed by a {@link SlabAllocator}.
+ * <p>
+ * All buffers are direct. {@link #returnBuffer(Buffer)} releases
+ * the buffers allocated by the slab allocator and ignores all others.
+ */
+public class SlabBuffers implements Buffers
+{
+    private final SlabAllocator _allocator;
+    private final int _headerSize;
+    private final int _bufferSize;
+
+    /* ------------------------------------------------------------ */
+    public SlabBuffers(SlabAllocator allocator, int headerSize, int bufferSize)
+    {
+        _allocator=allocator;
+        _headerSize=headerSize;
+        _bufferSize=bufferSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    public SlabAllocator getAllocator()
+    {
+        return _allocator;
+    }
+
+    /* ------------------------------------------------------------ */
+    public Buffer getHeader()
+    {
+        return _allocator.allocate(_headerSize);
+    }
+
+    /* ------------------------------------------------------------ */
+    public Buffer getBuffer()
+    {
+        return _allocator.allocate(_bufferSize);
+    }
+
+    /* ------------------------------------------------------------ */
+    public Buffer getBuffer(int size)
+    {
+        return _allocator.allocate(size);
+    }
+
+    /* ------------------------------------------------------------ */
+    public void returnBuffer(Buffer buffer)
+    {
+        if (buffer instanceof SlabAllocator.SlabBuffer && ((SlabAllocator.SlabBuffer)buffer).getAllocator()==_allocator)
+            ((SlabAllocator.SlabBuffer)buffer).release();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return "{{"+_headerSize+","+_bufferSize+"},"+_allocator+"}";
+    }
+}
@@ -0,0 +1,131 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io.nio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+
+/* ------------------------------------------------------------ */
+/**
+ * Statistics of the SSL handshakes completed by {@link SslSelectChannelEndPoint}s.
+ * <p>
+ * Only the initial handshake of each connection is recorded. Its time is measured from
+ * when the end point is created until the engine reports that the handshake has finished.
+ * A handshake is counted as resumed if the session it established was created
+ * before the handshake started.
+ */
+public class SslHandshakeStatistics
+{
+    private final AtomicLong _startedAt = new AtomicLong(System.currentTimeMillis());
+    private final SampleStatistic _handshakeStats = new SampleStatistic();
+    private final AtomicLong _resumed = new AtomicLong();
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Record a completed handshake.
+     * @param duration The time of the handshake in ms
+     * @param resumed True if an existing session was resumed
+     */
+    public void handshake(long duration, boolean resumed)
+    {
+        _handshakeStats.set(duration);
+        if (resumed)
+            _resumed.incrementAndGet();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Reset the statistics.
+     */
+    public void reset()
+    {
+        _startedAt.set(System.currentTimeMillis());
+        _handshakeStats.reset();
+        _resumed.set(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of handshakes since the statistics were reset
+     */
+    public long getHandshakes()
+    {
+        return _handshakeStats.getCount();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of handshakes that resumed a session since the statistics were reset
+     */
+    public long getHandshakesResumed()
+    {
+        return _resumed.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The ratio of resumed handshakes to all handshakes, or 0 if there have been none
+     */
+    public double getHandshakesResumedRatio()
+    {
+        long handshakes=getHandshakes();
+        return handshakes==0?0.0:((double)getHandshakesResumed())/handshakes;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The mean number of handshakes per second since the statistics were reset
+     */
+    public double getHandshakeRate()
+    {
+        long ms=System.currentTimeMillis()-_startedAt.get();
+        return ms<=0?0.0:getHandshakes()*1000.0/ms;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum time of a handshake in ms
+     */
+    public long getHandshakeTimeMax()
+    {
+        return _handshakeStats.getMax();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The mean time of a handshake in ms
+     */
+    public double getHandshakeTimeMean()
+    {
+        return _handshakeStats.getMean();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The standard deviation of the time of a handshake in ms
+     */
+    public double getHandshakeTimeStdDev()
+    {
+        return _handshakeStats.getStdDev();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{handshakes=%d,resumed=%d,rate=%.1f/s,mean=%.1fms,max=%dms}",
+                getClass().getSimpleName(),hashCode(),getHandshakes(),getHandshakesResumed(),getHandshakeRate(),getHandshakeTimeMean(),getHandshakeTimeMax());
+    }
+}
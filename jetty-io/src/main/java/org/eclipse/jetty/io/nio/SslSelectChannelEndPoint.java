@@ -17,6 +17,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLEngineResult.HandshakeStatus;
@@ -28,6 +30,7 @@ import org.eclipse.jetty.io.Buffers;
 import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 /* ------------------------------------------------------------ */
 /**
@@ -62,6 +65,11 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
     private boolean _handshook=false;
     private boolean _allowRenegotiate=false;
 
+    private volatile ThreadPool _taskThreadPool;
+    private boolean _tasksPending;
+    private volatile SslHandshakeStatistics _handshakeStatistics;
+    private long _handshakeStarted=System.currentTimeMillis();
+
     private final boolean _debug = __log.isDebugEnabled(); // snapshot debug status for optimizer
 
     /* ------------------------------------------------------------ */
@@ -145,6 +153,153 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
         }
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Release the packet buffers to the pool if they are empty and not in use.
+     */
+    private void releaseBuffers()
+    {
+        synchronized (this)
+        {
+            if (_outCount<=0 && _outNIOBuffer!=null && _outNIOBuffer.length()==0)
+            {
+                _buffers.returnBuffer(_outNIOBuffer);
+                _outNIOBuffer=null;
+                _outCount=0;
+            }
+            if (_inCount<=0 && _inNIOBuffer!=null && _inNIOBuffer.length()==0)
+            {
+                _buffers.returnBuffer(_inNIOBuffer);
+                _inNIOBuffer=null;
+                _inCount=0;
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The thread pool that runs the delegated tasks of the engine, or null if they are run by the calling thread.
+     */
+    public ThreadPool getTaskThreadPool()
+    {
+        return _taskThreadPool;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the thread pool used to run the delegated tasks of the engine (eg the key exchange of
+     * a handshake), so that a burst of handshakes does not hold the threads that handle
+     * established connections. While the tasks run, the end point makes no progress and it is
+     * dispatched (or a blocked thread woken) when they are done. If the thread pool cannot
+     * take the tasks, they are run by the calling thread.
+     * @param taskThreadPool The thread pool, or null to run the tasks in the calling thread (default)
+     */
+    public void setTaskThreadPool(ThreadPool taskThreadPool)
+    {
+        _taskThreadPool=taskThreadPool;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The statistics that completed handshakes are recorded to, or null
+     */
+    public SslHandshakeStatistics getHandshakeStatistics()
+    {
+        return _handshakeStatistics;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param handshakeStatistics The statistics to record completed handshakes to, or null
+     */
+    public void setHandshakeStatistics(SslHandshakeStatistics handshakeStatistics)
+    {
+        _handshakeStatistics=handshakeStatistics;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Run the delegated tasks of the engine.
+     * @return True if the tasks have been run. False if they have been given to the
+     * task thread pool and the end point will be dispatched when they are done.
+     */
+    private boolean runDelegatedTasks()
+    {
+        ThreadPool pool=_taskThreadPool;
+        if (pool==null)
+        {
+            Runnable task;
+            while ((task=_engine.getDelegatedTask())!=null)
+                task.run();
+            return true;
+        }
+
+        synchronized (this)
+        {
+            if (_tasksPending)
+                return false;
+            _tasksPending=true;
+        }
+
+        final List<Runnable> tasks=new ArrayList<Runnable>();
+        Runnable task;
+        while ((task=_engine.getDelegatedTask())!=null)
+            tasks.add(task);
+
+        if (pool.dispatch(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (Runnable task : tasks)
+                            task.run();
+                    }
+                    finally
+                    {
+                        synchronized (SslSelectChannelEndPoint.this)
+                        {
+                            _tasksPending=false;
+                        }
+                        dispatchOrWakeup();
+                    }
+                }
+            }))
+            return false;
+
+        // The pool is full, so run the tasks here
+        if (_debug) __log.debug(_session+" tasks not dispatched");
+        try
+        {
+            for (Runnable t : tasks)
+                t.run();
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                _tasksPending=false;
+            }
+        }
+        return true;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Record the initial handshake to the statistics when the engine reports it has finished.
+     * Later reports (eg after a TLS 1.3 session ticket or a renegotiation) are not recorded.
+     */
+    private void updateHandshake(SSLEngineResult result)
+    {
+        if (_handshakeStarted>0 && result.getHandshakeStatus()==HandshakeStatus.FINISHED)
+        {
+            SslHandshakeStatistics stats=_handshakeStatistics;
+            if (stats!=null)
+                stats.handshake(System.currentTimeMillis()-_handshakeStarted,_engine.getSession().getCreationTime()<_handshakeStarted);
+            _handshakeStarted=0;
+        }
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * @return True if the endpoint has produced/consumed bytes itself (non application data).
@@ -262,13 +417,11 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
 
                 case NEED_TASK:
                 {
-                    // A task needs to be run, so run it!
-
-                    Runnable task;
-                    while ((task=_engine.getDelegatedTask())!=null)
-                    {
-                        task.run();
-                    }
+                    // A task needs to be run, so run it, or if the
+                    // tasks have been given to the task thread pool, then
+                    // wait for the end point to be dispatched when they are done
+                    if (!runDelegatedTasks())
+                        break loop;
 
                     // Detect SUN JVM Bug!!!
                     if(initialStatus==HandshakeStatus.NOT_HANDSHAKING &&
@@ -303,6 +456,7 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
                             out_buffer.position();
                             _result=null;
                             _result=_engine.wrap(__NO_BUFFERS,out_buffer);
+                            updateHandshake(_result);
                             if (_debug) __log.debug(_session+" fill wrap "+_result);
                             switch(_result.getStatus())
                             {
@@ -425,6 +579,7 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
                             out_buffer.position(put);
                             _result=null;
                             _result=_engine.wrap(__NO_BUFFERS,out_buffer);
+                            updateHandshake(_result);
                             if (_debug) __log.debug(_session+" close wrap "+_result);
                             _outNIOBuffer.setPutIndex(put+_result.bytesProduced());
                         }
@@ -546,13 +701,11 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
 
                         case NEED_TASK:
                         {
-                            // A task needs to be run, so run it!
-
-                            Runnable task;
-                            while ((task=_engine.getDelegatedTask())!=null)
-                            {
-                                task.run();
-                            }
+                            // A task needs to be run, so run it, or if the
+                            // tasks have been given to the task thread pool, then
+                            // wait for the end point to be dispatched when they are done
+                            if (!runDelegatedTasks())
+                                break loop;
 
                             // Detect SUN JVM Bug!!!
                             if(initialStatus==HandshakeStatus.NOT_HANDSHAKING &&
@@ -587,6 +740,7 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
                                     out_buffer.position();
                                     _result=null;
                                     _result=_engine.wrap(__NO_BUFFERS,out_buffer);
+                                    updateHandshake(_result);
                                     if (_debug) __log.debug(_session+" fill wrap "+_result);
                                     switch(_result.getStatus())
                                     {
@@ -643,6 +797,40 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
         return flush(buffer,null,null);
     }
 
+    /* ------------------------------------------------------------ */
+    /*
+     * Buffers are wrapped in pairs, as the engine encrypts into a single out buffer.
+     */
+    @Override
+    public int flush(Buffer[] buffers) throws IOException
+    {
+        int flushed=0;
+        Buffer header=null;
+        for (int i=0;i<=buffers.length;i++)
+        {
+            Buffer buffer=i<buffers.length?buffers[i]:null;
+            if (i<buffers.length && (buffer==null || buffer.length()==0))
+                continue;
+            if (header==null)
+            {
+                header=buffer;
+                if (header!=null)
+                    continue;
+                break;
+            }
+
+            int length=header.length()+(buffer==null?0:buffer.length());
+            int f=flush(header,buffer,null);
+            if (f<0)
+                return flushed>0?flushed:f;
+            flushed+=f;
+            if (f<length)
+                break;
+            header=null;
+        }
+        return flushed;
+    }
+
 
     /* ------------------------------------------------------------ */
     /*
@@ -724,11 +912,8 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
 
                 case NEED_TASK:
                 {
-                    Runnable task;
-                    while ((task=_engine.getDelegatedTask())!=null)
-                    {
-                        task.run();
-                    }
+                    if (!runDelegatedTasks())
+                        break loop;
                     break;
                 }
 
@@ -744,6 +929,7 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
                             out_buffer.position();
                             _result=null;
                             _result=_engine.wrap(__NO_BUFFERS,out_buffer);
+                            updateHandshake(_result);
                             if (_debug) __log.debug(_session+" flush wrap "+_result);
                             switch(_result.getStatus())
                             {
@@ -791,6 +977,10 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
             int flushed=super.flush(_outNIOBuffer);
             if (_debug) 
                 __log.debug(_session+" Flushed "+flushed+" left="+_outNIOBuffer.length());
+
+            // Return the out buffer to the pool as soon as a buffered record is written
+            if (_outNIOBuffer.length()==0)
+                releaseBuffers();
         }
         else if (_closing)
         {
@@ -867,7 +1057,7 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
                     if (_outNIOBuffer!=null)
                     {
                         _outNIOBuffer.clear();
-                        freeOutBuffer();
+                        releaseBuffers();
                     }
                     throw e;
                 }
@@ -893,7 +1083,7 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
             }
 
             freeInBuffer();
-            freeOutBuffer();
+            releaseBuffers();
 
             if (!isOpen())
                 throw new EofException();
@@ -911,6 +1101,7 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
 
             // Do the unwrap
             _result=_engine.unwrap(in_buffer,buffer);
+            updateHandshake(_result);
             if (_debug) __log.debug(_session+" unwrap unwrap "+_result);
 
             // skip the bytes consumed
@@ -919,7 +1110,7 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
         catch(SSLException e)
         {
             LOG.warn(getRemoteAddr() + ":" + getRemotePort() + " " + e);
-            freeOutBuffer();
+            releaseBuffers();
             super.close();
             throw e;
         }
@@ -1005,6 +1196,7 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
 
                         _result=null;
                         _result=_engine.wrap(_gather,out_buffer);
+                        updateHandshake(_result);
                         if (_debug) __log.debug(_session+" wrap wrap "+_result);
                         _outNIOBuffer.setGetIndex(0);
                         _outNIOBuffer.setPutIndex(_result.bytesProduced());
@@ -1088,6 +1280,7 @@ public class SslSelectChannelEndPoint extends SelectChannelEndPoint
                     out_buffer.limit(out_buffer.capacity());
                     _result=null;
                     _result=_engine.wrap(_gather[0],out_buffer);
+                    updateHandshake(_result);
                     if (_debug) __log.debug(_session+" wrap wrap "+_result);
                     _outNIOBuffer.setGetIndex(0);
                     _outNIOBuffer.setPutIndex(_result.bytesProduced());
@@ -146,4 +146,50 @@ public class BufferCacheTest
                 assertNotSame(S[i], b);
         }
     }
+
+    @Test
+    public void testLookupRange()
+    {
+        cache.add("HTTP/1.1",11);
+        cache.add("ISO-8859-1",12);
+        cache.add("max-age=0",13);
+
+        Buffer buf=new ByteArrayBuffer("GET / http/1.1\r\nCharset: iso-8859-1; Max-Age=0\r\n");
+        assertEquals(11,cache.get(buf,6,8).getOrdinal());
+        assertEquals(12,cache.get(buf,25,10).getOrdinal());
+        assertEquals(13,cache.get(buf,37,9).getOrdinal());
+        assertEquals(null,cache.get(buf,6,7));
+        assertEquals(null,cache.get(buf,6,9));
+        assertEquals(null,cache.get(buf,0,0));
+
+        Buffer b=cache.lookup(buf,0,3);
+        assertEquals("GET",b.toString());
+        assertEquals(-1,cache.getOrdinal(b));
+        assertSame("HTTP/1.1",cache.lookup(buf,6,8).toString());
+
+        // Buffers without an array are walked byte by byte
+        Buffer direct=new ByteArrayBuffer("Xiso-8859-1")
+        {
+            @Override
+            public byte[] array()
+            {
+                return null;
+            }
+        };
+        assertEquals(12,cache.get(direct,1,10).getOrdinal());
+    }
+
+    @Test
+    public void testNonAsciiValue() throws Exception
+    {
+        cache.add("caf\u00e9",5);
+
+        ByteArrayBuffer buf=new ByteArrayBuffer("CAF\u00c9".getBytes("ISO-8859-1"));
+        assertEquals(null,cache.get(buf));
+        buf=new ByteArrayBuffer("caf\u00e9".getBytes("ISO-8859-1"));
+        assertEquals(5,cache.get(buf).getOrdinal());
+        assertEquals(5,cache.get(buf,0,4).getOrdinal());
+        buf=new ByteArrayBuffer("S1");
+        assertEquals(1,cache.get(buf).getOrdinal());
+    }
 }
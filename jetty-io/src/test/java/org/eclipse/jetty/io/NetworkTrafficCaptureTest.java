@@ -0,0 +1,137 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NetworkTrafficCaptureTest
+{
+    private File _file;
+
+    @Before
+    public void init() throws Exception
+    {
+        _file = File.createTempFile("capture",".jttc");
+        _file.deleteOnExit();
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        _file.delete();
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception
+    {
+        NetworkTrafficCapture capture = new NetworkTrafficCapture(3,8);
+        capture.setFileName(_file.getAbsolutePath());
+        assertEquals(4,capture.getSlots());
+
+        // Nothing drains the ring until the capture is started
+        Buffer buffer = new ByteArrayBuffer("0123456789");
+        capture.incoming(1,buffer,buffer.getIndex(),buffer.length());
+        capture.outgoing(1,buffer,2,3);
+        capture.incoming(2,buffer,0,0);
+        capture.outgoing(2,buffer,0,1);
+        capture.closed(1);
+        capture.closed(2);
+        capture.incoming(2,buffer,0,1);
+        assertEquals(4,capture.getCaptured());
+        assertEquals(2,capture.getDropped());
+
+        capture.start();
+        capture.stop();
+
+        DataInputStream in = new DataInputStream(new FileInputStream(_file));
+        try
+        {
+            assertEquals(NetworkTrafficCapture.MAGIC,in.readInt());
+            assertEquals(NetworkTrafficCapture.VERSION,in.readShort());
+            assertEquals(8,in.readInt());
+
+            assertRecord(in,NetworkTrafficCapture.INCOMING,1,10,"01234567");
+            assertRecord(in,NetworkTrafficCapture.OUTGOING,1,3,"234");
+            assertRecord(in,NetworkTrafficCapture.OUTGOING,2,1,"0");
+            assertRecord(in,NetworkTrafficCapture.CLOSED,1,0,"");
+            assertEquals(-1,in.read());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testRingWraps() throws Exception
+    {
+        NetworkTrafficCapture capture = new NetworkTrafficCapture(4,16);
+        capture.setFileName(_file.getAbsolutePath());
+        capture.setDrainInterval(1);
+        capture.start();
+
+        Buffer buffer = new ByteArrayBuffer("data");
+        int events=1000;
+        for (int i=0;i<events;i++)
+            capture.outgoing(i,buffer,0,4);
+        capture.stop();
+        assertEquals(events,capture.getCaptured()+capture.getDropped());
+
+        DataInputStream in = new DataInputStream(new FileInputStream(_file));
+        try
+        {
+            in.readInt();
+            in.readShort();
+            in.readInt();
+            long last=-1;
+            for (long i=0;i<capture.getCaptured();i++)
+            {
+                assertEquals(NetworkTrafficCapture.OUTGOING,in.readByte());
+                in.readLong();
+                long id=in.readLong();
+                assertTrue(id>last);
+                last=id;
+                assertEquals(4,in.readInt());
+                assertEquals(4,in.readInt());
+                in.readFully(new byte[4]);
+            }
+            assertEquals(-1,in.read());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private void assertRecord(DataInputStream in, byte event, long id, int length, String captured) throws Exception
+    {
+        assertEquals(event,in.readByte());
+        in.readLong();
+        assertEquals(id,in.readLong());
+        assertEquals(length,in.readInt());
+        assertEquals(captured.length(),in.readInt());
+        byte[] bytes = new byte[captured.length()];
+        in.readFully(bytes);
+        assertEquals(captured,new String(bytes,"ISO-8859-1"));
+    }
+}
@@ -0,0 +1,140 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.io.nio.DirectNIOBuffer;
+import org.junit.Test;
+
+public class StripedBuffersTest
+{
+    @Test
+    public void testThreadSlot() throws Exception
+    {
+        StripedBuffers buffers = new StripedBuffers(Buffers.Type.BYTE_ARRAY,1024,Buffers.Type.BYTE_ARRAY,4096,Buffers.Type.DIRECT,-1,4);
+
+        Buffer header=buffers.getHeader();
+        Buffer buffer=buffers.getBuffer();
+        Buffer other=buffers.getBuffer(2048);
+        assertEquals(1024,header.capacity());
+        assertEquals(4096,buffer.capacity());
+        assertEquals(2048,other.capacity());
+        assertTrue(other instanceof DirectNIOBuffer);
+        assertEquals(3,buffers.getMisses());
+
+        buffers.returnBuffer(header);
+        buffers.returnBuffer(buffer);
+        buffers.returnBuffer(other);
+        assertEquals(0,buffers.getRetainedBytes());
+
+        assertSame(header,buffers.getHeader());
+        assertSame(buffer,buffers.getBuffer());
+        assertSame(other,buffers.getBuffer(2048));
+        assertEquals(3,buffers.getHits());
+    }
+
+    @Test
+    public void testSharedPool() throws Exception
+    {
+        final StripedBuffers buffers = new StripedBuffers(Buffers.Type.BYTE_ARRAY,1024,Buffers.Type.BYTE_ARRAY,4096,Buffers.Type.BYTE_ARRAY,-1,4);
+
+        Buffer b0=buffers.getBuffer();
+        Buffer b1=buffers.getBuffer();
+        buffers.returnBuffer(b0);
+        buffers.returnBuffer(b1);
+        assertEquals(4096,buffers.getRetainedBytes());
+        assertEquals(1,buffers.getRetainedBuffers());
+
+        // another thread finds the buffer in the shared pool
+        final AtomicReference<Buffer> found = new AtomicReference<Buffer>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        new Thread()
+        {
+            @Override
+            public void run()
+            {
+                found.set(buffers.getBuffer());
+                latch.countDown();
+            }
+        }.start();
+        latch.await();
+
+        assertSame(b1,found.get());
+        assertEquals(0,buffers.getRetainedBytes());
+        assertSame(b0,buffers.getBuffer());
+    }
+
+    @Test
+    public void testMaxRetained() throws Exception
+    {
+        StripedBuffers buffers = new StripedBuffers(Buffers.Type.BYTE_ARRAY,1024,Buffers.Type.BYTE_ARRAY,4096,Buffers.Type.BYTE_ARRAY,8192,2);
+
+        Buffer[] b = new Buffer[5];
+        for (int i=0;i<b.length;i++)
+            b[i]=buffers.getBuffer();
+        for (int i=0;i<b.length;i++)
+            buffers.returnBuffer(b[i]);
+
+        // one in the thread slot, two in the shared pool, two discarded
+        assertEquals(8192,buffers.getRetainedBytes());
+        assertEquals(2,buffers.getDiscards());
+    }
+
+    @Test
+    public void testOtherSizes() throws Exception
+    {
+        StripedBuffers buffers = new StripedBuffers(Buffers.Type.BYTE_ARRAY,1024,Buffers.Type.BYTE_ARRAY,4096,Buffers.Type.BYTE_ARRAY,-1,2);
+
+        Buffer header=buffers.getBuffer(1024);
+        assertEquals(1024,header.capacity());
+        buffers.returnBuffer(header);
+        assertSame(header,buffers.getHeader());
+
+        Buffer o0=buffers.getBuffer(100);
+        Buffer o1=buffers.getBuffer(200);
+        Buffer o2=buffers.getBuffer(200);
+        buffers.returnBuffer(o0);
+        buffers.returnBuffer(o1);
+        buffers.returnBuffer(o2);
+        assertSame(o0,buffers.getBuffer(100));
+        assertSame(o1,buffers.getBuffer(200));
+        assertSame(o2,buffers.getBuffer(200));
+        assertEquals(0,buffers.getRetainedBuffers());
+    }
+
+    @Test
+    public void testOtherSizeMismatch() throws Exception
+    {
+        StripedBuffers buffers = new StripedBuffers(Buffers.Type.BYTE_ARRAY,1024,Buffers.Type.BYTE_ARRAY,4096,Buffers.Type.BYTE_ARRAY,-1,2);
+
+        Buffer small=buffers.getBuffer(100);
+        buffers.returnBuffer(small);
+
+        // the slot buffer is the wrong size, so it is neither returned nor given out twice
+        Buffer b0=buffers.getBuffer(300);
+        Buffer b1=buffers.getBuffer(300);
+        assertEquals(300,b0.capacity());
+        assertEquals(300,b1.capacity());
+        assertNotSame(b0,b1);
+        assertNotSame(small,b0);
+        assertSame(small,buffers.getBuffer(100));
+    }
+}
@@ -0,0 +1,240 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.io.Buffer;
+import org.eclipse.jetty.io.ByteArrayBuffer;
+import org.eclipse.jetty.io.EndPointStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChannelEndPointTest
+{
+    private ServerSocketChannel _server;
+    private SocketChannel _client;
+    private SocketChannel _accepted;
+
+    @Before
+    public void init() throws Exception
+    {
+        _server = ServerSocketChannel.open();
+        _server.socket().bind(new InetSocketAddress("127.0.0.1",0));
+        _client = SocketChannel.open(new InetSocketAddress("127.0.0.1",_server.socket().getLocalPort()));
+        _accepted = _server.accept();
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        _client.close();
+        _accepted.close();
+        _server.close();
+    }
+
+    @Test
+    public void testGatheringFlush() throws Exception
+    {
+        File file = File.createTempFile("gather",".txt");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("0123456789".getBytes("ISO-8859-1"));
+        out.close();
+
+        ChannelEndPoint endp = new ChannelEndPoint(_accepted);
+        Buffer direct = new DirectNIOBuffer(16);
+        direct.put(new ByteArrayBuffer("direct,"));
+        Buffer[] buffers = new Buffer[]
+        {
+            new ByteArrayBuffer("array,"),
+            null,
+            direct,
+            new ByteArrayBuffer(0),
+            new IndirectNIOBuffer(ByteBuffer.wrap("indirect,".getBytes("ISO-8859-1")),false),
+            new FileRegionBuffer(file,2,5),
+            new ByteArrayBuffer(",end")
+        };
+
+        int flushed = endp.flush(buffers);
+        assertEquals(6+7+9+5+4,flushed);
+        for (Buffer buffer : buffers)
+            assertTrue(buffer==null || buffer.length()==0);
+
+        byte[] received = new byte[flushed];
+        InputStream in = _client.socket().getInputStream();
+        int len=0;
+        while (len<received.length)
+            len+=in.read(received,len,received.length-len);
+        assertEquals("array,direct,indirect,23456,end",new String(received,"ISO-8859-1"));
+        file.delete();
+    }
+
+    @Test
+    public void testRepeatedGatheringFlush() throws Exception
+    {
+        ChannelEndPoint endp = new ChannelEndPoint(_accepted);
+        Buffer header = new DirectNIOBuffer(16);
+        Buffer body = new ByteArrayBuffer(16);
+        Buffer other = new IndirectNIOBuffer(16);
+        StringBuilder expected = new StringBuilder();
+
+        // The same buffers are flushed with new content, and the buffer of a slot changes
+        int flushed=0;
+        for (int i=0;i<6;i++)
+        {
+            header.clear();
+            header.put(new ByteArrayBuffer("h"+i+","));
+            Buffer content = i%3==2?other:body;
+            content.clear();
+            content.put(new ByteArrayBuffer("content"+i+";"));
+            expected.append("h").append(i).append(",content").append(i).append(";");
+
+            Buffer[] buffers = i%2==0?new Buffer[]{header,content}:new Buffer[]{header,null,content};
+            flushed += endp.flush(buffers);
+            assertEquals(0,header.length());
+            assertEquals(0,content.length());
+        }
+        assertEquals(expected.length(),flushed);
+
+        byte[] received = new byte[flushed];
+        InputStream in = _client.socket().getInputStream();
+        int len=0;
+        while (len<received.length)
+            len+=in.read(received,len,received.length-len);
+        assertEquals(expected.toString(),new String(received,"ISO-8859-1"));
+    }
+
+    @Test
+    public void testPartialGatheringFlush() throws Exception
+    {
+        _accepted.socket().setSendBufferSize(4096);
+        _accepted.configureBlocking(false);
+        ChannelEndPoint endp = new ChannelEndPoint(_accepted);
+
+        byte[] content = new byte[1024*1024];
+        for (int i=0;i<content.length;i++)
+            content[i]=(byte)('a'+i%26);
+
+        Buffer[] buffers = new Buffer[16];
+        for (int i=0;i<buffers.length;i++)
+            buffers[i]=new ByteArrayBuffer(content,i*content.length/buffers.length,content.length/buffers.length);
+
+        // nobody is reading, so the write can only be partial
+        int flushed = endp.flush(buffers);
+        assertTrue(flushed>0);
+        assertTrue(flushed<content.length);
+        int remaining=0;
+        for (Buffer buffer : buffers)
+            remaining+=buffer.length();
+        assertEquals(content.length-flushed,remaining);
+
+        final InputStream in = _client.socket().getInputStream();
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread reader = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    byte[] buf = new byte[4096];
+                    int len;
+                    while ((len=in.read(buf))>=0)
+                        received.write(buf,0,len);
+                }
+                catch(Throwable th)
+                {
+                    failure.set(th);
+                }
+            }
+        };
+        reader.start();
+
+        while (remaining>0)
+        {
+            int f=endp.flush(buffers);
+            if (f==0)
+                Thread.sleep(1);
+            remaining-=f;
+        }
+        endp.close();
+        reader.join(10000);
+        assertFalse(reader.isAlive());
+        assertNull(failure.get());
+
+        byte[] bytes = received.toByteArray();
+        assertEquals(content.length,bytes.length);
+        assertEquals(new String(content,"ISO-8859-1"),new String(bytes,"ISO-8859-1"));
+    }
+
+    @Test
+    public void testStatistics() throws Exception
+    {
+        EndPointStatistics stats = new EndPointStatistics();
+        _accepted.configureBlocking(false);
+        ChannelEndPoint endp = new ChannelEndPoint(_accepted);
+        endp.setStatistics(stats);
+
+        Buffer buffer = new IndirectNIOBuffer(1024);
+        assertEquals(0,endp.fill(buffer));
+        _client.write(ByteBuffer.wrap("Hello".getBytes("ISO-8859-1")));
+        int filled=0;
+        while (filled==0)
+        {
+            filled=endp.fill(buffer);
+            if (filled==0)
+                Thread.sleep(1);
+        }
+        assertEquals(5,filled);
+        assertEquals(5,stats.getBytesFilled());
+        assertTrue(stats.getFills()>=2);
+        assertEquals(stats.getFills()-1,stats.getEmptyFills());
+
+        endp.flush(new Buffer[]{buffer,new ByteArrayBuffer(" World")});
+        assertEquals(11,stats.getBytesFlushed());
+        assertEquals(1,stats.getFlushes());
+        assertEquals(0,stats.getPartialFlushes());
+
+        // nobody is reading, so the writes will eventually be partial
+        _accepted.socket().setSendBufferSize(4096);
+        Buffer big = new ByteArrayBuffer(new byte[1024*1024]);
+        endp.flush(big);
+        assertEquals(2,stats.getFlushes());
+        assertEquals(1,stats.getPartialFlushes());
+        assertEquals(11+1024*1024-big.length(),stats.getBytesFlushed());
+        assertEquals(2,stats.getFlushTime().getCount());
+        assertTrue(stats.dump().contains("flush(us) count=2"));
+
+        stats.reset();
+        assertEquals(0,stats.getFills());
+        assertEquals(0,stats.getBytesFlushed());
+        assertEquals(0,stats.getPartialFlushes());
+    }
+}
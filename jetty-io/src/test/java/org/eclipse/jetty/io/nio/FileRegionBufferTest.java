@@ -0,0 +1,127 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.io.Buffer;
+import org.eclipse.jetty.io.ByteArrayBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileRegionBufferTest
+{
+    private File _file;
+    private byte[] _content;
+
+    @Before
+    public void init() throws Exception
+    {
+        _content=new byte[256*1024];
+        for (int i=0;i<_content.length;i++)
+            _content[i]=(byte)('a'+i%26);
+        _file=File.createTempFile("region",".txt");
+        _file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(_file);
+        out.write(_content);
+        out.close();
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        _file.delete();
+    }
+
+    @Test
+    public void testMappedAccess() throws Exception
+    {
+        FileRegionBuffer region = new FileRegionBuffer(_file,1000,100);
+        assertEquals(100,region.length());
+        assertEquals(_content[1000],region.peek());
+        assertEquals(_content[1099],region.peek(99));
+
+        Buffer copy = new ByteArrayBuffer(200);
+        copy.put(region);
+        assertEquals(new String(_content,1000,100,"ISO-8859-1"),copy.toString());
+        assertTrue(region.getByteBuffer().isDirect());
+    }
+
+    @Test
+    public void testTransfer() throws Exception
+    {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress("127.0.0.1",0));
+        SocketChannel client = SocketChannel.open(new InetSocketAddress("127.0.0.1",server.socket().getLocalPort()));
+        SocketChannel accepted = server.accept();
+        try
+        {
+            ChannelEndPoint endp = new ChannelEndPoint(accepted);
+            final InputStream in = client.socket().getInputStream();
+            final ByteArrayOutputStream received = new ByteArrayOutputStream();
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            Thread reader = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        byte[] buf = new byte[4096];
+                        int len;
+                        while ((len=in.read(buf))>=0)
+                            received.write(buf,0,len);
+                    }
+                    catch(Throwable th)
+                    {
+                        failure.set(th);
+                    }
+                }
+            };
+            reader.start();
+
+            Buffer header = new ByteArrayBuffer("HEADER\r\n");
+            FileRegionBuffer region = new FileRegionBuffer(_file,10,_content.length-20);
+            while (header.length()>0 || region.length()>0)
+                endp.flush(header,region,null);
+            endp.close();
+            reader.join(10000);
+            assertFalse(reader.isAlive());
+            assertNull(failure.get());
+
+            byte[] bytes = received.toByteArray();
+            assertEquals(8+_content.length-20,bytes.length);
+            assertEquals("HEADER\r\n",new String(bytes,0,8,"ISO-8859-1"));
+            assertEquals(new String(_content,10,_content.length-20,"ISO-8859-1"),new String(bytes,8,bytes.length-8,"ISO-8859-1"));
+        }
+        finally
+        {
+            client.close();
+            server.close();
+        }
+    }
+}
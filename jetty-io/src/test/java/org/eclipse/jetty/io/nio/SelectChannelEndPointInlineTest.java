@@ -0,0 +1,356 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.io.AbstractConnection;
+import org.eclipse.jetty.io.Buffer;
+import org.eclipse.jetty.io.ConnectedEndPoint;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.NonBlockingConnection;
+import org.eclipse.jetty.toolchain.test.Stress;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SelectChannelEndPointInlineTest
+{
+    private ServerSocketChannel _connector;
+    private QueuedThreadPool _threadPool;
+    private SelectorManager _manager;
+    private final AtomicInteger _dispatches = new AtomicInteger();
+    private volatile boolean _nonBlocking = true;
+    private volatile long _handleDelay;
+    private volatile long _blockedMs=-1;
+
+    @Before
+    public void init() throws Exception
+    {
+        _connector = ServerSocketChannel.open();
+        _connector.socket().bind(new InetSocketAddress("127.0.0.1",0));
+
+        _threadPool = new QueuedThreadPool();
+        _threadPool.start();
+
+        _manager = new SelectorManager()
+        {
+            @Override
+            public boolean dispatch(Runnable task)
+            {
+                _dispatches.incrementAndGet();
+                return _threadPool.dispatch(task);
+            }
+
+            @Override
+            protected void endPointClosed(SelectChannelEndPoint endpoint)
+            {
+            }
+
+            @Override
+            protected void endPointOpened(SelectChannelEndPoint endpoint)
+            {
+            }
+
+            @Override
+            protected void endPointUpgraded(ConnectedEndPoint endpoint, Connection oldConnection)
+            {
+            }
+
+            @Override
+            protected Connection newConnection(SocketChannel channel, SelectChannelEndPoint endpoint)
+            {
+                return new EchoConnection(endpoint);
+            }
+
+            @Override
+            protected SelectChannelEndPoint newEndPoint(SocketChannel channel, SelectSet selectSet, SelectionKey key) throws IOException
+            {
+                return new SelectChannelEndPoint(channel,selectSet,key,30000);
+            }
+        };
+        // Large enough to not fall back while the JIT warms up
+        _manager.setMaxInlineTime(1000000);
+        _manager.start();
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        _manager.stop();
+        _threadPool.stop();
+        _connector.close();
+    }
+
+    private Socket connect() throws Exception
+    {
+        Socket client = new Socket("127.0.0.1",_connector.socket().getLocalPort());
+        client.setTcpNoDelay(true);
+        client.setSoTimeout(10000);
+        SocketChannel server = _connector.accept();
+        server.configureBlocking(false);
+        _manager.register(server);
+        return client;
+    }
+
+    private static void echo(Socket client, byte[] bytes) throws Exception
+    {
+        OutputStream out = client.getOutputStream();
+        InputStream in = client.getInputStream();
+        out.write(bytes);
+        out.flush();
+        for (int i=0;i<bytes.length;i++)
+            assertEquals(bytes[i],(byte)in.read());
+    }
+
+    private void awaitFallback() throws Exception
+    {
+        // The fallback is counted after the response is flushed
+        long end=System.currentTimeMillis()+10000;
+        while (_manager.getInlineFallbacks()==0 && System.currentTimeMillis()<end)
+            Thread.sleep(1);
+        assertEquals(1,_manager.getInlineFallbacks());
+    }
+
+    @Test
+    public void testInline() throws Exception
+    {
+        Socket client = connect();
+        int dispatches=_dispatches.get();
+        for (int i=0;i<100;i++)
+            echo(client,"ping".getBytes("ISO-8859-1"));
+        client.close();
+
+        assertEquals(dispatches,_dispatches.get());
+        assertTrue(_manager.getInlineHandles()>0);
+        assertEquals(0,_manager.getInlineFallbacks());
+    }
+
+    @Test
+    public void testDispatch() throws Exception
+    {
+        _nonBlocking = false;
+        Socket client = connect();
+        int dispatches=_dispatches.get();
+        for (int i=0;i<100;i++)
+            echo(client,"ping".getBytes("ISO-8859-1"));
+        client.close();
+
+        assertTrue(_dispatches.get()>dispatches);
+        assertEquals(0,_manager.getInlineHandles());
+    }
+
+    @Test
+    public void testTimeBudgetFallback() throws Exception
+    {
+        _manager.setMaxInlineTime(1000);
+        _handleDelay = 10;
+        Socket client = connect();
+        echo(client,"slow".getBytes("ISO-8859-1"));
+        awaitFallback();
+        long handles=_manager.getInlineHandles();
+
+        // The pings are dispatched
+        _handleDelay = 0;
+        for (int i=0;i<10;i++)
+            echo(client,"ping".getBytes("ISO-8859-1"));
+        client.close();
+
+        assertEquals(handles,_manager.getInlineHandles());
+        assertEquals(1,_manager.getInlineFallbacks());
+    }
+
+    @Test
+    public void testBlockingFallback() throws Exception
+    {
+        Socket client = connect();
+        OutputStream out = client.getOutputStream();
+        InputStream in = client.getInputStream();
+
+        // The connection blocks for the byte after a '!'
+        out.write("!".getBytes("ISO-8859-1"));
+        out.flush();
+        Thread.sleep(100);
+        out.write("x".getBytes("ISO-8859-1"));
+        out.flush();
+        assertEquals('!',in.read());
+        assertEquals('x',in.read());
+        awaitFallback();
+        // Let the blocked inline handling return
+        Thread.sleep(100);
+        long handles=_manager.getInlineHandles();
+
+        // The pings are dispatched
+        for (int i=0;i<10;i++)
+            echo(client,"ping".getBytes("ISO-8859-1"));
+        client.close();
+        assertEquals(handles,_manager.getInlineHandles());
+        assertEquals(1,_manager.getInlineFallbacks());
+    }
+
+    @Test
+    public void testBlockingDoesNotStallSelectSet() throws Exception
+    {
+        assertEquals(1,_manager.getSelectSets());
+        Socket stalled = connect();
+        Socket other = connect();
+
+        // The stalled connection blocks inline for a byte that is not sent yet
+        stalled.getOutputStream().write("!".getBytes("ISO-8859-1"));
+        stalled.getOutputStream().flush();
+        awaitFallback();
+
+        // Another connection of the same set is still handled promptly
+        long start=System.currentTimeMillis();
+        for (int i=0;i<10;i++)
+            echo(other,"ping".getBytes("ISO-8859-1"));
+        assertTrue(System.currentTimeMillis()-start<5000);
+
+        // and the stalled connection completes when the byte arrives
+        stalled.getOutputStream().write("x".getBytes("ISO-8859-1"));
+        stalled.getOutputStream().flush();
+        assertEquals('!',stalled.getInputStream().read());
+        assertEquals('x',stalled.getInputStream().read());
+        echo(stalled,"ping".getBytes("ISO-8859-1"));
+
+        stalled.close();
+        other.close();
+    }
+
+    @Test
+    public void testWakeupBeforeBlock() throws Exception
+    {
+        _nonBlocking = false;
+        Socket client = connect();
+
+        // The connection is woken after a '?', before it blocks for more bytes
+        echo(client,"?".getBytes("ISO-8859-1"));
+        assertTrue(_blockedMs>=0 && _blockedMs<1000);
+        echo(client,"ping".getBytes("ISO-8859-1"));
+        client.close();
+    }
+
+    @Test
+    public void testManyExchanges() throws Exception
+    {
+        int exchanges=Stress.isEnabled()?100000:5000;
+        byte[] ping = "ping".getBytes("ISO-8859-1");
+
+        for (boolean nonBlocking : new boolean[]{false,true})
+        {
+            _nonBlocking = nonBlocking;
+            Socket client = connect();
+            long handles=_manager.getInlineHandles();
+            for (int i=0;i<exchanges;i++)
+                echo(client,ping);
+            client.close();
+            if (nonBlocking)
+                assertTrue(_manager.getInlineHandles()>handles);
+            else
+                assertEquals(handles,_manager.getInlineHandles());
+        }
+        assertEquals(0,_manager.getInlineFallbacks());
+    }
+
+    private class EchoConnection extends AbstractConnection implements NonBlockingConnection
+    {
+        private final Buffer _buffer = new IndirectNIOBuffer(4096);
+
+        EchoConnection(EndPoint endp)
+        {
+            super(endp);
+        }
+
+        public boolean isNonBlocking()
+        {
+            return _nonBlocking;
+        }
+
+        public Connection handle() throws IOException
+        {
+            if (_handleDelay>0)
+            {
+                try
+                {
+                    Thread.sleep(_handleDelay);
+                }
+                catch(InterruptedException e)
+                {
+                    throw new IOException(e.toString());
+                }
+            }
+
+            while (true)
+            {
+                int filled=_endp.fill(_buffer);
+                if (filled<0)
+                {
+                    _endp.close();
+                    break;
+                }
+                if (filled==0)
+                    break;
+
+                if (_buffer.peek(_buffer.putIndex()-1)=='!')
+                {
+                    while (_endp.fill(_buffer)==0)
+                        _endp.blockReadable(10000);
+                }
+
+                if (_buffer.peek(_buffer.putIndex()-1)=='?')
+                {
+                    long start=System.currentTimeMillis();
+                    ((SelectChannelEndPoint)_endp).dispatchOrWakeup();
+                    _endp.blockReadable(5000);
+                    _blockedMs=System.currentTimeMillis()-start;
+                }
+
+                while (_buffer.hasContent())
+                {
+                    if (_endp.flush(_buffer)==0)
+                        _endp.blockWritable(10000);
+                }
+                _buffer.clear();
+            }
+            return this;
+        }
+
+        public boolean isIdle()
+        {
+            return true;
+        }
+
+        public boolean isSuspended()
+        {
+            return false;
+        }
+
+        public void closed()
+        {
+        }
+    }
+}
@@ -0,0 +1,136 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.io.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.eclipse.jetty.io.Buffer;
+import org.junit.Test;
+
+public class SlabAllocatorTest
+{
+    @Test
+    public void testAllocateRelease() throws Exception
+    {
+        SlabAllocator allocator = new SlabAllocator(2048,1024*1024);
+
+        DirectNIOBuffer b0=allocator.allocate(1024);
+        DirectNIOBuffer b1=allocator.allocate(1024);
+        assertTrue(b0 instanceof SlabAllocator.SlabBuffer);
+        assertEquals(1024,b0.capacity());
+        assertEquals(0,b0.length());
+        assertEquals(1,allocator.getSlabs());
+        assertEquals(2048,allocator.getMemory());
+        assertEquals(2,allocator.getInUse());
+
+        // chunks do not overlap
+        b0.put("Hello".getBytes());
+        b1.put("World".getBytes());
+        assertEquals("Hello",b0.toString());
+        assertEquals("World",b1.toString());
+
+        assertTrue(((SlabAllocator.SlabBuffer)b0).release());
+        assertEquals(1,allocator.getInUse());
+
+        DirectNIOBuffer b2=allocator.allocate(1024);
+        assertSame(b0,b2);
+        assertEquals(0,b2.length());
+    }
+
+    @Test
+    public void testRetain() throws Exception
+    {
+        SlabAllocator allocator = new SlabAllocator(4096,1024*1024);
+
+        SlabAllocator.SlabBuffer buffer=(SlabAllocator.SlabBuffer)allocator.allocate(512);
+        buffer.retain();
+        assertEquals(2,buffer.getReferences());
+        assertFalse(buffer.release());
+        assertTrue(buffer.release());
+
+        try
+        {
+            buffer.release();
+            fail();
+        }
+        catch(IllegalStateException e)
+        {
+            assertEquals(0,buffer.getReferences());
+        }
+    }
+
+    @Test
+    public void testMaxMemory() throws Exception
+    {
+        SlabAllocator allocator = new SlabAllocator(2048,4096);
+
+        for (int i=0;i<4;i++)
+            assertTrue(allocator.allocate(1024) instanceof SlabAllocator.SlabBuffer);
+        Buffer unpooled=allocator.allocate(1024);
+        assertFalse(unpooled instanceof SlabAllocator.SlabBuffer);
+        assertEquals(1024,unpooled.capacity());
+        assertEquals(1,allocator.getUnpooled());
+        assertEquals(4096,allocator.getMemory());
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception
+    {
+        SlabAllocator allocator = new SlabAllocator(1024,1024);
+        allocator.setDebug(true);
+
+        DirectNIOBuffer buffer=allocator.allocate(1024);
+        assertEquals(1,allocator.getInUseStacks().size());
+        buffer=null;
+
+        for (int i=0;i<20 && allocator.getLeaks()==0;i++)
+        {
+            System.gc();
+            Thread.sleep(50);
+            buffer=allocator.allocate(1024);
+            if (buffer instanceof SlabAllocator.SlabBuffer)
+                break;
+            buffer=null;
+        }
+
+        assertEquals(1,allocator.getLeaks());
+        assertTrue(buffer instanceof SlabAllocator.SlabBuffer);
+        assertEquals(1,allocator.getInUse());
+    }
+
+    @Test
+    public void testSlabBuffers() throws Exception
+    {
+        SlabAllocator allocator = new SlabAllocator(7*1024,1024*1024);
+        SlabBuffers buffers = new SlabBuffers(allocator,1024,4096);
+
+        Buffer header=buffers.getHeader();
+        Buffer buffer=buffers.getBuffer();
+        Buffer other=buffers.getBuffer(2048);
+        assertEquals(1024,header.capacity());
+        assertEquals(4096,buffer.capacity());
+        assertEquals(2048,other.capacity());
+        assertEquals(3,allocator.getInUse());
+
+        buffers.returnBuffer(header);
+        buffers.returnBuffer(buffer);
+        buffers.returnBuffer(other);
+        assertEquals(0,allocator.getInUse());
+        assertEquals(3,allocator.getSlabs());
+    }
+}
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.ServletRequest;
@@ -25,6 +26,8 @@ import org.eclipse.jetty.http.HttpBuffers;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeaders;
 import org.eclipse.jetty.http.HttpSchemes;
+import org.eclipse.jetty.http.PathCache;
+import org.eclipse.jetty.http.StaticHttpFields;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
@@ -79,6 +82,10 @@ public abstract class AbstractConnector extends HttpBuffers implements Connector
     private String _forwardedCipherSuiteHeader;
     private String _forwardedSslSessionIdHeader;
     private boolean _reuseAddress = true;
+    private StaticHttpFields _staticFields;
+    private int _pipelineBufferSize = 0;
+    private long _maxPipelineDelay = 10;
+    private PathCache _pathCache;
 
     protected int _maxIdleTime = 200000;
     protected int _lowResourceMaxIdleTime = -1;
@@ -301,6 +308,12 @@ public abstract class AbstractConnector extends HttpBuffers implements Connector
 
         super.doStart();
 
+        if (getMaxBufferMemory() > 0)
+        {
+            _server.getContainer().update(this,null,getRequestBuffers(),"requestBuffers",true);
+            _server.getContainer().update(this,null,getResponseBuffers(),"responseBuffers",true);
+        }
+
         if (_threadPool == null)
             _threadPool = _server.getThreadPool();
         if (_threadPool != _server.getThreadPool() && (_threadPool instanceof LifeCycle))
@@ -336,6 +349,12 @@ public abstract class AbstractConnector extends HttpBuffers implements Connector
         if (_threadPool != _server.getThreadPool() && _threadPool instanceof LifeCycle)
             ((LifeCycle)_threadPool).stop();
 
+        if (getMaxBufferMemory() > 0)
+        {
+            _server.getContainer().update(this,getRequestBuffers(),null,"requestBuffers",true);
+            _server.getContainer().update(this,getResponseBuffers(),null,"responseBuffers",true);
+        }
+
         super.doStop();
 
         Thread[] acceptors = null;
@@ -638,6 +657,110 @@ public abstract class AbstractConnector extends HttpBuffers implements Connector
         _forwarded = check;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The fields sent with every response of the connections of this connector, or null
+     */
+    public StaticHttpFields getStaticFields()
+    {
+        return _staticFields;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the fields sent with every response, such as X-Powered-By or a default Content-Type.
+     * A static field is not sent if the response has a field of the same name.
+     * The fields are set on connections as they are opened.
+     * @param fields The fields sent with every response, or null
+     */
+    public void setStaticFields(StaticHttpFields fields)
+    {
+        _staticFields = fields;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Add a field sent with every response.
+     * @param name The name of the field
+     * @param value The value of the field
+     * @see #setStaticFields(StaticHttpFields)
+     */
+    public void addStaticField(String name, String value)
+    {
+        if (_staticFields==null)
+        {
+            HttpFields fields = new HttpFields();
+            fields.add(name,value);
+            _staticFields = new StaticHttpFields(fields);
+        }
+        else
+            _staticFields = _staticFields.add(name,value);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum number of bytes of responses held back to be written together
+     * while pipelined requests are handled, or 0 if each response is written as it completes
+     */
+    public int getPipelineBufferSize()
+    {
+        return _pipelineBufferSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the size of the buffer in which responses are held back while the complete header of the
+     * next request has already been received on the connection. The responses to pipelined requests are then written with a
+     * single gathering write rather than a write each. A response that does not fit is written
+     * immediately, together with the responses held back before it.
+     * @param size The maximum number of bytes held back, or 0 to write each response as it completes
+     */
+    public void setPipelineBufferSize(int size)
+    {
+        _pipelineBufferSize = size;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum time in ms that a completed response is held back for pipelined requests
+     */
+    public long getMaxPipelineDelay()
+    {
+        return _maxPipelineDelay;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the maximum time a response is held back. The time is checked as each following response
+     * completes, and held responses are always written once the received requests have been handled.
+     * @param maxDelay The maximum time in ms that a completed response is held back for pipelined requests
+     */
+    public void setMaxPipelineDelay(long maxDelay)
+    {
+        _maxPipelineDelay = maxDelay;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The cache of decoded and canonical request paths, or null if paths are not cached
+     */
+    public PathCache getPathCache()
+    {
+        return _pathCache;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set a cache of the decoded and canonical paths of requests, so that the paths of
+     * frequent requests are not decoded for each request. The cache is used by
+     * connections created after it is set and may be shared by several connectors.
+     * @param pathCache The cache of request paths, or null to not cache paths
+     */
+    public void setPathCache(PathCache pathCache)
+    {
+        _pathCache = pathCache;
+    }
+
     /* ------------------------------------------------------------ */
     public String getHostHeader()
     {
@@ -1128,6 +1251,7 @@ public abstract class AbstractConnector extends HttpBuffers implements Connector
     public void dump(Appendable out, String indent) throws IOException
     {
         out.append(String.valueOf(this)).append("\n");
+        AggregateLifeCycle.dump(out,indent,Arrays.asList(new Object[]{getRequestBuffers(),getResponseBuffers()}));
     }
 
 }
@@ -29,6 +29,7 @@ public class AsyncHttpConnection extends HttpConnection
         Connection connection = this;
         boolean some_progress=false; 
         boolean progress=true; 
+        boolean pipelined=false;
         
         // Loop while more in buffer
         try
@@ -79,6 +80,7 @@ public class AsyncHttpConnection extends HttpConnection
                     {
                         LOG.debug("complete half close {}",this);
                         more_in_buffer=false;
+                        _generator.flushPipelined();
                         _endp.close();
                         reset(true);
                     }
@@ -117,6 +119,14 @@ public class AsyncHttpConnection extends HttpConnection
                     some_progress|=progress|((SelectChannelEndPoint)_endp).isProgressing();
                 }
             }
+
+            // Write the responses held back for pipelined requests
+            if (_endp.isOpen())
+            {
+                pipelined=!_generator.flushPipelined();
+                if (_endp.isBufferingOutput())
+                    _endp.flush();
+            }
         }
         finally
         {
@@ -124,7 +134,7 @@ public class AsyncHttpConnection extends HttpConnection
             _parser.returnBuffers();
 
             // Are we write blocked
-            if (_generator.isCommitted() && !_generator.isComplete())
+            if (_generator.isCommitted() && !_generator.isComplete() || pipelined)
                 ((AsyncEndPoint)_endp).scheduleWrite();
             else
                 _generator.returnBuffers();
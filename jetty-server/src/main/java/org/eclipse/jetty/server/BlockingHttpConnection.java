@@ -105,6 +105,7 @@ public class BlockingHttpConnection extends HttpConnection
                             {
                                 _parser.reset();
                                 more_in_buffer=false;
+                                _generator.flushPipelined();
                                 _endp.close();
                             }
 
@@ -120,6 +121,7 @@ public class BlockingHttpConnection extends HttpConnection
                     else if (_parser.isIdle() && _endp.isInputShutdown())
                     {
                         more_in_buffer=false;
+                        _generator.flushPipelined();
                         _endp.close();
                     }
 
@@ -127,6 +129,14 @@ public class BlockingHttpConnection extends HttpConnection
                         throw new IllegalStateException();
                 }
             }
+
+            // Write the responses held back for pipelined requests
+            if (_endp.isOpen())
+            {
+                _generator.flushPipelined();
+                if (_endp.isBufferingOutput())
+                    _endp.flush();
+            }
         }
         finally
         {
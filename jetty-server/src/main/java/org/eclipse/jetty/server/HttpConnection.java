@@ -39,6 +39,7 @@ import org.eclipse.jetty.http.HttpURI;
 import org.eclipse.jetty.http.HttpVersions;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.Parser;
+import org.eclipse.jetty.http.PathCache;
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.AsyncEndPoint;
 import org.eclipse.jetty.io.Buffer;
@@ -48,6 +49,7 @@ import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.io.RuntimeIOException;
 import org.eclipse.jetty.io.UncheckedPrintWriter;
+import org.eclipse.jetty.io.nio.ChannelEndPoint;
 import org.eclipse.jetty.server.nio.NIOConnector;
 import org.eclipse.jetty.server.ssl.SslConnector;
 import org.eclipse.jetty.util.QuotedStringTokenizer;
@@ -101,6 +103,7 @@ public abstract class HttpConnection  extends AbstractConnection
     protected final Connector _connector;
     protected final Server _server;
     protected final HttpURI _uri;
+    private PathCache _pathCache;
 
     protected final Parser _parser;
     protected final HttpFields _requestFields;
@@ -156,6 +159,13 @@ public abstract class HttpConnection  extends AbstractConnection
         _response = new Response(this);
         _generator = new HttpGenerator(ab.getResponseBuffers(), _endp);
         _generator.setSendServerVersion(server.getSendServerVersion());
+        if (_connector instanceof AbstractConnector)
+        {
+            AbstractConnector ac=(AbstractConnector)_connector;
+            _generator.setStaticFields(ac.getStaticFields());
+            _generator.setPipelineBuffer(ac.getPipelineBufferSize(),ac.getMaxPipelineDelay());
+            _pathCache=ac.getPathCache();
+        }
         _server = server;
     }
 
@@ -174,6 +184,13 @@ public abstract class HttpConnection  extends AbstractConnection
         _response = new Response(this);
         _generator = generator;
         _generator.setSendServerVersion(server.getSendServerVersion());
+        if (_connector instanceof AbstractConnector)
+        {
+            AbstractConnector ac=(AbstractConnector)_connector;
+            _generator.setStaticFields(ac.getStaticFields());
+            _generator.setPipelineBuffer(ac.getPipelineBufferSize(),ac.getMaxPipelineDelay());
+            _pathCache=ac.getPathCache();
+        }
         _server = server;
     }
 
@@ -426,7 +443,7 @@ public abstract class HttpConnection  extends AbstractConnection
                 try
                 {
                     _uri.getPort();
-                    info=URIUtil.canonicalPath(_uri.getDecodedPath());
+                    info=_uri.getCanonicalPath(_pathCache);
                     if (info==null && !_request.getMethod().equals(HttpMethods.CONNECT))
                         throw new HttpException(400);
                     _request.setPathInfo(info);
@@ -564,7 +581,10 @@ public abstract class HttpConnection  extends AbstractConnection
 
         }
         if (last)
+        {
+            _generator.setPipelined(isPipelined());
             _generator.complete();
+        }
     }
 
     /* ------------------------------------------------------------ */
@@ -595,9 +615,21 @@ public abstract class HttpConnection  extends AbstractConnection
             }
         }
 
+        _generator.setPipelined(isPipelined());
         _generator.complete();
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return True if the complete header of the next request has already been received,
+     * so that the response being completed may be held back and written with the next one.
+     * A partial request or stray bytes do not count, as reading the rest may block.
+     */
+    private boolean isPipelined()
+    {
+        return _parser instanceof HttpParser && ((HttpParser)_parser).isMessageInBuffer();
+    }
+
     /* ------------------------------------------------------------ */
     public void flushResponse() throws IOException
     {
@@ -1078,6 +1110,8 @@ public abstract class HttpConnection  extends AbstractConnection
 
                 boolean direct=_connector instanceof NIOConnector && ((NIOConnector)_connector).getUseDirectBuffers() && !(_connector instanceof SslConnector);
                 content = direct?httpContent.getDirectBuffer():httpContent.getIndirectBuffer();
+                if (content==null && _endp instanceof ChannelEndPoint)
+                    content=httpContent.getFileBuffer();
                 if (content==null)
                     content=httpContent.getInputStream();
             }
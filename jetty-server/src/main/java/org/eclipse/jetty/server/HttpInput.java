@@ -40,7 +40,7 @@ public class HttpInput extends ServletInputStream
     public int read() throws IOException
     {
         int c=-1;
-        Buffer content=_parser.blockForContent(_connection.getMaxIdleTime());
+        Buffer content=blockForContent();
         if (content!=null)
             c= 0xff & content.get();
         return c;
@@ -54,12 +54,21 @@ public class HttpInput extends ServletInputStream
     public int read(byte[] b, int off, int len) throws IOException
     {
         int l=-1;
-        Buffer content=_parser.blockForContent(_connection.getMaxIdleTime());
+        Buffer content=blockForContent();
         if (content!=null)
             l= content.get(b, off, len);
         return l;
     }
 
+    /* ------------------------------------------------------------ */
+    private Buffer blockForContent() throws IOException
+    {
+        // Do not hold back the responses to earlier pipelined requests while waiting for content
+        if (!_parser.isMoreInBuffer())
+            _connection.getGenerator().flushPipelined();
+        return _parser.blockForContent(_connection.getMaxIdleTime());
+    }
+
     /* ------------------------------------------------------------ */
     @Override
     public int available() throws IOException
@@ -241,14 +241,21 @@ public class Request implements HttpServletRequest
                         try
                         {
                             int maxFormContentSize=-1;
+                            int maxFormKeys=-1;
 
                             if (_context!=null)
+                            {
                                 maxFormContentSize=_context.getContextHandler().getMaxFormContentSize();
+                                maxFormKeys=_context.getContextHandler().getMaxFormKeys();
+                            }
                             else
                             {
                                 Integer size = (Integer)_connection.getConnector().getServer().getAttribute("org.eclipse.jetty.server.Request.maxFormContentSize");
                                 if (size!=null)
                                     maxFormContentSize =size.intValue();
+                                Integer keys = (Integer)_connection.getConnector().getServer().getAttribute("org.eclipse.jetty.server.Request.maxFormKeys");
+                                if (keys!=null)
+                                    maxFormKeys =keys.intValue();
                             }
 
                             if (content_length>maxFormContentSize && maxFormContentSize > 0)
@@ -257,8 +264,8 @@ public class Request implements HttpServletRequest
                             }
                             InputStream in = getInputStream();
 
-                            // Add form params to query params
-                            UrlEncoded.decodeTo(in, _baseParameters, encoding,content_length<0?maxFormContentSize:-1);
+                            // Add form params to query params as they are read
+                            UrlEncoded.decodeTo(in, _baseParameters, encoding,content_length<0?maxFormContentSize:-1,maxFormKeys);
                         }
                         catch (IOException e)
                         {
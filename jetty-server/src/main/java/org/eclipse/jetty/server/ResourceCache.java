@@ -14,6 +14,7 @@
 package org.eclipse.jetty.server;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Comparator;
@@ -27,20 +28,31 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.eclipse.jetty.http.HttpContent;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.gzip.DeflaterPool;
+import org.eclipse.jetty.http.gzip.GzipOutputStream;
 import org.eclipse.jetty.io.Buffer;
 import org.eclipse.jetty.io.ByteArrayBuffer;
 import org.eclipse.jetty.io.View;
 import org.eclipse.jetty.io.nio.DirectNIOBuffer;
+import org.eclipse.jetty.io.nio.FileRegionBuffer;
 import org.eclipse.jetty.io.nio.IndirectNIOBuffer;
+import org.eclipse.jetty.util.ByteArrayOutputStream2;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 
 /* ------------------------------------------------------------ */
 /** 
- * 
+ * A cache of static content.
+ * <p>
+ * If precompression is enabled, a gzipped variant of each compressible file
+ * is produced in the background when the file is cached, by the thread pool if one is
+ * set. The variant is held by the {@link Content} with its own length and is
+ * evicted with it. See {@link #isCompressible(Content)}.
  */
 public class ResourceCache
 {
@@ -57,6 +69,10 @@ public class ResourceCache
     private int _maxCachedFileSize =4*1024*1024;
     private int _maxCachedFiles=2048;
     private int _maxCacheSize =32*1024*1024;
+    private boolean _precompress;
+    private int _minGzipSize=256;
+    private ThreadPool _threadPool;
+    private DeflaterPool _deflaterPool;
 
     /* ------------------------------------------------------------ */
     public ResourceCache(ResourceCache parent, ResourceFactory factory, MimeTypes mimeTypes,boolean useFileMappedBuffer)
@@ -148,6 +164,78 @@ public class ResourceCache
         _useFileMappedBuffer = useFileMappedBuffer;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return True if gzipped variants of compressible files are produced when they are cached
+     */
+    public boolean isPrecompress()
+    {
+        return _precompress;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param precompress True if gzipped variants of compressible files are produced when they are cached
+     */
+    public void setPrecompress(boolean precompress)
+    {
+        _precompress = precompress;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The minimum length of a file to precompress
+     */
+    public int getMinGzipSize()
+    {
+        return _minGzipSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param minGzipSize The minimum length of a file to precompress
+     */
+    public void setMinGzipSize(int minGzipSize)
+    {
+        _minGzipSize = minGzipSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The thread pool that precompresses files, or null to compress in the thread that caches the file
+     */
+    public ThreadPool getThreadPool()
+    {
+        return _threadPool;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param threadPool The thread pool that precompresses files, or null to compress in the thread that caches the file
+     */
+    public void setThreadPool(ThreadPool threadPool)
+    {
+        _threadPool = threadPool;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The pool of deflaters that precompress files, or null for a new deflater per file
+     */
+    public DeflaterPool getDeflaterPool()
+    {
+        return _deflaterPool;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param deflaterPool The pool of deflaters that precompress files, or null for a new deflater per file
+     */
+    public void setDeflaterPool(DeflaterPool deflaterPool)
+    {
+        _deflaterPool = deflaterPool;
+    }
+
     /* ------------------------------------------------------------ */
     public void flushCache()
     {
@@ -214,6 +302,23 @@ public class ResourceCache
         return  (len>0 && len<_maxCachedFileSize && len<_maxCacheSize);
     }
     
+    /* ------------------------------------------------------------ */
+    /**
+     * @param content The cached content
+     * @return True if a gzipped variant of the content should be produced. The default
+     * implementation tests the length and whether the content type is text, javascript, json or xml.
+     */
+    protected boolean isCompressible(Content content)
+    {
+        if (content._length<_minGzipSize || content._contentType==null)
+            return false;
+        String type=content._contentType.toString();
+        int semi=type.indexOf(';');
+        if (semi>=0)
+            type=type.substring(0,semi).trim();
+        return type.startsWith("text/") || type.endsWith("javascript") || type.endsWith("json") || type.endsWith("xml");
+    }
+
     /* ------------------------------------------------------------ */
     private HttpContent load(String pathInContext, Resource resource)
         throws IOException
@@ -239,6 +344,20 @@ public class ResourceCache
                 content.invalidate();
                 content=added;
             }
+            else if (_precompress && isCompressible(content))
+            {
+                final Content compress=content;
+                Runnable task=new Runnable()
+                {
+                    public void run()
+                    {
+                        compress.compress();
+                    }
+                };
+                ThreadPool pool=_threadPool;
+                if (pool==null || !pool.dispatch(task))
+                    task.run();
+            }
 
             return content;
         }
@@ -336,6 +455,28 @@ public class ResourceCache
         }
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @param resource The resource
+     * @param length The length of the resource
+     * @return A {@link FileRegionBuffer} if the resource is a file, else null.
+     */
+    protected Buffer getFileBuffer(Resource resource, int length)
+    {
+        try
+        {
+            File file = resource.getFile();
+            if (file==null || length<=0)
+                return null;
+            return new FileRegionBuffer(file,0,length);
+        }
+        catch(IOException e)
+        {
+            LOG.warn(e);
+            return null;
+        }
+    }
+
     /* ------------------------------------------------------------ */
     public String toString()
     {
@@ -358,6 +499,8 @@ public class ResourceCache
         volatile long _lastAccessed;
         AtomicReference<Buffer> _indirectBuffer=new AtomicReference<Buffer>();
         AtomicReference<Buffer> _directBuffer=new AtomicReference<Buffer>();
+        final AtomicReference<GzippedContent> _gzipped=new AtomicReference<GzippedContent>();
+        volatile boolean _invalidated;
 
         /* ------------------------------------------------------------ */
         Content(String pathInContext,Resource resource)
@@ -419,11 +562,76 @@ public class ResourceCache
         protected void invalidate()
         {
             // Invalidate it
+            _invalidated=true;
+            GzippedContent gzipped=_gzipped.getAndSet(null);
+            if (gzipped!=null)
+                _cachedSize.addAndGet(-gzipped._length);
             _cachedSize.addAndGet(-_length);
             _cachedFiles.decrementAndGet();
             _resource.release(); 
         }
 
+        /* ------------------------------------------------------------ */
+        /**
+         * @return The gzipped variant of this content, or null if it has not been produced
+         */
+        public HttpContent getGzippedContent()
+        {
+            return _gzipped.get();
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * Produce the gzipped variant of this content, if it is smaller than the content.
+         */
+        void compress()
+        {
+            try
+            {
+                if (_invalidated)
+                    return;
+
+                ByteArrayOutputStream2 bout=new ByteArrayOutputStream2(_length/2);
+                GzipOutputStream gzip=new GzipOutputStream(bout,_deflaterPool,8192);
+                Buffer indirect=_indirectBuffer.get();
+                if (indirect!=null && indirect.array()!=null)
+                    gzip.write(indirect.array(),indirect.getIndex(),indirect.length());
+                else
+                {
+                    InputStream in=_resource.getInputStream();
+                    try
+                    {
+                        IO.copy(in,gzip);
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                }
+                gzip.close();
+
+                if (bout.getCount()>=_length)
+                    return;
+
+                Buffer buffer=new IndirectNIOBuffer(bout.getCount());
+                buffer.put(bout.getBuf(),0,bout.getCount());
+                GzippedContent gzipped=new GzippedContent(this,buffer);
+                if (_gzipped.compareAndSet(null,gzipped))
+                {
+                    _cachedSize.addAndGet(gzipped._length);
+                    // Evicted while compressing?
+                    if (_invalidated && _gzipped.compareAndSet(gzipped,null))
+                        _cachedSize.addAndGet(-gzipped._length);
+                    else
+                        shrinkCache();
+                }
+            }
+            catch(IOException e)
+            {
+                LOG.warn("Could not compress "+this,e);
+            }
+        }
+
         /* ------------------------------------------------------------ */
         public Buffer getLastModified()
         {
@@ -483,6 +691,15 @@ public class ResourceCache
                         
             return new View(buffer);
         }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return A new {@link FileRegionBuffer} for each call, as the region is closed once sent.
+         */
+        public Buffer getFileBuffer()
+        {
+            return ResourceCache.this.getFileBuffer(_resource,_length);
+        }
         
         /* ------------------------------------------------------------ */
         public long getContentLength()
@@ -507,4 +724,97 @@ public class ResourceCache
             return String.format("%s %s %d %s %s",_resource,_resource.exists(),_resource.lastModified(),_contentType,_lastModifiedBytes);
         }   
     }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /** The gzipped variant of a cached {@link Content}.
+     * It has the content type, resource and last modified date of the
+     * content, but its own length and buffers.
+     */
+    public class GzippedContent implements HttpContent
+    {
+        final Content _content;
+        final Buffer _indirectBuffer;
+        final int _length;
+        AtomicReference<Buffer> _directBuffer=new AtomicReference<Buffer>();
+
+        /* ------------------------------------------------------------ */
+        GzippedContent(Content content, Buffer buffer)
+        {
+            _content=content;
+            _indirectBuffer=buffer;
+            _length=buffer.length();
+        }
+
+        /* ------------------------------------------------------------ */
+        public Buffer getContentType()
+        {
+            return _content.getContentType();
+        }
+
+        /* ------------------------------------------------------------ */
+        public Buffer getLastModified()
+        {
+            return _content.getLastModified();
+        }
+
+        /* ------------------------------------------------------------ */
+        public Buffer getIndirectBuffer()
+        {
+            return new View(_indirectBuffer);
+        }
+
+        /* ------------------------------------------------------------ */
+        public Buffer getDirectBuffer()
+        {
+            Buffer buffer = _directBuffer.get();
+            if (buffer==null)
+            {
+                Buffer buffer2=new DirectNIOBuffer(_length);
+                buffer2.put(new View(_indirectBuffer));
+                if (_directBuffer.compareAndSet(null,buffer2))
+                    buffer=buffer2;
+                else
+                    buffer=_directBuffer.get();
+            }
+            return new View(buffer);
+        }
+
+        /* ------------------------------------------------------------ */
+        public Buffer getFileBuffer()
+        {
+            return null;
+        }
+
+        /* ------------------------------------------------------------ */
+        public Resource getResource()
+        {
+            return _content.getResource();
+        }
+
+        /* ------------------------------------------------------------ */
+        public long getContentLength()
+        {
+            return _length;
+        }
+
+        /* ------------------------------------------------------------ */
+        public InputStream getInputStream() throws IOException
+        {
+            return new ByteArrayInputStream(_indirectBuffer.array(),_indirectBuffer.getIndex(),_length);
+        }
+
+        /* ------------------------------------------------------------ */
+        public void release()
+        {
+            // released with the content
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public String toString()
+        {
+            return "gzip "+_length+" "+_content;
+        }
+    }
 }
@@ -123,6 +123,7 @@ public class ContextHandler extends ScopedHandler implements Attributes, Server.
     private Logger _logger;
     private boolean _allowNullPathInfo;
     private int _maxFormContentSize = Integer.getInteger("org.eclipse.jetty.server.Request.maxFormContentSize",200000).intValue();
+    private int _maxFormKeys = Integer.getInteger("org.eclipse.jetty.server.Request.maxFormKeys",1000).intValue();
     private boolean _compactPath = false;
     private boolean _aliases = false;
 
@@ -1266,6 +1267,26 @@ public class ContextHandler extends ScopedHandler implements Attributes, Server.
         _maxFormContentSize = maxSize;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum number of parameter keys of a request, including those of the
+     * query string and of the form content, or -1 for no limit
+     */
+    public int getMaxFormKeys()
+    {
+        return _maxFormKeys;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param max The maximum number of parameter keys of a request, including those of the
+     * query string and of the form content, or -1 for no limit
+     */
+    public void setMaxFormKeys(int max)
+    {
+        _maxFormKeys = max;
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * @return True if URLs are compacted to replace multiple '/'s with a single '/'
@@ -21,6 +21,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.zip.Deflater;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -30,6 +31,7 @@ import org.eclipse.jetty.continuation.Continuation;
 import org.eclipse.jetty.continuation.ContinuationListener;
 import org.eclipse.jetty.continuation.ContinuationSupport;
 import org.eclipse.jetty.http.HttpMethods;
+import org.eclipse.jetty.http.gzip.DeflaterPool;
 import org.eclipse.jetty.http.gzip.GzipResponseWrapper;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.util.log.Log;
@@ -60,6 +62,10 @@ public class GzipHandler extends HandlerWrapper
     protected Set<String> _excluded;
     protected int _bufferSize = 8192;
     protected int _minGzipSize = 256;
+    protected int _compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    protected int _compressionStrategy = Deflater.DEFAULT_STRATEGY;
+    protected int _deflaterPoolCapacity = 64;
+    protected DeflaterPool _deflaterPool;
 
     /* ------------------------------------------------------------ */
     /**
@@ -199,6 +205,103 @@ public class GzipHandler extends HandlerWrapper
         _minGzipSize = minGzipSize;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Get the compression level.
+     * 
+     * @return the compression level
+     */
+    public int getCompressionLevel()
+    {
+        return _compressionLevel;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the compression level, used when the handler is started.
+     * 
+     * @param compressionLevel
+     *            0-9 or -1 for the default level
+     */
+    public void setCompressionLevel(int compressionLevel)
+    {
+        _compressionLevel = compressionLevel;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Get the compression strategy.
+     * 
+     * @return the compression strategy
+     */
+    public int getCompressionStrategy()
+    {
+        return _compressionStrategy;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the compression strategy, used when the handler is started.
+     * 
+     * @param compressionStrategy
+     *            0 for the default strategy, 1 for filtered or 2 for huffman only
+     * @see Deflater#setStrategy(int)
+     */
+    public void setCompressionStrategy(int compressionStrategy)
+    {
+        _compressionStrategy = compressionStrategy;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Get the maximum number of idle deflaters kept for reuse.
+     * 
+     * @return the capacity of the deflater pool
+     */
+    public int getDeflaterPoolCapacity()
+    {
+        return _deflaterPoolCapacity;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the maximum number of idle deflaters kept for reuse, used when the handler is started.
+     * 
+     * @param deflaterPoolCapacity
+     *            the capacity of the deflater pool
+     */
+    public void setDeflaterPoolCapacity(int deflaterPoolCapacity)
+    {
+        _deflaterPoolCapacity = deflaterPoolCapacity;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Get the pool of deflaters, which has the compression statistics.
+     * 
+     * @return the deflater pool, or null if the handler is not started
+     */
+    public DeflaterPool getDeflaterPool()
+    {
+        return _deflaterPool;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected void doStart() throws Exception
+    {
+        _deflaterPool = new DeflaterPool(_compressionLevel,_compressionStrategy,_deflaterPoolCapacity);
+        super.doStart();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        _deflaterPool.clear();
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * @see org.eclipse.jetty.server.handler.HandlerWrapper#handle(java.lang.String, org.eclipse.jetty.server.Request, javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
@@ -284,6 +387,7 @@ public class GzipHandler extends HandlerWrapper
                 setMimeTypes(GzipHandler.this._mimeTypes);
                 setBufferSize(GzipHandler.this._bufferSize);
                 setMinGzipSize(GzipHandler.this._minGzipSize);
+                setDeflaterPool(GzipHandler.this._deflaterPool);
             }
             
             @Override
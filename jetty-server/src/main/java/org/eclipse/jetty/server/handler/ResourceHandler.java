@@ -21,6 +21,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.http.HttpContent;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeaders;
 import org.eclipse.jetty.http.HttpMethods;
@@ -434,8 +435,7 @@ public class ResourceHandler extends AbstractHandler
         // See if a short direct method can be used?
         if (out instanceof HttpConnection.Output)
         {
-            // TODO file mapped buffers
-            ((HttpConnection.Output)out).sendContent(resource.getInputStream());
+            ((HttpConnection.Output)out).sendContent(new HttpContent.ResourceAsHttpContent(resource,mime));
         }
         else
         {
@@ -16,8 +16,16 @@
  */
 package org.eclipse.jetty.server.nio;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
 import org.eclipse.jetty.io.Buffers.Type;
+import org.eclipse.jetty.io.EndPointStatistics;
+import org.eclipse.jetty.io.nio.ChannelEndPoint;
 import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.util.component.AggregateLifeCycle;
 
 /* ------------------------------------------------------------ */
 /**
@@ -26,6 +34,8 @@ import org.eclipse.jetty.server.AbstractConnector;
  */
 public abstract class AbstractNIOConnector extends AbstractConnector implements NIOConnector
 {
+    private final EndPointStatistics _endPointStatistics = new EndPointStatistics();
+
     {
         setRequestBufferType(Type.DIRECT);
         setRequestHeaderType(Type.INDIRECT);
@@ -50,4 +60,68 @@ public abstract class AbstractNIOConnector extends AbstractConnector implements
         setResponseBufferType(direct?Type.DIRECT:Type.INDIRECT);
     }
 
+    /* ------------------------------------------------------------ */
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (getServer()!=null)
+            getServer().getContainer().update(this,null,_endPointStatistics,"endPointStatistics",true);
+        super.doStart();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected void doStop() throws Exception
+    {
+        if (getServer()!=null)
+            getServer().getContainer().update(this,_endPointStatistics,null,"endPointStatistics",true);
+        super.doStop();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The I/O statistics of the end points of this connector since statsReset() called. Undefined if setStatsOn(false).
+     */
+    public EndPointStatistics getEndPointStatistics()
+    {
+        return _endPointStatistics;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Record the I/O of an end point in the statistics of this connector if statistics are on.
+     * @param endpoint A new end point
+     */
+    protected void configure(ChannelEndPoint endpoint)
+    {
+        if (getStatsOn())
+            endpoint.setStatistics(_endPointStatistics);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void statsReset()
+    {
+        super.statsReset();
+        _endPointStatistics.reset();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        out.append(String.valueOf(this)).append("\n");
+        AggregateLifeCycle.dump(out,indent,Arrays.asList(new Object[]{getRequestBuffers(),getResponseBuffers()}),dumpStatistics());
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The statistics to include in a dump, which are none if statistics are off
+     */
+    protected Collection<?> dumpStatistics()
+    {
+        if (getStatsOn())
+            return Collections.singletonList(_endPointStatistics);
+        return Collections.emptyList();
+    }
 }
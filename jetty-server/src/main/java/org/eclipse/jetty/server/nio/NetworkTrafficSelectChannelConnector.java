@@ -20,6 +20,7 @@ import java.util.ConcurrentModificationException;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.eclipse.jetty.io.NetworkTrafficCapture;
 import org.eclipse.jetty.io.NetworkTrafficListener;
 import org.eclipse.jetty.io.nio.NetworkTrafficSelectChannelEndPoint;
 import org.eclipse.jetty.io.nio.SelectChannelEndPoint;
@@ -33,6 +34,7 @@ import org.eclipse.jetty.io.nio.SelectorManager;
 public class NetworkTrafficSelectChannelConnector extends SelectChannelConnector
 {
     private final List<NetworkTrafficListener> listeners = new CopyOnWriteArrayList<NetworkTrafficListener>();
+    private NetworkTrafficCapture capture;
 
     /**
      * @param listener the listener to add
@@ -50,10 +52,57 @@ public class NetworkTrafficSelectChannelConnector extends SelectChannelConnector
         listeners.remove(listener);
     }
 
+    /**
+     * @return the capture that records the traffic of this connector, or null
+     */
+    public NetworkTrafficCapture getNetworkTrafficCapture()
+    {
+        return capture;
+    }
+
+    /**
+     * <p>Sets the capture that records the traffic of this connector.</p>
+     * <p>The capture is started and stopped with this connector.</p>
+     *
+     * @param capture the capture, or null to capture no traffic
+     */
+    public void setNetworkTrafficCapture(NetworkTrafficCapture capture)
+    {
+        if (isRunning())
+            throw new IllegalStateException("Running");
+        this.capture = capture;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (capture != null)
+        {
+            capture.start();
+            if (getServer() != null)
+                getServer().getContainer().update(this, null, capture, "networkTrafficCapture", true);
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        if (capture != null)
+        {
+            capture.stop();
+            if (getServer() != null)
+                getServer().getContainer().update(this, capture, null, "networkTrafficCapture", true);
+        }
+    }
+
     @Override
     protected SelectChannelEndPoint newEndPoint(SocketChannel channel, SelectorManager.SelectSet selectSet, SelectionKey key) throws IOException
     {
         NetworkTrafficSelectChannelEndPoint endPoint = new NetworkTrafficSelectChannelEndPoint(channel, selectSet, key, _maxIdleTime, listeners);
+        if (capture != null && capture.isRunning())
+            endPoint.setCapture(capture);
         endPoint.notifyOpened();
         return endPoint;
     }
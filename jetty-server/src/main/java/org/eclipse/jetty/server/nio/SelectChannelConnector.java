@@ -246,6 +246,8 @@ public class SelectChannelConnector extends AbstractNIOConnector
         _manager.setLowResourcesConnections(getLowResourcesConnections());
         _manager.setLowResourcesMaxIdleTime(getLowResourcesMaxIdleTime());
         _manager.start();
+        if (getServer()!=null)
+            getServer().getContainer().update(this,null,_manager,"selectorManager",true);
 
         super.doStart();
     }
@@ -271,6 +273,8 @@ public class SelectChannelConnector extends AbstractNIOConnector
                 }
             }
         }
+        if (getServer()!=null)
+            getServer().getContainer().update(this,_manager,null,"selectorManager",true);
         super.doStop();
     }
 
@@ -298,9 +302,9 @@ public class SelectChannelConnector extends AbstractNIOConnector
         out.append(String.valueOf(this)).append("\n");
         ServerSocketChannel channel=_acceptChannel;
         if (channel==null)
-            AggregateLifeCycle.dump(out,indent,Arrays.asList(new Object[]{null,"CLOSED",_manager}));
+            AggregateLifeCycle.dump(out,indent,Arrays.asList(new Object[]{null,"CLOSED",_manager,getRequestBuffers(),getResponseBuffers()}),dumpStatistics());
         else
-            AggregateLifeCycle.dump(out,indent,Arrays.asList(new Object[]{_acceptChannel,_acceptChannel.isOpen()?"OPEN":"CLOSED",_manager}));
+            AggregateLifeCycle.dump(out,indent,Arrays.asList(new Object[]{_acceptChannel,_acceptChannel.isOpen()?"OPEN":"CLOSED",_manager,getRequestBuffers(),getResponseBuffers()}),dumpStatistics());
     }
 
     /* ------------------------------------------------------------ */
@@ -373,7 +377,9 @@ public class SelectChannelConnector extends AbstractNIOConnector
         @Override
         protected SelectChannelEndPoint newEndPoint(SocketChannel channel, SelectSet selectSet, SelectionKey sKey) throws IOException
         {
-            return SelectChannelConnector.this.newEndPoint(channel,selectSet,sKey);
+            SelectChannelEndPoint endpoint=SelectChannelConnector.this.newEndPoint(channel,selectSet,sKey);
+            configure(endpoint);
+            return endpoint;
         }
     }
 
@@ -34,10 +34,14 @@ import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.bio.SocketEndPoint;
 import org.eclipse.jetty.io.nio.SelectChannelEndPoint;
 import org.eclipse.jetty.io.nio.SelectorManager.SelectSet;
+import org.eclipse.jetty.io.nio.SlabBuffers;
+import org.eclipse.jetty.io.nio.SslHandshakeStatistics;
 import org.eclipse.jetty.io.nio.SslSelectChannelEndPoint;
 import org.eclipse.jetty.server.HttpConnection;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 /* ------------------------------------------------------------ */
 /**
@@ -49,6 +53,8 @@ public class SslSelectChannelConnector extends SelectChannelConnector implements
 {
     private final SslContextFactory _sslContextFactory;
     private Buffers _sslBuffers;
+    private ThreadPool _taskThreadPool;
+    private final SslHandshakeStatistics _handshakeStats = new SslHandshakeStatistics();
 
     /* ------------------------------------------------------------ */
     public SslSelectChannelConnector()
@@ -544,6 +550,9 @@ public class SslSelectChannelConnector extends SelectChannelConnector implements
         SSLEngine engine = createSSLEngine(channel);
         SslSelectChannelEndPoint endp = new SslSelectChannelEndPoint(_sslBuffers,channel,selectSet,key,engine, SslSelectChannelConnector.this._maxIdleTime);
         endp.setAllowRenegotiate(_sslContextFactory.isAllowRenegotiate());
+        endp.setTaskThreadPool(_taskThreadPool);
+        if (getStatsOn())
+            endp.setHandshakeStatistics(_handshakeStats);
         return endp;
     }
 
@@ -598,17 +607,23 @@ public class SslSelectChannelConnector extends SelectChannelConnector implements
 
         SSLSession sslSession = sslEngine.getSession();
 
-        _sslBuffers = BuffersFactory.newBuffers(
-                getUseDirectBuffers()?Type.DIRECT:Type.INDIRECT,sslSession.getApplicationBufferSize(),
-                getUseDirectBuffers()?Type.DIRECT:Type.INDIRECT,sslSession.getApplicationBufferSize(),
-                getUseDirectBuffers()?Type.DIRECT:Type.INDIRECT,getMaxBuffers()
-        );
+        if (getSlabAllocator()!=null)
+            _sslBuffers = new SlabBuffers(getSlabAllocator(),sslSession.getApplicationBufferSize(),sslSession.getApplicationBufferSize());
+        else
+            _sslBuffers = BuffersFactory.newBuffers(
+                    getUseDirectBuffers()?Type.DIRECT:Type.INDIRECT,sslSession.getApplicationBufferSize(),
+                    getUseDirectBuffers()?Type.DIRECT:Type.INDIRECT,sslSession.getApplicationBufferSize(),
+                    getUseDirectBuffers()?Type.DIRECT:Type.INDIRECT,getMaxBuffers()
+            );
 
         if (getRequestHeaderSize()<sslSession.getApplicationBufferSize())
             setRequestHeaderSize(sslSession.getApplicationBufferSize());
         if (getRequestBufferSize()<sslSession.getApplicationBufferSize())
             setRequestBufferSize(sslSession.getApplicationBufferSize());
 
+        if (_taskThreadPool instanceof LifeCycle)
+            ((LifeCycle)_taskThreadPool).start();
+
         super.doStart();
     }
 
@@ -622,6 +637,102 @@ public class SslSelectChannelConnector extends SelectChannelConnector implements
         _sslContextFactory.stop();
         _sslBuffers=null;
         super.doStop();
+        if (_taskThreadPool instanceof LifeCycle)
+            ((LifeCycle)_taskThreadPool).stop();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The thread pool that runs SSL delegated tasks, or null if they are run by the thread handling the connection.
+     */
+    public ThreadPool getTaskThreadPool()
+    {
+        return _taskThreadPool;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set a thread pool to run the delegated tasks of SSL handshakes, such as the key exchange.
+     * A bounded pool (eg a {@link org.eclipse.jetty.util.thread.QueuedThreadPool} with few threads
+     * and a limited queue) stops a burst of new connections from occupying the threads that
+     * handle established connections. If the pool cannot accept the tasks, they are run by
+     * the thread handling the connection.
+     * @param taskThreadPool The thread pool, or null to run the tasks in the thread handling the connection (default).
+     */
+    public void setTaskThreadPool(ThreadPool taskThreadPool)
+    {
+        _taskThreadPool = taskThreadPool;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The statistics of the handshakes completed while statistics are on.
+     */
+    public SslHandshakeStatistics getHandshakeStatistics()
+    {
+        return _handshakeStats;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return Number of SSL handshakes since statsReset() called. Undefined if setStatsOn(false).
+     */
+    public long getHandshakes()
+    {
+        return _handshakeStats.getHandshakes();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return Ratio of SSL handshakes that resumed a session since statsReset() called. Undefined if setStatsOn(false).
+     */
+    public double getHandshakesResumedRatio()
+    {
+        return _handshakeStats.getHandshakesResumedRatio();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return Mean SSL handshakes per second since statsReset() called. Undefined if setStatsOn(false).
+     */
+    public double getHandshakeRate()
+    {
+        return _handshakeStats.getHandshakeRate();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return Maximum time in ms of a SSL handshake since statsReset() called. Undefined if setStatsOn(false).
+     */
+    public long getHandshakeTimeMax()
+    {
+        return _handshakeStats.getHandshakeTimeMax();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return Mean time in ms of a SSL handshake since statsReset() called. Undefined if setStatsOn(false).
+     */
+    public double getHandshakeTimeMean()
+    {
+        return _handshakeStats.getHandshakeTimeMean();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return Standard deviation of the time in ms of a SSL handshake since statsReset() called. Undefined if setStatsOn(false).
+     */
+    public double getHandshakeTimeStdDev()
+    {
+        return _handshakeStats.getHandshakeTimeStdDev();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void statsReset()
+    {
+        super.statsReset();
+        _handshakeStats.reset();
     }
 
     /* ------------------------------------------------------------ */
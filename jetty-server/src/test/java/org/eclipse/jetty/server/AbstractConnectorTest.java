@@ -25,6 +25,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPointStatistics;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.server.handler.HandlerWrapper;
 import org.eclipse.jetty.server.nio.SelectChannelConnector;
@@ -143,6 +144,13 @@ public class AbstractConnectorTest
         assertEquals(1.0, _connector.getConnectionsRequestsMean(), 0.01);
         assertEquals(1, _connector.getConnectionsRequestsMax());
         assertTrue(_connector.getConnectionsRequestsMean() <= _connector.getConnectionsRequestsMax());
+
+        EndPointStatistics io = ((SelectChannelConnector)_connector).getEndPointStatistics();
+        assertTrue(io.getBytesFilled() > 0);
+        assertTrue(io.getBytesFlushed() > 0);
+        assertTrue(io.getFills() > 0);
+        assertTrue(io.getFlushes() > 0);
+        assertEquals(io.getFlushes(), io.getFlushTime().getCount());
     }
 
     @Test
@@ -58,6 +58,25 @@ public class BusySelectChannelServerTest extends HttpServerTestBase
                         return super.flush(header,buffer,trailer);
                     }
 
+                    /* ------------------------------------------------------------ */
+                    /* (non-Javadoc)
+                     * @see org.eclipse.io.nio.SelectChannelEndPoint#flush(org.eclipse.io.Buffer[])
+                     */
+                    @Override
+                    public int flush(Buffer[] buffers) throws IOException
+                    {
+                        int x=write++&0xff;
+                        if (x<8)
+                            return 0;
+                        if (x<32)
+                        {
+                            for (Buffer buffer : buffers)
+                                if (buffer!=null && buffer.length()>0)
+                                    return flush(buffer);
+                        }
+                        return super.flush(buffers);
+                    }
+
                     /* ------------------------------------------------------------ */
                     /* (non-Javadoc)
                      * @see org.eclipse.io.nio.SelectChannelEndPoint#flush(org.eclipse.io.Buffer)
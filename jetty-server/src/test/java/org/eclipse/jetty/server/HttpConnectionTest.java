@@ -126,7 +126,56 @@ public class HttpConnectionTest
         offset = checkContains(response,offset,"HTTP/1.1 200");
         offset = checkContains(response,offset,"/R1");
     }
+
+    @Test
+    public void testStaticFields() throws Exception
+    {
+        connector.addStaticField("X-Powered-By","Test");
+        String response=connector.getResponses("GET /R1 HTTP/1.1\015\012"+
+                "Host: localhost\015\012"+
+                "Connection: close\015\012"+
+                "\015\012");
+
+        int offset=0;
+        offset = checkContains(response,offset,"HTTP/1.1 200");
+        checkContains(response,offset,"X-Powered-By: Test");
+    }
     
+    @Test
+    public void testPipelined() throws Exception
+    {
+        server.stop();
+        server.setHandler(new DumpHandler()
+        {
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                response.getOutputStream().print(request.getRequestURI());
+            }
+        });
+        connector.setPipelineBufferSize(4096);
+        server.start();
+
+        String response=connector.getResponses("GET /R1 HTTP/1.1\015\012"+
+                "Host: localhost\015\012"+
+                "\015\012"+
+                "GET /R2 HTTP/1.1\015\012"+
+                "Host: localhost\015\012"+
+                "\015\012"+
+                "GET /R3 HTTP/1.1\015\012"+
+                "Host: localhost\015\012"+
+                "Connection: close\015\012"+
+                "\015\012");
+
+        int offset=0;
+        offset = checkContains(response,offset,"HTTP/1.1 200");
+        offset = checkContains(response,offset,"/R1");
+        offset = checkContains(response,offset,"HTTP/1.1 200");
+        offset = checkContains(response,offset,"/R2");
+        offset = checkContains(response,offset,"HTTP/1.1 200");
+        checkContains(response,offset,"/R3");
+    }
+
     @Test
     public void testHead() throws Exception
     {
@@ -130,6 +130,121 @@ public abstract class HttpServerTestBase extends HttpServerTestFixture
         }
     }
 
+    /*
+     * A response must not be held back for a pipelined request that has only partly arrived.
+     */
+    @Test
+    public void testPipelinedPartialRequest() throws Exception
+    {
+        configureServer(new AbstractHandler()
+        {
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                response.getOutputStream().print("Hello world\r\n");
+            }
+        });
+        ((AbstractConnector)_connector).setPipelineBufferSize(4096);
+
+        Socket client=newSocket(HOST,_connector.getLocalPort());
+        try
+        {
+            client.setSoTimeout(5000);
+            OutputStream os=client.getOutputStream();
+            os.write(("GET /R1 HTTP/1.1\r\n"+
+                    "Host: localhost\r\n"+
+                    "\r\n"+
+                    "GET /R2 HTTP/1.1\r\n"+
+                    "Host: loc").getBytes());
+            os.flush();
+
+            // The first response arrives without waiting for the rest of the second request
+            LineNumberReader in = new LineNumberReader(new InputStreamReader(client.getInputStream()));
+            String line=in.readLine();
+            assertTrue(line,line.startsWith("HTTP/1.1 200"));
+            while (!"Hello world".equals(line))
+                line=in.readLine();
+
+            // Nor for the partial content of a request that has been handled
+            os.write(("alhost\r\n"+
+                    "\r\n"+
+                    "POST /R3 HTTP/1.1\r\n"+
+                    "Host: localhost\r\n"+
+                    "Content-Length: 10\r\n"+
+                    "\r\n"+
+                    "01234").getBytes());
+            os.flush();
+            for (int i=0;i<2;i++)
+            {
+                line=in.readLine();
+                assertTrue(line,line.startsWith("HTTP/1.1 200"));
+                while (!"Hello world".equals(line))
+                    line=in.readLine();
+            }
+        }
+        finally
+        {
+            ((AbstractConnector)_connector).setPipelineBufferSize(0);
+            client.close();
+        }
+    }
+
+    @Test
+    public void testPipelinedContinue() throws Exception
+    {
+        configureServer(new AbstractHandler()
+        {
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                String content="Hello world";
+                if ("POST".equals(request.getMethod()))
+                    content=IO.toString(request.getInputStream());
+                response.getOutputStream().print(content+"\r\n");
+            }
+        });
+        ((AbstractConnector)_connector).setPipelineBufferSize(4096);
+
+        Socket client=newSocket(HOST,_connector.getLocalPort());
+        try
+        {
+            client.setSoTimeout(5000);
+            OutputStream os=client.getOutputStream();
+            os.write(("GET /R1 HTTP/1.1\r\n"+
+                    "Host: localhost\r\n"+
+                    "\r\n"+
+                    "POST /R2 HTTP/1.1\r\n"+
+                    "Host: localhost\r\n"+
+                    "Expect: 100-continue\r\n"+
+                    "Content-Length: 7\r\n"+
+                    "\r\n").getBytes());
+            os.flush();
+
+            // The response to the first request goes before the 100 Continue for the second
+            LineNumberReader in = new LineNumberReader(new InputStreamReader(client.getInputStream()));
+            String line=in.readLine();
+            assertTrue(line,line.startsWith("HTTP/1.1 200"));
+            while (!"Hello world".equals(line))
+                line=in.readLine();
+            line=in.readLine();
+            assertTrue(line,line.startsWith("HTTP/1.1 100"));
+            while (line.length()>0)
+                line=in.readLine();
+
+            os.write("Goodbye".getBytes());
+            os.flush();
+            line=in.readLine();
+            assertTrue(line,line.startsWith("HTTP/1.1 200"));
+            while (!"Goodbye".equals(line))
+                line=in.readLine();
+        }
+        finally
+        {
+            ((AbstractConnector)_connector).setPipelineBufferSize(0);
+            client.close();
+        }
+    }
+
     @Test
     public void testFragmentedChunk() throws Exception
     {
@@ -14,6 +14,9 @@
 package org.eclipse.jetty.server;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -27,6 +30,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.io.Buffer;
+import org.eclipse.jetty.io.NetworkTrafficCapture;
 import org.eclipse.jetty.io.NetworkTrafficListener;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.server.nio.NetworkTrafficSelectChannelConnector;
@@ -434,6 +438,112 @@ public class NetworkTrafficListenerTest
         socket.close();
     }
 
+    @Test
+    public void testCapture() throws Exception
+    {
+        File file = File.createTempFile("capture", ".jttc");
+        file.deleteOnExit();
+        NetworkTrafficCapture capture = new NetworkTrafficCapture();
+        capture.setFileName(file.getAbsolutePath());
+        capture.addRemoteAddress("127.0.0.1");
+
+        server = new Server();
+        server.setSendDateHeader(false);
+        server.setSendServerVersion(false);
+        connector = new NetworkTrafficSelectChannelConnector();
+        connector.setNetworkTrafficCapture(capture);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler()
+        {
+            public void handle(String uri, Request request, HttpServletRequest servletRequest, HttpServletResponse servletResponse) throws IOException, ServletException
+            {
+                request.setHandled(true);
+            }
+        });
+        server.start();
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        connector.addNetworkTrafficListener(new NetworkTrafficListener.Empty()
+        {
+            @Override
+            public void closed(Socket socket)
+            {
+                closedLatch.countDown();
+            }
+        });
+        int port = connector.getLocalPort();
+
+        String request = "" +
+                "GET / HTTP/1.1\r\n" +
+                "Host: localhost:" + port + "\r\n" +
+                "Connection: close\r\n" +
+                "\r\n";
+        String expectedResponse = "" +
+                "HTTP/1.1 200 OK\r\n" +
+                "Connection: close\r\n" +
+                "\r\n";
+
+        Socket socket = new Socket("127.0.0.1", port);
+        OutputStream output = socket.getOutputStream();
+        output.write(request.getBytes("UTF-8"));
+        output.flush();
+        assertEquals(expectedResponse, new String(readResponse(socket), "UTF-8"));
+        socket.close();
+        assertTrue(closedLatch.await(1, TimeUnit.SECONDS));
+
+        server.stop();
+        server.join();
+        assertEquals(1, capture.getConnections());
+        assertEquals(0, capture.getDropped());
+
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try
+        {
+            assertEquals(NetworkTrafficCapture.MAGIC, input.readInt());
+            assertEquals(NetworkTrafficCapture.VERSION, input.readShort());
+            input.readInt();
+
+            String incoming = "";
+            String outgoing = "";
+            boolean opened = false;
+            boolean closed = false;
+            for (long i = 0; i < capture.getCaptured(); ++i)
+            {
+                byte event = input.readByte();
+                input.readLong();
+                assertEquals(1, input.readLong());
+                input.readInt();
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                String data = new String(bytes, "UTF-8");
+                switch (event)
+                {
+                    case NetworkTrafficCapture.OPENED:
+                        assertTrue(data.endsWith(":" + port));
+                        opened = true;
+                        break;
+                    case NetworkTrafficCapture.INCOMING:
+                        incoming += data;
+                        break;
+                    case NetworkTrafficCapture.OUTGOING:
+                        outgoing += data;
+                        break;
+                    case NetworkTrafficCapture.CLOSED:
+                        closed = true;
+                        break;
+                }
+            }
+            assertTrue(opened);
+            assertTrue(closed);
+            assertEquals(request, incoming);
+            assertEquals(expectedResponse, outgoing);
+        }
+        finally
+        {
+            input.close();
+            file.delete();
+        }
+    }
+
     private byte[] readResponse(Socket socket) throws IOException
     {
         socket.setSoTimeout(5000);
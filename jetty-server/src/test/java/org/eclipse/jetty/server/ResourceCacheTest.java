@@ -14,15 +14,19 @@
 package org.eclipse.jetty.server;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
 
 import org.eclipse.jetty.http.HttpContent;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceCollection;
 import org.junit.Test;
@@ -223,6 +227,52 @@ public class ResourceCacheTest
         cache.flushCache();
     }
 
+    @Test
+    public void testPrecompress() throws Exception
+    {
+        File text=File.createTempFile("R-text-",".txt");
+        text.deleteOnExit();
+        File binary=File.createTempFile("R-binary-",".bin");
+        binary.deleteOnExit();
+        StringBuilder expected=new StringBuilder();
+        for (int i=0;i<100;i++)
+            expected.append("line ").append(i).append(" of some text\n");
+        for (File file : new File[]{text,binary})
+        {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(expected.toString().getBytes("ISO-8859-1"));
+            out.close();
+        }
+        Resource directory=Resource.newResource(text.getParentFile().getAbsolutePath());
+
+        ResourceCache cache=new ResourceCache(null,directory,new MimeTypes(),false);
+        cache.setPrecompress(true);
+
+        // Without a thread pool the variant is produced when the file is cached
+        ResourceCache.Content content=(ResourceCache.Content)cache.lookup(text.getName());
+        HttpContent gzipped=content.getGzippedContent();
+        assertTrue(gzipped!=null);
+        assertEquals(expected.length(),content.getContentLength());
+        assertTrue(gzipped.getContentLength()<expected.length()/2);
+        assertEquals(gzipped.getContentLength(),gzipped.getIndirectBuffer().length());
+        assertEquals(content.getContentType(),gzipped.getContentType());
+        assertEquals(content.getLastModified(),gzipped.getLastModified());
+        ByteArrayOutputStream bout=new ByteArrayOutputStream();
+        IO.copy(new GZIPInputStream(gzipped.getInputStream()),bout);
+        assertEquals(expected.toString(),bout.toString("ISO-8859-1"));
+        assertEquals(expected.length()+gzipped.getContentLength(),cache.getCachedSize());
+
+        // Not compressible
+        content=(ResourceCache.Content)cache.lookup(binary.getName());
+        assertNull(content.getGzippedContent());
+        assertEquals(2*expected.length()+gzipped.getContentLength(),cache.getCachedSize());
+
+        // Evicted with the content
+        cache.flushCache();
+        assertEquals(0,cache.getCachedSize());
+        assertEquals(0,cache.getCachedFiles());
+    }
+
     static String getContent(Resource r, String path) throws Exception
     {
         StringBuilder buffer = new StringBuilder();
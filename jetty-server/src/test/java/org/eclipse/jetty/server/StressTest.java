@@ -149,6 +149,94 @@ public class StressTest
         }
     }
 
+    @Test
+    public void testPipelined() throws Throwable
+    {
+        assumeTrue(!OS.IS_OSX || Stress.isEnabled());
+
+        int threads=Stress.isEnabled()?200:10;
+        int loops=Stress.isEnabled()?100:10;
+        try
+        {
+            for (int size : new int[]{0,16*1024})
+            {
+                _connector.setPipelineBufferSize(size);
+                _handled.set(0);
+                doPipelined(threads,loops);
+                assertEquals("pipelineBufferSize="+size,threads*loops*__tests.length,_handled.get());
+            }
+        }
+        finally
+        {
+            _connector.setPipelineBufferSize(0);
+        }
+    }
+
+    private void doPipelined(int threadCount, final int loops) throws Throwable
+    {
+        final Throwable[] throwables = new Throwable[threadCount];
+        final Thread[] threads = new Thread[threadCount];
+        for (int i=0;i< threadCount;i++)
+        {
+            final int id=i;
+            threads[i]=new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for (int l=0;l<loops;l++)
+                            doPipelinedPaths("T"+id+"-"+l);
+                    }
+                    catch(Throwable th)
+                    {
+                        throwables[id]=th;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        for (Throwable throwable : throwables)
+            if (throwable!=null)
+                throw throwable;
+    }
+
+    private void doPipelinedPaths(String name) throws Exception
+    {
+        long start=System.currentTimeMillis();
+        StringBuilder requests=new StringBuilder();
+        for (int i=0;i<__tests.length;i++)
+        {
+            String close=((i+1)<__tests.length)?"":"Connection: close\r\n";
+            requests.append("GET ").append(__tests[i]).append("/").append(name).append("/").append(i).append(" HTTP/1.1\r\n")
+                    .append("Host: localhost\r\n")
+                    .append("start: ").append(start).append("\r\n")
+                    .append(close).append("\r\n");
+        }
+
+        Socket socket= new Socket("localhost", _connector.getLocalPort());
+        socket.setSoTimeout(30000);
+        socket.setSoLinger(false,0);
+        socket.getOutputStream().write(requests.toString().getBytes());
+        socket.getOutputStream().flush();
+        String response = IO.toString(socket.getInputStream());
+        socket.close();
+
+        assertEquals(name,__tests.length,count(response,"HTTP/1.1 200 OK"));
+        int offset=0;
+        for (int i=0;i<__tests.length;i++)
+        {
+            offset=response.indexOf("DATA "+__tests[i],offset);
+            assertTrue(name,offset>=0);
+            offset+=__tests[i].length()+5;
+        }
+    }
+
     private void doThreads(int threadCount, final int loops, final boolean persistent) throws Throwable
     {
         final Throwable[] throwables = new Throwable[threadCount];
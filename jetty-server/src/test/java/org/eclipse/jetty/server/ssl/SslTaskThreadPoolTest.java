@@ -0,0 +1,130 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.server.ssl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.ssl.SslContextFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SslTaskThreadPoolTest
+{
+    private Server _server;
+    private SslSelectChannelConnector _connector;
+    private SSLContext _sslContext;
+    private final AtomicInteger _tasks = new AtomicInteger();
+
+    @Before
+    public void init() throws Exception
+    {
+        _server = new Server();
+        _connector = new SslSelectChannelConnector();
+        String keystorePath = System.getProperty("basedir",".") + "/src/test/resources/keystore";
+        SslContextFactory cf = _connector.getSslContextFactory();
+        cf.setKeyStore(keystorePath);
+        cf.setKeyStorePassword("storepwd");
+        cf.setKeyManagerPassword("keypwd");
+
+        QueuedThreadPool tasks = new QueuedThreadPool()
+        {
+            @Override
+            public boolean dispatch(Runnable job)
+            {
+                _tasks.incrementAndGet();
+                return super.dispatch(job);
+            }
+        };
+        tasks.setMaxThreads(2);
+        tasks.setName("ssl-tasks");
+        _connector.setTaskThreadPool(tasks);
+        _connector.setStatsOn(true);
+
+        _server.addConnector(_connector);
+        _server.setHandler(new AbstractHandler()
+        {
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                response.getWriter().print("Hello");
+            }
+        });
+        _server.start();
+
+        KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
+        keystore.load(new FileInputStream(keystorePath), "storepwd".toCharArray());
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keystore);
+        _sslContext = SSLContext.getInstance("TLS");
+        _sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testHandshakeTasks() throws Exception
+    {
+        int connections=10;
+        for (int i=0;i<connections;i++)
+        {
+            Socket socket = _sslContext.getSocketFactory().createSocket("localhost",_connector.getLocalPort());
+            try
+            {
+                OutputStream out = socket.getOutputStream();
+                out.write("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes("ISO-8859-1"));
+                out.flush();
+                String response = IO.toString(socket.getInputStream());
+                assertTrue(response,response.startsWith("HTTP/1.1 200 OK"));
+                assertTrue(response,response.endsWith("Hello"));
+            }
+            finally
+            {
+                socket.close();
+            }
+        }
+
+        assertTrue(_tasks.get()>0);
+        assertEquals(connections,_connector.getHandshakes());
+        assertTrue(_connector.getHandshakeRate()>0);
+        assertTrue(_connector.getHandshakeTimeMean()>=0);
+        assertTrue(_connector.getHandshakesResumedRatio()<=1.0);
+
+        _connector.statsReset();
+        assertEquals(0,_connector.getHandshakes());
+    }
+}
@@ -13,6 +13,7 @@
 
 package org.eclipse.jetty.servlet;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,9 +37,12 @@ import org.eclipse.jetty.http.HttpHeaderValues;
 import org.eclipse.jetty.http.HttpHeaders;
 import org.eclipse.jetty.http.HttpMethods;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.gzip.DeflaterPool;
 import org.eclipse.jetty.io.Buffer;
 import org.eclipse.jetty.io.ByteArrayBuffer;
 import org.eclipse.jetty.io.WriterOutputStream;
+import org.eclipse.jetty.io.nio.ChannelEndPoint;
+import org.eclipse.jetty.io.nio.FileRegionBuffer;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Dispatcher;
 import org.eclipse.jetty.server.HttpConnection;
@@ -92,6 +96,12 @@ import org.eclipse.jetty.util.resource.ResourceFactory;
  *                    gzip content encoded if a matching resource is
  *                    found ending with ".gz"
  *
+ *  precompress       If set to true, gzip is true and the servlet creates a
+ *                    cache (see maxCachedFiles), then the cache produces a
+ *                    gzipped variant of compressible files in the background
+ *                    when they are cached, which is served when no ".gz"
+ *                    resource is found. Default is false.
+ *
  *  resourceBase      Set to replace the context resource base
  *
  *  resourceCache     If set, this is a context attribute name, which the servlet 
@@ -144,10 +154,12 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
     private boolean _welcomeExactServlets=false;
     private boolean _redirectWelcome=false;
     private boolean _gzip=true;
+    private boolean _precompress=false;
     private boolean _pathInfoOnly=false;
 
     private Resource _resourceBase;
     private ResourceCache _cache;
+    private DeflaterPool _deflaterPool;
 
     private MimeTypes _mimeTypes;
     private String[] _welcomes;
@@ -177,6 +189,7 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
         _dirAllowed=getInitBoolean("dirAllowed",_dirAllowed);
         _redirectWelcome=getInitBoolean("redirectWelcome",_redirectWelcome);
         _gzip=getInitBoolean("gzip",_gzip);
+        _precompress=getInitBoolean("precompress",_precompress);
         _pathInfoOnly=getInitBoolean("pathInfoOnly",_pathInfoOnly);
 
         if ("exact".equals(getInitParameter("welcomeServlets")))
@@ -267,6 +280,14 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
                     _cache.setMaxCachedFileSize(max_cached_file_size);
                 if (max_cached_files>=-1)
                     _cache.setMaxCachedFiles(max_cached_files);
+                if (_gzip && _precompress)
+                {
+                    _cache.setPrecompress(true);
+                    if (_contextHandler.getServer()!=null)
+                        _cache.setThreadPool(_contextHandler.getServer().getThreadPool());
+                    _deflaterPool=new DeflaterPool();
+                    _cache.setDeflaterPool(_deflaterPool);
+                }
             }
         }
         catch (Exception e)
@@ -423,6 +444,7 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
             if (accept!=null && accept.indexOf("gzip")>=0)
                 gzip=true;
         }
+        boolean gzipAccepted=gzip;
 
         // Find the resource and content
         Resource resource=null;
@@ -461,6 +483,17 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
                 {
                     content=_cache.lookup(pathInContext);
                     resource=content==null?null:content.getResource();
+
+                    // Use the precompressed variant of the cached content
+                    if (gzipAccepted && content instanceof ResourceCache.Content)
+                    {
+                        HttpContent gzipped=((ResourceCache.Content)content).getGzippedContent();
+                        if (gzipped!=null)
+                        {
+                            content=gzipped;
+                            gzip=true;
+                        }
+                    }
                 }
             }
 
@@ -495,6 +528,7 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
                         if (gzip)
                         {
                             response.setHeader(HttpHeaders.CONTENT_ENCODING,"gzip");
+                            response.addHeader(HttpHeaders.VARY,HttpHeaders.ACCEPT_ENCODING);
                             String mt=_servletContext.getMimeType(pathInContext);
                             if (mt!=null)
                                 response.setContentType(mt);
@@ -762,16 +796,20 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
     throws IOException
     {
         boolean direct;
+        boolean region;
         long content_length;
         if (content==null)
         {
             direct=false;
+            region=false;
             content_length=resource.length();
         }
         else
         {
-            Connector connector = HttpConnection.getCurrentConnection().getConnector();
+            HttpConnection connection = HttpConnection.getCurrentConnection();
+            Connector connector = connection.getConnector();
             direct=connector instanceof NIOConnector && ((NIOConnector)connector).getUseDirectBuffers() && !(connector instanceof SslConnector);
+            region=connection.getEndPoint() instanceof ChannelEndPoint;
             content_length=content.getContentLength();
         }
 
@@ -814,6 +852,8 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
                     else 
                     {
                         Buffer buffer = direct?content.getDirectBuffer():content.getIndirectBuffer();
+                        if (buffer==null && region)
+                            buffer=content.getFileBuffer();
                         if (buffer!=null)
                         {
                             writeHeaders(response,content,content_length);
@@ -867,7 +907,11 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
                 response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
                 response.setHeader(HttpHeaders.CONTENT_RANGE,
                         singleSatisfiableRange.toHeaderRangeString(content_length));
-                resource.writeTo(out,singleSatisfiableRange.getFirst(content_length),singleLength);
+                File file = (region && !written && out instanceof HttpOutput && singleLength<=Integer.MAX_VALUE)?resource.getFile():null;
+                if (file!=null)
+                    ((HttpConnection.Output)out).sendContent(new FileRegionBuffer(file,singleSatisfiableRange.getFirst(content_length),(int)singleLength));
+                else
+                    resource.writeTo(out,singleSatisfiableRange.getFirst(content_length),singleLength);
                 return;
             }
 
@@ -1020,6 +1064,12 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
     {
         if (_cache!=null)
             _cache.flushCache();
+        if (_deflaterPool!=null)
+        {
+            _cache.setDeflaterPool(null);
+            _deflaterPool.clear();
+            _deflaterPool=null;
+        }
         super.destroy();
     }
 
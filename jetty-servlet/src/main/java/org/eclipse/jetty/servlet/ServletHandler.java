@@ -40,6 +40,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.continuation.ContinuationThrowable;
+import org.eclipse.jetty.http.CompiledPathMap;
 import org.eclipse.jetty.http.HttpException;
 import org.eclipse.jetty.http.PathMap;
 import org.eclipse.jetty.io.EofException;
@@ -100,7 +101,7 @@ public class ServletHandler extends ScopedHandler
     private MultiMap<String> _filterNameMappings;
     
     private final Map<String,ServletHolder> _servletNameMap=new HashMap<String,ServletHolder>();
-    private PathMap _servletPathMap;
+    private CompiledPathMap _servletPathMap;
     
     protected final ConcurrentMap<String,FilterChain> _chainCache[] = new ConcurrentMap[FilterMapping.ALL];
     protected final Queue<String>[] _chainLRU = new Queue[FilterMapping.ALL];
@@ -1193,7 +1194,7 @@ public class ServletHandler extends ScopedHandler
                 }
             }
             
-            _servletPathMap=pm;
+            _servletPathMap=new CompiledPathMap(pm);
         }
         
         // flush filter chain cache
@@ -40,6 +40,7 @@ import org.eclipse.jetty.continuation.ContinuationSupport;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.HashedWheelTimeout;
 import org.eclipse.jetty.util.thread.Timeout;
 
 /**
@@ -165,8 +166,8 @@ public class DoSFilter implements Filter
     protected String _whitelistStr;
     private final HashSet<String> _whitelist = new HashSet<String>();
 
-    private final Timeout _requestTimeoutQ = new Timeout();
-    private final Timeout _trackerTimeoutQ = new Timeout();
+    private final Timeout _requestTimeoutQ = new HashedWheelTimeout();
+    private final Timeout _trackerTimeoutQ = new HashedWheelTimeout();
 
     private Thread _timerThread;
     private volatile boolean _running;
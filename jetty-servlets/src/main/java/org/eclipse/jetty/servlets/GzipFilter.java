@@ -20,6 +20,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.zip.Deflater;
 
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -33,6 +34,7 @@ import org.eclipse.jetty.continuation.Continuation;
 import org.eclipse.jetty.continuation.ContinuationListener;
 import org.eclipse.jetty.continuation.ContinuationSupport;
 import org.eclipse.jetty.http.HttpMethods;
+import org.eclipse.jetty.http.gzip.DeflaterPool;
 import org.eclipse.jetty.http.gzip.GzipResponseWrapper;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -58,6 +60,11 @@ import org.eclipse.jetty.util.log.Logger;
  * This filter extends {@link UserAgentFilter} and if the the initParameter <code>excludedAgents</code> 
  * is set to a comma separated list of user agents, then these agents will be excluded from gzip content.
  * </p>
+ * <p>
+ * The content is compressed with deflaters from a {@link DeflaterPool}, created with the
+ * <code>compressionLevel</code> (0-9, default -1), <code>compressionStrategy</code> (default 0) and
+ * <code>deflaterPoolCapacity</code> (default 64) initParameters.
+ * </p>
  *
  */
 public class GzipFilter extends UserAgentFilter
@@ -67,6 +74,7 @@ public class GzipFilter extends UserAgentFilter
     protected Set<String> _mimeTypes;
     protected int _bufferSize=8192;
     protected int _minGzipSize=256;
+    protected DeflaterPool _deflaterPool;
     protected Set<String> _excluded;
     
     /* ------------------------------------------------------------ */
@@ -85,6 +93,23 @@ public class GzipFilter extends UserAgentFilter
         if (tmp!=null)
             _minGzipSize=Integer.parseInt(tmp);
         
+        int level=Deflater.DEFAULT_COMPRESSION;
+        tmp=filterConfig.getInitParameter("compressionLevel");
+        if (tmp!=null)
+            level=Integer.parseInt(tmp);
+
+        int strategy=Deflater.DEFAULT_STRATEGY;
+        tmp=filterConfig.getInitParameter("compressionStrategy");
+        if (tmp!=null)
+            strategy=Integer.parseInt(tmp);
+
+        int capacity=64;
+        tmp=filterConfig.getInitParameter("deflaterPoolCapacity");
+        if (tmp!=null)
+            capacity=Integer.parseInt(tmp);
+
+        _deflaterPool=new DeflaterPool(level,strategy,capacity);
+
         tmp=filterConfig.getInitParameter("mimeTypes");
         if (tmp!=null)
         {
@@ -110,6 +135,8 @@ public class GzipFilter extends UserAgentFilter
      */
     public void destroy()
     {
+        if (_deflaterPool!=null)
+            _deflaterPool.clear();
     }
 
     /* ------------------------------------------------------------ */
@@ -197,6 +224,7 @@ public class GzipFilter extends UserAgentFilter
                 setMimeTypes(GzipFilter.this._mimeTypes);
                 setBufferSize(GzipFilter.this._bufferSize);
                 setMinGzipSize(GzipFilter.this._minGzipSize);
+                setDeflaterPool(GzipFilter.this._deflaterPool);
             }
             
             @Override
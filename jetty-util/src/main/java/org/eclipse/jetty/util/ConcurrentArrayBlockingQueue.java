@@ -0,0 +1,578 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.util;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/* ------------------------------------------------------------ */
+/** Lock free queue backed by a chain of arrays.
+ * <p>
+ * Producers and consumers claim the slots of the array at the tail and head
+ * of the chain with an atomic increment, so that neither takes a lock to
+ * {@link #offer(Object)} or {@link #poll()}. When the slots of the tail array
+ * are used up, a new array is linked to the chain, which is how the queue
+ * grows. A consumer that claims a slot before its producer has filled it
+ * spins until it is filled, and the array at the head is kept for reuse by
+ * the next array linked to the chain once all of its slots are consumed.
+ * The number of elements is bounded by the limit, which defaults to
+ * {@link Integer#MAX_VALUE}.
+ * <p>
+ * A consumer that finds the queue empty in {@link #take()} or
+ * {@link #poll(long, TimeUnit)} spins briefly before it waits, as does a
+ * producer that finds a limited queue full in
+ * {@link #offer(Object, long, TimeUnit)}. Only waiting consumers and
+ * producers, and the threads that wake them, take a lock.
+ * <p>
+ * The queue may be used as an alternative to {@link BlockingArrayQueue}
+ * for the jobs of a {@link org.eclipse.jetty.util.thread.QueuedThreadPool},
+ * but unlike it is not a {@link java.util.List}: its iterator is weakly
+ * consistent and elements can only be removed from the head.
+ *
+ * @param <E> The element type
+ */
+public class ConcurrentArrayBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>
+{
+    public static final int DEFAULT_CAPACITY=128;
+    public static final int DEFAULT_SPINS=Runtime.getRuntime().availableProcessors()>1?64:0;
+
+    private final int _limit;
+    private final int _growCapacity;
+    private final AtomicInteger _size=new AtomicInteger();
+    private final AtomicReference<Block> _head;
+    private final AtomicReference<Block> _tail;
+    private final AtomicReference<AtomicReferenceArray<Object>> _spare=new AtomicReference<AtomicReferenceArray<Object>>();
+    private final AtomicInteger _waiting=new AtomicInteger();
+    private final AtomicInteger _offering=new AtomicInteger();
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _notEmpty = _lock.newCondition();
+    private final Condition _notFull = _lock.newCondition();
+    private volatile int _spins=DEFAULT_SPINS;
+
+    /* ------------------------------------------------------------ */
+    /** Create an unlimited queue
+     */
+    public ConcurrentArrayBlockingQueue()
+    {
+        this(DEFAULT_CAPACITY,DEFAULT_CAPACITY,Integer.MAX_VALUE);
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Create a limited queue
+     * @param limit The maximum number of elements, which is also the size of each array.
+     */
+    public ConcurrentArrayBlockingQueue(int limit)
+    {
+        this(limit,limit,limit);
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Create an unlimited queue
+     * @param capacity The size of the first array
+     * @param growBy The size of the arrays added as the queue grows
+     */
+    public ConcurrentArrayBlockingQueue(int capacity,int growBy)
+    {
+        this(capacity,growBy,Integer.MAX_VALUE);
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Create a limited queue
+     * @param capacity The size of the first array
+     * @param growBy The size of the arrays added as the queue grows
+     * @param limit The maximum number of elements
+     */
+    public ConcurrentArrayBlockingQueue(int capacity,int growBy,int limit)
+    {
+        if (capacity<=0 || capacity>limit)
+            throw new IllegalArgumentException();
+        _limit=limit;
+        _growCapacity=growBy>0?growBy:capacity;
+        Block block=new Block(new AtomicReferenceArray<Object>(capacity));
+        _head=new AtomicReference<Block>(block);
+        _tail=new AtomicReference<Block>(block);
+    }
+
+    /* ------------------------------------------------------------ */
+    public int getLimit()
+    {
+        return _limit;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of times a consumer polls an empty queue before it waits
+     */
+    public int getSpins()
+    {
+        return _spins;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param spins The number of times a consumer polls an empty queue before it waits
+     */
+    public void setSpins(int spins)
+    {
+        _spins=spins;
+    }
+
+    /* ------------------------------------------------------------ */
+    public boolean offer(E e)
+    {
+        if (e == null)
+            throw new NullPointerException();
+
+        // Reserve room for the element
+        while (true)
+        {
+            int size=_size.get();
+            if (size>=_limit)
+                return false;
+            if (_size.compareAndSet(size,size+1))
+                break;
+        }
+
+        while (true)
+        {
+            Block tail=_tail.get();
+            int index=tail._enqueue.getAndIncrement();
+            if (index<tail._items.length())
+            {
+                tail._items.set(index,e);
+                break;
+            }
+
+            // The tail array is used up, so link or move to the next one
+            Block next=tail._next.get();
+            if (next==null)
+            {
+                next=new Block(newItems(),e);
+                if (tail._next.compareAndSet(null,next))
+                {
+                    _tail.compareAndSet(tail,next);
+                    break;
+                }
+                next._items.set(0,null);
+                recycle(next._items);
+                next=tail._next.get();
+            }
+            _tail.compareAndSet(tail,next);
+        }
+
+        if (_waiting.get()>0)
+            signalNotEmpty();
+        return true;
+    }
+
+    /* ------------------------------------------------------------ */
+    @SuppressWarnings("unchecked")
+    public E poll()
+    {
+        while (_size.get()>0)
+        {
+            Block head=_head.get();
+            AtomicReferenceArray<Object> items=head._items;
+            int index=head._dequeue.get();
+            if (index>=items.length())
+            {
+                Block next=head._next.get();
+                if (next==null)
+                    return null;
+                _head.compareAndSet(head,next);
+                continue;
+            }
+
+            // Only claim a slot that a producer has already claimed
+            if (index>=head._enqueue.get())
+                return null;
+            if (!head._dequeue.compareAndSet(index,index+1))
+                continue;
+
+            // Wait for the producer of the slot to fill it
+            Object item=items.get(index);
+            while (item==null)
+            {
+                Thread.yield();
+                item=items.get(index);
+            }
+            items.set(index,null);
+            _size.decrementAndGet();
+
+            if (head._taken.incrementAndGet()==items.length())
+                recycle(items);
+            if (_offering.get()>0)
+                signalNotFull();
+            return (E)item;
+        }
+        return null;
+    }
+
+    /* ------------------------------------------------------------ */
+    @SuppressWarnings("unchecked")
+    public E peek()
+    {
+        Block block=_head.get();
+        while (block!=null)
+        {
+            int end=Math.min(block._enqueue.get(),block._items.length());
+            for (int i=Math.max(0,block._dequeue.get());i<end;i++)
+            {
+                Object item=block._items.get(i);
+                if (item!=null)
+                    return (E)item;
+            }
+            block=block._next.get();
+        }
+        return null;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Retrieves and removes the head of this queue, waiting
+     * if no elements are present on this queue.
+     * @return the head of this queue
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public E take() throws InterruptedException
+    {
+        E e=spin();
+        if (e!=null)
+            return e;
+
+        _lock.lockInterruptibly();
+        _waiting.incrementAndGet();
+        try
+        {
+            try
+            {
+                while ((e=poll())==null)
+                    _notEmpty.await();
+            }
+            catch (InterruptedException ie)
+            {
+                _notEmpty.signal();
+                throw ie;
+            }
+        }
+        finally
+        {
+            _waiting.decrementAndGet();
+            if (e!=null && _size.get()>0)
+                _notEmpty.signal();
+            _lock.unlock();
+        }
+        return e;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Retrieves and removes the head of this queue, waiting
+     * if necessary up to the specified wait time if no elements are
+     * present on this queue.
+     * @param time how long to wait before giving up, in units of
+     * <tt>unit</tt>
+     * @param unit a <tt>TimeUnit</tt> determining how to interpret the
+     * <tt>timeout</tt> parameter
+     * @return the head of this queue, or <tt>null</tt> if the
+     * specified waiting time elapses before an element is present.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public E poll(long time, TimeUnit unit) throws InterruptedException
+    {
+        E e=spin();
+        if (e!=null)
+            return e;
+
+        long nanos=unit.toNanos(time);
+        _lock.lockInterruptibly();
+        _waiting.incrementAndGet();
+        try
+        {
+            try
+            {
+                while ((e=poll())==null)
+                {
+                    if (nanos<=0)
+                        return null;
+                    nanos=_notEmpty.awaitNanos(nanos);
+                }
+            }
+            catch (InterruptedException ie)
+            {
+                _notEmpty.signal();
+                throw ie;
+            }
+        }
+        finally
+        {
+            // Pass on a signal that this consumer may have consumed in vain
+            _waiting.decrementAndGet();
+            if (_size.get()>0)
+                _notEmpty.signal();
+            _lock.unlock();
+        }
+        return e;
+    }
+
+    /* ------------------------------------------------------------ */
+    private E spin()
+    {
+        E e=poll();
+        for (int i=_spins;e==null && i-->0;)
+            e=poll();
+        return e;
+    }
+
+    /* ------------------------------------------------------------ */
+    private AtomicReferenceArray<Object> newItems()
+    {
+        AtomicReferenceArray<Object> items=_spare.getAndSet(null);
+        return items==null?new AtomicReferenceArray<Object>(_growCapacity):items;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param items An array with all of its slots emptied, which no producer or consumer can claim a slot of
+     */
+    private void recycle(AtomicReferenceArray<Object> items)
+    {
+        if (items.length()==_growCapacity)
+            _spare.set(items);
+    }
+
+    /* ------------------------------------------------------------ */
+    private void signalNotEmpty()
+    {
+        _lock.lock();
+        try
+        {
+            _notEmpty.signal();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private void signalNotFull()
+    {
+        _lock.lock();
+        try
+        {
+            _notFull.signal();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void clear()
+    {
+        while (poll()!=null)
+            ;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public boolean isEmpty()
+    {
+        return _size.get()==0;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public int size()
+    {
+        return _size.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return A weakly consistent iterator over the elements, that does not support remove
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        return new Iterator<E>()
+        {
+            Block _block=_head.get();
+            int _index=Math.max(0,_block._dequeue.get());
+            E _next=advance();
+
+            @SuppressWarnings("unchecked")
+            private E advance()
+            {
+                while (_block!=null)
+                {
+                    int end=Math.min(_block._enqueue.get(),_block._items.length());
+                    while (_index<end)
+                    {
+                        Object item=_block._items.get(_index++);
+                        if (item!=null)
+                            return (E)item;
+                    }
+                    _block=_block._next.get();
+                    _index=0;
+                }
+                return null;
+            }
+
+            public boolean hasNext()
+            {
+                return _next!=null;
+            }
+
+            public E next()
+            {
+                if (_next==null)
+                    throw new NoSuchElementException();
+                E e=_next;
+                _next=advance();
+                return e;
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /* ------------------------------------------------------------ */
+    public int drainTo(Collection<? super E> c)
+    {
+        return drainTo(c,Integer.MAX_VALUE);
+    }
+
+    /* ------------------------------------------------------------ */
+    public int drainTo(Collection<? super E> c, int maxElements)
+    {
+        int n=0;
+        E e;
+        while (n<maxElements && (e=poll())!=null)
+        {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Inserts the specified element into this queue, waiting if necessary
+     * up to the specified wait time for space to become available in a
+     * limited queue.
+     * @param o the element to add
+     * @param timeout how long to wait before giving up, in units of
+     * <tt>unit</tt>
+     * @param unit a <tt>TimeUnit</tt> determining how to interpret the
+     * <tt>timeout</tt> parameter
+     * @return <tt>true</tt> if successful, or <tt>false</tt> if
+     * the specified waiting time elapses before space is available.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean offer(E o, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        if (offer(o))
+            return true;
+        if (_limit==Integer.MAX_VALUE)
+            return false;
+
+        long nanos=unit.toNanos(timeout);
+        _lock.lockInterruptibly();
+        _offering.incrementAndGet();
+        try
+        {
+            try
+            {
+                while (!offer(o))
+                {
+                    if (nanos<=0)
+                        return false;
+                    nanos=_notFull.awaitNanos(nanos);
+                }
+            }
+            catch (InterruptedException ie)
+            {
+                _notFull.signal();
+                throw ie;
+            }
+        }
+        finally
+        {
+            // Pass on a signal that this producer may have taken in vain
+            _offering.decrementAndGet();
+            if (_size.get()<_limit)
+                _notFull.signal();
+            _lock.unlock();
+        }
+        return true;
+    }
+
+    /* ------------------------------------------------------------ */
+    public void put(E o) throws InterruptedException
+    {
+        if (!add(o))
+            throw new IllegalStateException("full");
+    }
+
+    /* ------------------------------------------------------------ */
+    public int remainingCapacity()
+    {
+        return _limit-_size.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /**
+     * An array whose slots are each used once: filled by a producer and then
+     * emptied by a consumer. Once all of its slots are emptied, the counts
+     * of the block are spent, so the array can be reused by a new block.
+     */
+    private static class Block
+    {
+        final AtomicReferenceArray<Object> _items;
+        final AtomicInteger _enqueue=new AtomicInteger();
+        final AtomicInteger _dequeue=new AtomicInteger();
+        final AtomicInteger _taken=new AtomicInteger();
+        final AtomicReference<Block> _next=new AtomicReference<Block>();
+
+        Block(AtomicReferenceArray<Object> items)
+        {
+            _items=items;
+        }
+
+        Block(AtomicReferenceArray<Object> items, Object first)
+        {
+            this(items);
+            _items.set(0,first);
+            _enqueue.set(1);
+        }
+    }
+}
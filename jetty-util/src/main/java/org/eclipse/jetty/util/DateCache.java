@@ -34,6 +34,11 @@ import java.util.TimeZone;
  * If consecutive calls are frequently very different, then this
  * may be a little slower than a normal DateFormat.
  *
+ * The result for the current second is published through a volatile
+ * reference, so calls within the same second do not lock and many
+ * threads may share a cache without contention. Only the first call
+ * in each second synchronizes to format the new result.
+ *
  * 
  * 
  */
@@ -55,9 +60,8 @@ public class DateCache
     private String _secFormatString1;
 
     private long _lastMinutes = -1;
-    private long _lastSeconds = -1;
+    private volatile Tick _tick = null;
     private int _lastMs = -1;
-    private String _lastResult = null;
 
     private Locale _locale	= null;
     private DateFormatSymbols	_dfs	= null;
@@ -124,7 +128,7 @@ public class DateCache
         }
         _tzFormat.setTimeZone(tz);
         _minFormat.setTimeZone(tz);
-        _lastSeconds=-1;
+        _tick=null;
         _lastMinutes=-1;        
     }
 
@@ -207,7 +211,7 @@ public class DateCache
      * @param inDate 
      * @return Formatted date
      */
-    public synchronized String format(Date inDate)
+    public String format(Date inDate)
     {
         return format(inDate.getTime());
     }
@@ -217,24 +221,36 @@ public class DateCache
      * @param inDate 
      * @return Formatted date
      */
-    public synchronized String format(long inDate)
+    public String format(long inDate)
+    {
+        long seconds = inDate / 1000;
+
+        // Check if we are in the same second
+        // and don't care about millis
+        Tick tick=_tick;
+        if (tick!=null && tick._seconds==seconds)
+            return tick._string;
+
+        return formatTick(inDate);
+    }
+
+    /* ------------------------------------------------------------ */
+    private synchronized String formatTick(long inDate)
     {
         long seconds = inDate / 1000;
+        Tick tick=_tick;
 
         // Is it not suitable to cache?
-        if (seconds<_lastSeconds ||
-            _lastSeconds>0 && seconds>_lastSeconds+__hitWindow)
+        if (tick!=null && (seconds<tick._seconds || seconds>tick._seconds+__hitWindow))
         {
             // It's a cache miss
             Date d = new Date(inDate);
             return _tzFormat.format(d);
-            
         }
-                                          
-        // Check if we are in the same second
-        // and don't care about millis
-        if (_lastSeconds==seconds )
-            return _lastResult;
+
+        // Another thread may have formatted this second
+        if (tick!=null && tick._seconds==seconds)
+            return tick._string;
 
         Date d = new Date(inDate);
         
@@ -252,7 +268,6 @@ public class DateCache
         }
 
         // Always format if we get here
-        _lastSeconds = seconds;
         StringBuilder sb=new StringBuilder(_secFormatString.length());
         sb.append(_secFormatString0);
         int s=(int)(seconds%60);
@@ -260,10 +275,11 @@ public class DateCache
             sb.append('0');
         sb.append(s);
         sb.append(_secFormatString1);
-        _lastResult=sb.toString();
+        String result=sb.toString();
 
-                
-        return _lastResult;
+        // Publish the result to unsynchronized callers
+        _tick=new Tick(seconds,result);
+        return result;
     }
 
     /* ------------------------------------------------------------ */
@@ -303,4 +319,20 @@ public class DateCache
     {
         return _lastMs;
     }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /** The formatted result of a second.
+     */
+    private static class Tick
+    {
+        final long _seconds;
+        final String _string;
+
+        Tick(long seconds, String string)
+        {
+            _seconds=seconds;
+            _string=string;
+        }
+    }
 }
@@ -250,7 +250,12 @@ public class UrlEncoded extends MultiMap
      */
     public static void decodeUtf8To(byte[] raw,int offset, int length, MultiMap map)
     {
-        decodeUtf8To(raw,offset,length,map,new Utf8StringBuilder());
+        synchronized(map)
+        {
+            UrlEncodedDecoder decoder = new UrlEncodedDecoder(map,StringUtil.__UTF8,-1,-1);
+            decoder.decode(raw,offset,length);
+            decoder.finish();
+        }
     }
 
     /* -------------------------------------------------------------- */
@@ -336,77 +341,22 @@ public class UrlEncoded extends MultiMap
     public static void decode88591To(InputStream in, MultiMap map, int maxLength)
     throws IOException
     {
-        synchronized(map)
-        {
-            StringBuffer buffer = new StringBuffer();
-            String key = null;
-            String value = null;
-            
-            int b;
+        decode88591To(in,map,maxLength,-1);
+    }
 
-            // TODO cache of parameter names ???
-            int totalLength=0;
-            while ((b=in.read())>=0)
-            {
-                switch ((char) b)
-                {
-                    case '&':
-                        value = buffer.length()==0?"":buffer.toString();
-                        buffer.setLength(0);
-                        if (key != null)
-                        {
-                            map.add(key,value);
-                        }
-                        else if (value!=null&&value.length()>0)
-                        {
-                            map.add(value,"");
-                        }
-                        key = null;
-                        value=null;
-                        break;
-                        
-                    case '=':
-                        if (key!=null)
-                        {
-                            buffer.append((char)b);
-                            break;
-                        }
-                        key = buffer.toString();
-                        buffer.setLength(0);
-                        break;
-                        
-                    case '+':
-                        buffer.append(' ');
-                        break;
-                        
-                    case '%':
-                        int dh=in.read();
-                        int dl=in.read();
-                        if (dh<0||dl<0)
-                            break;
-                        buffer.append((char)((TypeUtil.convertHexDigit((byte)dh)<<4) + TypeUtil.convertHexDigit((byte)dl)));
-                        break;
-                    default:
-                        buffer.append((char)b);
-                    break;
-                }
-                if (maxLength>=0 && (++totalLength > maxLength))
-                    throw new IllegalStateException("Form too large");
-            }
-            
-            if (key != null)
-            {
-                value = buffer.length()==0?"":buffer.toString();
-                buffer.setLength(0);
-                map.add(key,value);
-            }
-            else if (buffer.length()>0)
-            {
-                map.add(buffer.toString(), "");
-            }
-        }
+    /* -------------------------------------------------------------- */
+    /** Decoded parameters to Map.
+     * @param in InputSteam to read
+     * @param map MultiMap to add parameters to
+     * @param maxLength maximum length of content to read 0r -1 for no limit
+     * @param maxKeys maximum number of keys in the map or -1 for no limit
+     */
+    public static void decode88591To(InputStream in, MultiMap map, int maxLength, int maxKeys)
+    throws IOException
+    {
+        decodeTo(in,map,new UrlEncodedDecoder(map,StringUtil.__ISO_8859_1,maxLength,maxKeys));
     }
-    
+
     /* -------------------------------------------------------------- */
     /** Decoded parameters to Map.
      * @param in InputSteam to read
@@ -415,78 +365,36 @@ public class UrlEncoded extends MultiMap
      */
     public static void decodeUtf8To(InputStream in, MultiMap map, int maxLength)
     throws IOException
+    {
+        decodeUtf8To(in,map,maxLength,-1);
+    }
+
+    /* -------------------------------------------------------------- */
+    /** Decoded parameters to Map.
+     * @param in InputSteam to read
+     * @param map MultiMap to add parameters to
+     * @param maxLength maximum length of content to read 0r -1 for no limit
+     * @param maxKeys maximum number of keys in the map or -1 for no limit
+     */
+    public static void decodeUtf8To(InputStream in, MultiMap map, int maxLength, int maxKeys)
+    throws IOException
+    {
+        decodeTo(in,map,new UrlEncodedDecoder(map,StringUtil.__UTF8,maxLength,maxKeys));
+    }
+
+    /* -------------------------------------------------------------- */
+    /** Read the stream in chunks, adding each parameter to the map as it is decoded.
+     */
+    private static void decodeTo(InputStream in, MultiMap map, UrlEncodedDecoder decoder)
+    throws IOException
     {
         synchronized(map)
         {
-            Utf8StringBuilder buffer = new Utf8StringBuilder();
-            String key = null;
-            String value = null;
-            
-            int b;
-            
-            // TODO cache of parameter names ???
-            int totalLength=0;
-            while ((b=in.read())>=0)
-            {
-                switch ((char) b)
-                {
-                    case '&':
-                        value = buffer.length()==0?"":buffer.toString();
-                        buffer.reset();
-                        if (key != null)
-                        {
-                            map.add(key,value);
-                        }
-                        else if (value!=null&&value.length()>0)
-                        {
-                            map.add(value,"");
-                        }
-                        key = null;
-                        value=null;
-                        break;
-                        
-                    case '=':
-                        if (key!=null)
-                        {
-                            buffer.append((byte)b);
-                            break;
-                        }
-                        key = buffer.toString();
-                        buffer.reset();
-                        break;
-                        
-                    case '+':
-                        buffer.append((byte)' ');
-                        break;
-                        
-                    case '%':
-                        int dh=in.read();
-                        int dl=in.read();
-                        if (dh<0||dl<0)
-                            break;
-                        buffer.append((byte)((TypeUtil.convertHexDigit((byte)dh)<<4) + TypeUtil.convertHexDigit((byte)dl)));
-                        break;
-                    default:
-                        buffer.append((byte)b);
-                    break;
-                }
-                if (maxLength>=0 && (++totalLength > maxLength))
-                    throw new IllegalStateException("Form too large");
-            }
-            
-            if (key != null)
-            {
-                value = buffer.length()==0?"":buffer.toString();
-                buffer.reset();
-                map.add(key,value);
-            }
-            else if (buffer.length()>0)
-            {
-                map.add(buffer.toString(), "");
-            }
+            decoder.decode(in,new byte[1024]);
+            decoder.finish();
         }
     }
-    
+
     /* -------------------------------------------------------------- */
     public static void decodeUtf16To(InputStream in, MultiMap map, int maxLength) throws IOException
     {
@@ -508,6 +416,20 @@ public class UrlEncoded extends MultiMap
      */
     public static void decodeTo(InputStream in, MultiMap map, String charset, int maxLength)
     throws IOException
+    {
+        decodeTo(in,map,charset,maxLength,-1);
+    }
+
+    /* -------------------------------------------------------------- */
+    /** Decoded parameters to Map.
+     * @param in the stream containing the encoded parameters
+     * @param map MultiMap to add parameters to
+     * @param charset the charset of the parameters or null for the default
+     * @param maxLength maximum length of content to read 0r -1 for no limit
+     * @param maxKeys maximum number of keys in the map or -1 for no limit
+     */
+    public static void decodeTo(InputStream in, MultiMap map, String charset, int maxLength, int maxKeys)
+    throws IOException
     {
         //no charset present, use the configured default
         if (charset==null) 
@@ -516,21 +438,16 @@ public class UrlEncoded extends MultiMap
         }
             
             
-        if (StringUtil.__UTF8.equalsIgnoreCase(charset))
-        {
-            decodeUtf8To(in,map,maxLength);
-            return;
-        }
-        
-        if (StringUtil.__ISO_8859_1.equals(charset))
+        if (UrlEncodedDecoder.isSupported(charset))
         {
-            decode88591To(in,map,maxLength);
+            decodeTo(in,map,new UrlEncodedDecoder(map,charset,maxLength,maxKeys));
             return;
         }
 
         if (StringUtil.__UTF16.equalsIgnoreCase(charset)) // Should be all 2 byte encodings
         {
             decodeUtf16To(in,map,maxLength);
+            checkMaxKeys(map,maxKeys);
             return;
         }
         
@@ -614,8 +531,16 @@ public class UrlEncoded extends MultiMap
             }
             else if (size>0)
                 map.add(output.toString(charset),"");
+            checkMaxKeys(map,maxKeys);
         }
     }
+
+    /* -------------------------------------------------------------- */
+    private static void checkMaxKeys(MultiMap map, int maxKeys)
+    {
+        if (maxKeys>=0 && map.size()>maxKeys)
+            throw new IllegalStateException("Form too many keys");
+    }
     
     /* -------------------------------------------------------------- */
     /** Decode String with % encoding.
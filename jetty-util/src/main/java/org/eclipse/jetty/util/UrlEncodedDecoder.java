@@ -0,0 +1,289 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/* ------------------------------------------------------------ */
+/** Streaming decoder of MIME "x-www-form-urlencoded" content.
+ * <p>
+ * The content is passed to {@link #decode(byte[], int, int)} in chunks as
+ * it arrives, and each parameter is added to the {@link MultiMap} as soon
+ * as it is complete, so the content is never buffered as a whole. Only the
+ * bytes of the current key or value are held, in a buffer that is reused
+ * for every parameter.
+ * <p>
+ * Keys and values that are all ASCII are converted to Strings without
+ * going through a charset decoder, and short ASCII keys are shared from
+ * a small static cache, so that the keys of repeated forms are not
+ * allocated again. Only the UTF-8 and ISO-8859-1 charsets are supported,
+ * see {@link #isSupported(String)}.
+ * <p>
+ * The decoder enforces a limit on the total length of the content and on
+ * the number of keys in the map, either of which throws an
+ * {@link IllegalStateException} when exceeded.
+ * <p>
+ * A decoder is not thread safe and is used for a single form.
+ */
+public class UrlEncodedDecoder
+{
+    private static final int MAX_CACHED_KEY = 32;
+    private static final String[] __keys = new String[512];
+
+    private final MultiMap _map;
+    private final boolean _utf8;
+    private final int _maxLength;
+    private final int _maxKeys;
+    private byte[] _bytes = new byte[64];
+    private char[] _chars = new char[64];
+    private int _length;
+    private boolean _ascii = true;
+    private Utf8StringBuilder _utf8b;
+    private String _key;
+    private int _digits;
+    private int _digit;
+    private int _total;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param map The map to add the parameters to
+     * @param charset The charset of the content, which must be {@link #isSupported(String) supported}, or null for {@link UrlEncoded#ENCODING}
+     * @param maxLength The maximum length of the content, or -1 for no limit
+     * @param maxKeys The maximum number of keys in the map, or -1 for no limit
+     */
+    public UrlEncodedDecoder(MultiMap map, String charset, int maxLength, int maxKeys)
+    {
+        if (charset==null)
+            charset=UrlEncoded.ENCODING;
+        if (!isSupported(charset))
+            throw new IllegalArgumentException(charset);
+        _map=map;
+        _utf8=StringUtil.isUTF8(charset);
+        _maxLength=maxLength;
+        _maxKeys=maxKeys;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param charset A charset name, or null for {@link UrlEncoded#ENCODING}
+     * @return True if content of the charset can be decoded by this class
+     */
+    public static boolean isSupported(String charset)
+    {
+        if (charset==null)
+            charset=UrlEncoded.ENCODING;
+        return StringUtil.isUTF8(charset) || StringUtil.__ISO_8859_1.equalsIgnoreCase(charset);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Decode a chunk of the content. A key, value or escape sequence may be
+     * split between chunks.
+     * @param raw The buffer of the chunk
+     * @param offset The offset of the chunk within the buffer
+     * @param length The length of the chunk
+     */
+    public void decode(byte[] raw, int offset, int length)
+    {
+        _total+=length;
+        if (_maxLength>=0 && _total>_maxLength)
+            throw new IllegalStateException("Form too large");
+
+        int end=offset+length;
+        for (int i=offset;i<end;i++)
+        {
+            byte b=raw[i];
+            if (_digits>0)
+            {
+                if (_digits--==2)
+                    _digit=TypeUtil.convertHexDigit(b);
+                else
+                    append((byte)((_digit<<4)+TypeUtil.convertHexDigit(b)));
+                continue;
+            }
+
+            switch (b)
+            {
+                case '&':
+                    endParameter();
+                    break;
+
+                case '=':
+                    if (_key!=null)
+                        append(b);
+                    else
+                        _key=toKey();
+                    break;
+
+                case '+':
+                    append((byte)' ');
+                    break;
+
+                case '%':
+                    _digits=2;
+                    break;
+
+                default:
+                    // Copy the run of plain bytes in one go
+                    int run=i;
+                    while (run+1<end && isPlain(raw[run+1]))
+                        run++;
+                    append(raw,i,run-i+1);
+                    i=run;
+                    break;
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Read and decode the content of a stream until it is exhausted.
+     * @param in The stream to read
+     * @param buffer A buffer to read into
+     * @throws IOException if the stream cannot be read
+     */
+    public void decode(InputStream in, byte[] buffer) throws IOException
+    {
+        int l;
+        while ((l=in.read(buffer))>=0)
+            decode(buffer,0,l);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Add the last parameter to the map. An incomplete escape sequence at
+     * the end of the content is ignored.
+     */
+    public void finish()
+    {
+        _digits=0;
+        endParameter();
+    }
+
+    /* ------------------------------------------------------------ */
+    private static boolean isPlain(byte b)
+    {
+        return b!='&' && b!='=' && b!='+' && b!='%';
+    }
+
+    /* ------------------------------------------------------------ */
+    private void append(byte b)
+    {
+        if (_length==_bytes.length)
+            grow(1);
+        _bytes[_length++]=b;
+        if (b<0)
+            _ascii=false;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void append(byte[] raw, int offset, int length)
+    {
+        if (_length+length>_bytes.length)
+            grow(length);
+        for (int i=0;i<length;i++)
+        {
+            byte b=raw[offset+i];
+            _bytes[_length+i]=b;
+            if (b<0)
+                _ascii=false;
+        }
+        _length+=length;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void grow(int length)
+    {
+        byte[] bytes=new byte[Math.max(_bytes.length*2,_length+length)];
+        System.arraycopy(_bytes,0,bytes,0,_length);
+        _bytes=bytes;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void endParameter()
+    {
+        if (_key!=null)
+            add(_key,toValue());
+        else if (_length>0)
+            add(toKey(),"");
+        _key=null;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void add(String key, String value)
+    {
+        _map.add(key,value);
+        if (_maxKeys>=0 && _map.size()>_maxKeys)
+            throw new IllegalStateException("Form too many keys");
+    }
+
+    /* ------------------------------------------------------------ */
+    private String toKey()
+    {
+        if (!_ascii || _length>MAX_CACHED_KEY)
+            return toValue();
+
+        int hash=0;
+        for (int i=0;i<_length;i++)
+            hash=31*hash+_bytes[i];
+        int slot=(hash^(hash>>>9))&(__keys.length-1);
+
+        String key=__keys[slot];
+        if (key!=null && key.length()==_length)
+        {
+            int i=_length;
+            while (i-->0 && key.charAt(i)==_bytes[i])
+                ;
+            if (i<0)
+            {
+                _length=0;
+                return key;
+            }
+        }
+
+        key=toValue();
+        __keys[slot]=key;
+        return key;
+    }
+
+    /* ------------------------------------------------------------ */
+    private String toValue()
+    {
+        int length=_length;
+        _length=0;
+        if (length==0)
+        {
+            _ascii=true;
+            return "";
+        }
+
+        if (_ascii || !_utf8)
+        {
+            _ascii=true;
+            if (_chars.length<length)
+                _chars=new char[Math.max(_chars.length*2,length)];
+            for (int i=0;i<length;i++)
+                _chars[i]=(char)(0xff&_bytes[i]);
+            return new String(_chars,0,length);
+        }
+
+        _ascii=true;
+        if (_utf8b==null)
+            _utf8b=new Utf8StringBuilder(length);
+        _utf8b.reset();
+        _utf8b.append(_bytes,0,length);
+        return _utf8b.toString();
+    }
+}
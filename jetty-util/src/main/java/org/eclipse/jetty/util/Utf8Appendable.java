@@ -73,6 +73,7 @@ public abstract class Utf8Appendable
     };
 
     private int _codep;
+    private char[] _chars;
 
     public Utf8Appendable(Appendable appendable)
     {
@@ -102,9 +103,7 @@ public abstract class Utf8Appendable
     {
         try
         {
-            int end = offset + length;
-            for (int i = offset; i < end; i++)
-                appendByte(b[i]);
+            appendBytes(b,offset,offset + length);
         }
         catch (IOException e)
         {
@@ -116,12 +115,26 @@ public abstract class Utf8Appendable
     {
         try
         {
+            // A chunk of bytes adds at most one more char than it has bytes,
+            // when it completes a surrogate pair started before it, so the
+            // chunks leave two chars of headroom below the limit
             int end = offset + length;
-            for (int i = offset; i < end; i++)
+            while (offset < end)
+            {
+                int room = maxChars - length() - 1;
+                if (room <= 0)
+                    break;
+                int chunk = Math.min(room,end - offset);
+                appendBytes(b,offset,offset + chunk);
+                offset += chunk;
+            }
+
+            // Check the limit before each of the bytes near it
+            while (offset < end)
             {
                 if (length() > maxChars)
                     return false;
-                appendByte(b[i]);
+                appendByte(b[offset++]);
             }
             return true;
         }
@@ -131,6 +144,70 @@ public abstract class Utf8Appendable
         }
     }
 
+    /**
+     * Decode the bytes into a scratch array of chars, which is appended in bulk.
+     * ASCII bytes between sequences are copied without entering the DFA.
+     */
+    private void appendBytes(byte[] b, int offset, int end) throws IOException
+    {
+        if (_chars == null)
+            _chars = new char[Math.min(Math.max(end - offset,16),256)];
+        char[] chars = _chars;
+        int state = _state;
+        int codep = _codep;
+
+        // A segment of the bytes decodes to at most one more char than it has bytes
+        while (offset < end)
+        {
+            int segment = Math.min(end,offset + chars.length - 1);
+            int n = 0;
+            for (int i = offset; i < segment; i++)
+            {
+                byte c = b[i];
+                if (c >= 0 && state == UTF8_ACCEPT)
+                {
+                    chars[n++] = (char)c;
+                    continue;
+                }
+
+                int v = c & 0xFF;
+                int type = BYTE_TABLE[v];
+                codep = state == UTF8_ACCEPT ? (0xFF >> type) & v : (v & 0x3F) | (codep << 6);
+                state = TRANS_TABLE[state + type];
+
+                if (state == UTF8_ACCEPT)
+                {
+                    if (codep < Character.MIN_HIGH_SURROGATE)
+                        chars[n++] = (char)codep;
+                    else
+                        n += Character.toChars(codep,chars,n);
+                }
+                else if (state == UTF8_REJECT)
+                {
+                    _state = UTF8_ACCEPT;
+                    _codep = codep;
+                    chars[n++] = REPLACEMENT;
+                    appendChars(chars,0,n);
+                    throw new NotUtf8Exception();
+                }
+            }
+            appendChars(chars,0,n);
+            offset = segment;
+        }
+
+        _state = state;
+        _codep = codep;
+    }
+
+    /**
+     * Append decoded chars. Subclasses may override to append them in bulk.
+     */
+    protected void appendChars(char[] chars, int offset, int length) throws IOException
+    {
+        for (int i = offset; i < offset + length; i++)
+            _appendable.append(chars[i]);
+    }
+
     protected void appendByte(byte b) throws IOException
     {
 
@@ -55,6 +55,12 @@ public class Utf8StringBuffer extends Utf8Appendable
         _buffer.setLength(0);
     }
 
+    @Override
+    protected void appendChars(char[] chars, int offset, int length)
+    {
+        _buffer.append(chars,offset,length);
+    }
+
     public StringBuffer getStringBuffer()
     {
         checkState();
@@ -56,6 +56,12 @@ public class Utf8StringBuilder extends Utf8Appendable
         _buffer.setLength(0);
     }
 
+    @Override
+    protected void appendChars(char[] chars, int offset, int length)
+    {
+        _buffer.append(chars,offset,length);
+    }
+
     public StringBuilder getStringBuilder()
     {
         checkState();
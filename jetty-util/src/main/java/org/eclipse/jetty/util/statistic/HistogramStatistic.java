@@ -0,0 +1,173 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/* ------------------------------------------------------------ */
+/**
+ * HistogramStatistic
+ * <p>
+ * A {@link SampleStatistic} that also counts the samples in buckets
+ * of exponentially increasing size, so that the distribution of the
+ * samples can be estimated without keeping them.
+ * <p>
+ * Bucket 0 counts the samples less than 1 and bucket <i>n</i> counts the
+ * samples from 2<sup>n-1</sup> to 2<sup>n</sup>-1. The last bucket also
+ * counts all larger samples. Updates are lock free.
+ */
+public class HistogramStatistic extends SampleStatistic
+{
+    public static final int DEFAULT_BUCKETS=32;
+
+    private final AtomicLongArray _buckets;
+
+    /* ------------------------------------------------------------ */
+    public HistogramStatistic()
+    {
+        this(DEFAULT_BUCKETS);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param buckets The number of buckets, between 2 and 64
+     */
+    public HistogramStatistic(int buckets)
+    {
+        if (buckets<2 || buckets>64)
+            throw new IllegalArgumentException("buckets="+buckets);
+        _buckets=new AtomicLongArray(buckets);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void reset()
+    {
+        super.reset();
+        for (int i=0;i<_buckets.length();i++)
+            _buckets.set(i,0);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void set(final long sample)
+    {
+        super.set(sample);
+        _buckets.incrementAndGet(bucketOf(sample));
+    }
+
+    /* ------------------------------------------------------------ */
+    private int bucketOf(long sample)
+    {
+        if (sample<=0)
+            return 0;
+        int bucket=64-Long.numberOfLeadingZeros(sample);
+        return bucket<_buckets.length()?bucket:_buckets.length()-1;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of buckets
+     */
+    public int getBuckets()
+    {
+        return _buckets.length();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param bucket the bucket index
+     * @return the number of samples counted in the bucket
+     */
+    public long getBucketCount(int bucket)
+    {
+        return _buckets.get(bucket);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param bucket the bucket index
+     * @return the largest sample counted in the bucket, or {@link Long#MAX_VALUE} for the last bucket
+     */
+    public long getBucketLimit(int bucket)
+    {
+        if (bucket==_buckets.length()-1)
+            return Long.MAX_VALUE;
+        return (1L<<bucket)-1;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param percentile the percentile between 0.0 and 100.0
+     * @return an upper bound of the given percentile of the samples, which
+     * is the limit of the bucket that contains it (or the max sample if that is smaller).
+     */
+    public long getPercentile(double percentile)
+    {
+        long[] counts=new long[_buckets.length()];
+        long count=0;
+        for (int i=0;i<counts.length;i++)
+        {
+            counts[i]=_buckets.get(i);
+            count+=counts[i];
+        }
+        if (count==0)
+            return 0;
+
+        long rank=(long)Math.ceil(count*percentile/100.0);
+        if (rank<1)
+            rank=1;
+        long seen=0;
+        int bucket=0;
+        for (;bucket<counts.length-1;bucket++)
+        {
+            seen+=counts[bucket];
+            if (seen>=rank)
+                break;
+        }
+        return Math.min(getBucketLimit(bucket),getMax());
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the non empty buckets as a string of <code>&lt;=limit:count</code> pairs
+     */
+    public String getHistogram()
+    {
+        StringBuilder b=new StringBuilder();
+        for (int i=0;i<_buckets.length();i++)
+        {
+            long count=_buckets.get(i);
+            if (count==0)
+                continue;
+            if (b.length()>0)
+                b.append(' ');
+            if (i==_buckets.length()-1)
+                b.append('>').append(getBucketLimit(i-1));
+            else
+                b.append("<=").append(getBucketLimit(i));
+            b.append(':').append(count);
+        }
+        return b.toString();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("count=%d,mean=%.1f,max=%d,p50=%d,p99=%d,[%s]",
+                getCount(),getCount()==0?0.0:getMean(),getMax(),getPercentile(50),getPercentile(99),getHistogram());
+    }
+}
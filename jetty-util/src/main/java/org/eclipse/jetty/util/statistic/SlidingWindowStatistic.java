@@ -0,0 +1,159 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/* ------------------------------------------------------------ */
+/**
+ * SlidingWindowStatistic
+ * <p>
+ * The sum of the values added during a sliding window of time. The window
+ * is divided into buckets, each of which sums the values added during its
+ * slice of the window and is reused when the window has slid past it, so
+ * the sum is that of the last <i>window</i> ms to within the length of one
+ * bucket. A value that accrued over an interval of time may be spread
+ * over the buckets that the interval spans. Updates are lock free; a value
+ * added while its bucket is being reused may be lost.
+ */
+public class SlidingWindowStatistic
+{
+    private final long _windowMs;
+    private final long _bucketMs;
+    private final AtomicLongArray _sums;
+    private final AtomicLongArray _epochs;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param windowMs the length of the window in ms
+     * @param buckets the number of buckets the window is divided into
+     */
+    public SlidingWindowStatistic(long windowMs, int buckets)
+    {
+        if (buckets<1 || windowMs<buckets)
+            throw new IllegalArgumentException("window="+windowMs+",buckets="+buckets);
+        _windowMs=windowMs;
+        _bucketMs=windowMs/buckets;
+        _sums=new AtomicLongArray(buckets);
+        _epochs=new AtomicLongArray(buckets);
+    }
+
+    /* ------------------------------------------------------------ */
+    public void reset()
+    {
+        for (int i=0;i<_sums.length();i++)
+        {
+            _epochs.set(i,0);
+            _sums.set(i,0);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param value the value to add to the bucket of the current time
+     */
+    public void add(long value)
+    {
+        add(System.currentTimeMillis(),value);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param now the current time in ms
+     * @param value the value to add to the bucket of the time
+     */
+    public void add(long now, long value)
+    {
+        long epoch=now/_bucketMs;
+        int bucket=(int)(epoch%_sums.length());
+        long last=_epochs.get(bucket);
+        if (last>epoch)
+            return;
+        if (last!=epoch && _epochs.compareAndSet(bucket,last,epoch))
+            _sums.set(bucket,value);
+        else
+            _sums.addAndGet(bucket,value);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Spread a value that accrued over an interval of time over the
+     * buckets of the interval, in proportion to the time the interval
+     * spends in each. The part of the value that accrued before the
+     * window is dropped.
+     * @param from the time in ms the interval started
+     * @param now the current time in ms, when the interval ended
+     * @param value the value that accrued during the interval
+     */
+    public void add(long from, long now, long value)
+    {
+        long duration=now-from;
+        if (duration<=0)
+        {
+            add(now,value);
+            return;
+        }
+
+        long start=Math.max(from,(now/_bucketMs-_sums.length()+1)*_bucketMs);
+        while (start<now)
+        {
+            long end=Math.min(now,(start/_bucketMs+1)*_bucketMs);
+            add(start,value*(end-start)/duration);
+            start=end;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the sum of the values added during the window
+     */
+    public long getSum()
+    {
+        return getSum(System.currentTimeMillis());
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param now the current time in ms
+     * @return the sum of the values added during the window ending now
+     */
+    public long getSum(long now)
+    {
+        long epoch=now/_bucketMs;
+        long sum=0;
+        for (int i=0;i<_sums.length();i++)
+        {
+            if (epoch-_epochs.get(i)<_sums.length())
+                sum+=_sums.get(i);
+        }
+        return sum;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the length of the window in ms
+     */
+    public long getWindowMs()
+    {
+        return _windowMs;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("sum=%d/%dms",getSum(),_windowMs);
+    }
+}
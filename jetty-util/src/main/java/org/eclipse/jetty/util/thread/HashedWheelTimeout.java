@@ -0,0 +1,319 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.util.thread;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+
+/* ------------------------------------------------------------ */
+/** Hashed timing wheel timeout queue.
+ * <p>
+ * A {@link Timeout} with O(1) schedule, reschedule and cancel, regardless of the
+ * number or the delays of the scheduled tasks. Tasks are hashed by their expiry time
+ * into a wheel of buckets that each cover a tick of time. As time passes, the buckets of
+ * the ticks that have elapsed are scanned and the tasks found to be expired are
+ * moved to a list from which they are returned by {@link #expired()} or {@link #tick()}.
+ * Tasks that expire more than one revolution of the wheel into the future share a
+ * bucket with nearer tasks and are skipped until their revolution comes round.
+ * <p>
+ * Tasks are never expired early, but may be expired up to one tick late.
+ * Changing the duration rehashes all scheduled tasks.
+ */
+public class HashedWheelTimeout extends Timeout
+{
+    private static final Logger LOG = Log.getLogger(HashedWheelTimeout.class);
+
+    private final long _tick;
+    private final Task[] _wheel;
+    private final int _mask;
+    private final Task _due = new Task();
+    private long _cursor;
+
+    /* ------------------------------------------------------------ */
+    public HashedWheelTimeout()
+    {
+        this(new Object());
+    }
+
+    /* ------------------------------------------------------------ */
+    public HashedWheelTimeout(Object lock)
+    {
+        this(lock,10,1024);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param lock The lock to synchronize on
+     * @param tickMs The period of time covered by each bucket of the wheel
+     * @param wheelSize The number of buckets of the wheel, rounded up to a power of 2
+     */
+    public HashedWheelTimeout(Object lock, long tickMs, int wheelSize)
+    {
+        super(lock);
+        if (tickMs<=0)
+            throw new IllegalArgumentException("tickMs<=0");
+        _tick=tickMs;
+        int size=1;
+        while (size<wheelSize)
+            size<<=1;
+        _wheel=new Task[size];
+        _mask=size-1;
+        for (int i=0;i<size;i++)
+            _wheel[i]=new Task();
+        _due._timeout=this;
+        _cursor=getNow()/_tick+1;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The period of time in ms covered by each bucket of the wheel
+     */
+    public long getTickMs()
+    {
+        return _tick;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of buckets of the wheel
+     */
+    public int getWheelSize()
+    {
+        return _wheel.length;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void setDuration(long duration)
+    {
+        synchronized (_lock)
+        {
+            super.setDuration(duration);
+
+            // rehash all the scheduled tasks, as their expiry times have changed
+            Task rehash=new Task();
+            for (Task bucket : _wheel)
+            {
+                while (bucket._next!=bucket)
+                {
+                    Task task=bucket._next;
+                    task.unlink();
+                    rehash._prev.link(task);
+                }
+            }
+            while (rehash._next!=rehash)
+            {
+                Task task=rehash._next;
+                task.unlink();
+                hash(task);
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public Task expired()
+    {
+        synchronized (_lock)
+        {
+            if (_due._next==_due)
+                advance();
+
+            if (_due._next!=_due)
+            {
+                Task task = _due._next;
+                task.unlink();
+                task._expired=true;
+                return task;
+            }
+            return null;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void tick()
+    {
+        while (true)
+        {
+            try
+            {
+                Task task;
+                synchronized (_lock)
+                {
+                    task=expired();
+                    if (task==null)
+                        break;
+                    task.expire();
+                }
+
+                task.expired();
+            }
+            catch(Throwable th)
+            {
+                LOG.warn(Log.EXCEPTION,th);
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void schedule(Task task,long delay)
+    {
+        synchronized (_lock)
+        {
+            if (task._timestamp!=0)
+            {
+                task.unlink();
+                task._timestamp=0;
+            }
+            task._timeout=this;
+            task._expired=false;
+            task._delay=delay;
+            task._timestamp = getNow()+delay;
+            hash(task);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Link a task into the bucket of the tick at the end of which it expires,
+     * or into the next bucket to be scanned if that tick has already been scanned.
+     */
+    private void hash(Task task)
+    {
+        long tick=(task._timestamp+getDuration()+_tick-1)/_tick;
+        long cursor=cursor();
+        if (tick<cursor)
+            tick=cursor;
+        Task bucket=_wheel[(int)(tick&_mask)];
+        bucket._prev.link(task);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The next tick to be scanned, adjusted if time has gone backwards.
+     */
+    private long cursor()
+    {
+        long next=getNow()/_tick+1;
+        if (_cursor>next)
+            _cursor=next;
+        return _cursor;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Scan the buckets of the ticks that have elapsed since the last scan
+     * and move the expired tasks to the due list.
+     */
+    private void advance()
+    {
+        final long now=getNow();
+        final long expiry=now-getDuration();
+        final long now_tick=now/_tick;
+        long cursor=cursor();
+        if (cursor>now_tick)
+            return;
+
+        long ticks=Math.min(now_tick-cursor+1,_wheel.length);
+        for (long t=0;t<ticks;t++)
+        {
+            Task bucket=_wheel[(int)((cursor+t)&_mask)];
+            Task task=bucket._next;
+            while (task!=bucket)
+            {
+                Task next=task._next;
+                if (task._timestamp<=expiry)
+                {
+                    task.unlink();
+                    _due._prev.link(task);
+                }
+                task=next;
+            }
+        }
+        _cursor=now_tick+1;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void cancelAll()
+    {
+        synchronized (_lock)
+        {
+            for (Task bucket : _wheel)
+                bucket._next=bucket._prev=bucket;
+            _due._next=_due._prev=_due;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public boolean isEmpty()
+    {
+        synchronized (_lock)
+        {
+            if (_due._next!=_due)
+                return false;
+            for (Task bucket : _wheel)
+                if (bucket._next!=bucket)
+                    return false;
+            return true;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The time until the end of the tick of the next non empty bucket, which
+     * may be earlier than the next expiry if that bucket only holds tasks of a later revolution.
+     */
+    @Override
+    public long getTimeToNext()
+    {
+        synchronized (_lock)
+        {
+            if (_due._next!=_due)
+                return 0;
+
+            long cursor=cursor();
+            for (int i=0;i<_wheel.length;i++)
+            {
+                Task bucket=_wheel[(int)((cursor+i)&_mask)];
+                if (bucket._next!=bucket)
+                {
+                    long to_next=(cursor+i)*_tick-getNow();
+                    return to_next<0?0:to_next;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        int scheduled=0;
+        synchronized (_lock)
+        {
+            for (Task bucket : _wheel)
+                for (Task task=bucket._next;task!=bucket;task=task._next)
+                    scheduled++;
+            for (Task task=_due._next;task!=_due;task=task._next)
+                scheduled++;
+        }
+        return String.format("%s@%x{tick=%d,wheel=%d,scheduled=%d}",getClass().getSimpleName(),hashCode(),_tick,_wheel.length,scheduled);
+    }
+}
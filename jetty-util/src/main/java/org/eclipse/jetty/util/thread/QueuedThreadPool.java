@@ -34,8 +34,22 @@ import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+import org.eclipse.jetty.util.statistic.SlidingWindowStatistic;
 import org.eclipse.jetty.util.thread.ThreadPool.SizedThreadPool;
 
+/* ------------------------------------------------------------ */
+/**
+ * A pool of threads that run jobs taken from a {@link BlockingQueue}.
+ * <p>
+ * When statistics are turned on with {@link #setStatsOn(boolean)}, each
+ * dispatched job is queued together with the time it was dispatched, so
+ * that the time jobs wait in the queue is recorded in a histogram. The time
+ * threads are busy, rather than idle waiting for a job, is summed as it
+ * passes over a sliding window of {@link #getStatsWindowMs()} to give the
+ * utilisation of the pool, so jobs that never complete are counted. The number
+ * of rejected jobs and the maximum size of the queue are always counted.
+ */
 public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPool, Executor, Dumpable
 {
     private static final Logger LOG = Log.getLogger(QueuedThreadPool.class);
@@ -55,6 +69,12 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
     private boolean _daemon=false;
     private int _maxStopTime=100;
     private boolean _detailedDump=false;
+    private final AtomicLong _statsStartedAt = new AtomicLong(-1L);
+    private final AtomicLong _jobsRejected = new AtomicLong();
+    private final AtomicInteger _queueSizeMax = new AtomicInteger();
+    private final HistogramStatistic _queueWaitTime = new HistogramStatistic();
+    private volatile SlidingWindowStatistic _busyTime = new SlidingWindowStatistic(10000,10);
+    private final AtomicLong _busyAccruedAt = new AtomicLong(System.nanoTime());
 
     /* ------------------------------------------------------------------- */
     /** Construct
@@ -75,6 +95,9 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
 
     /* ------------------------------------------------------------------- */
     /** Construct
+     * @param jobQ The queue of jobs, for example a {@link org.eclipse.jetty.util.ConcurrentArrayBlockingQueue}
+     * to avoid contention on the locks of the default {@link BlockingArrayQueue} when many threads
+     * dispatch and take jobs.
      */
     public QueuedThreadPool(BlockingQueue<Runnable> jobQ)
     {
@@ -351,8 +374,13 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
         {
             final int jobQ = _jobs.size();
             final int idle = getIdleThreads();
-            if(_jobs.offer(job))
+            if(_jobs.offer(_statsStartedAt.get()==-1?job:new QueuedJob(job)))
             {
+                // Raise the high water mark of the queue
+                int max=_queueSizeMax.get();
+                while (jobQ>=max && !_queueSizeMax.compareAndSet(max,jobQ+1))
+                    max=_queueSizeMax.get();
+
                 // If we had no idle threads or the jobQ is greater than the idle threads
                 if (idle==0 || jobQ>idle)
                 {
@@ -363,6 +391,7 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
                 return true;
             }
         }
+        _jobsRejected.incrementAndGet();
         return false;
     }
 
@@ -416,9 +445,188 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
         return _threadsStarted.get()==_maxThreads && _jobs.size()>=_threadsIdle.get();
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Reset statistics.
+     */
+    public void statsReset()
+    {
+        long start=_statsStartedAt.get();
+        if (start!=-1)
+            _statsStartedAt.compareAndSet(start,System.currentTimeMillis());
+
+        _jobsRejected.set(0);
+        _queueSizeMax.set(_jobs==null?0:_jobs.size());
+        _queueWaitTime.reset();
+        _busyTime.reset();
+        _busyAccruedAt.set(System.nanoTime());
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Turn the collection of queue wait and busy times on or off. While
+     * on, every dispatched job is wrapped to carry the time it was queued.
+     * @param on True to collect statistics
+     */
+    public void setStatsOn(boolean on)
+    {
+        if (on && _statsStartedAt.get() != -1)
+            return;
+
+        LOG.debug("Statistics on = " + on + " for " + this);
+
+        statsReset();
+        _statsStartedAt.set(on?System.currentTimeMillis():-1);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return True if statistics collection is turned on.
+     */
+    public boolean getStatsOn()
+    {
+        return _statsStartedAt.get() != -1;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return Time in ms that statistics have been collected for.
+     */
+    public long getStatsOnMs()
+    {
+        long start = _statsStartedAt.get();
+
+        return (start != -1)?(System.currentTimeMillis() - start):0;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The length in ms of the window over which busy time and utilisation are measured
+     */
+    public long getStatsWindowMs()
+    {
+        return _busyTime.getWindowMs();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the length of the window over which busy time and utilisation
+     * are measured, which is divided into 10 buckets. The busy time
+     * already measured is discarded.
+     * @param windowMs The length of the window in ms
+     */
+    public void setStatsWindowMs(long windowMs)
+    {
+        _busyTime=new SlidingWindowStatistic(windowMs,10);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The number of jobs rejected by {@link #dispatch(Runnable)} since statsReset() called.
+     */
+    public long getJobsRejected()
+    {
+        return _jobsRejected.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum number of queued jobs since statsReset() called.
+     */
+    public int getQueueSizeMax()
+    {
+        return _queueSizeMax.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The histogram of the time in &micro;s that jobs waited in the queue since statsReset() called. Undefined if setStatsOn(false).
+     */
+    public HistogramStatistic getQueueWaitTime()
+    {
+        return _queueWaitTime;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The maximum time in &micro;s that a job waited in the queue. Undefined if setStatsOn(false).
+     */
+    public long getQueueWaitTimeMax()
+    {
+        return _queueWaitTime.getMax();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The mean time in &micro;s that jobs waited in the queue. Undefined if setStatsOn(false).
+     */
+    public double getQueueWaitTimeMean()
+    {
+        return _queueWaitTime.getCount()==0?0.0:_queueWaitTime.getMean();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return An upper bound of the 99th percentile of the time in &micro;s that jobs waited in the queue. Undefined if setStatsOn(false).
+     */
+    public long getQueueWaitTime99()
+    {
+        return _queueWaitTime.getPercentile(99);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The time in ms that threads spent running jobs during the last
+     * {@link #getStatsWindowMs()}, including the time so far of jobs still running. Undefined if setStatsOn(false).
+     */
+    public long getBusyTimeMs()
+    {
+        accrueBusyTime();
+        return _busyTime.getSum()/1000;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return The fraction between 0.0 and 1.0 of the time that {@link #getMaxThreads()} threads
+     * could have spent running jobs during the last {@link #getStatsWindowMs()}, that they did.
+     * Undefined if setStatsOn(false).
+     */
+    public double getUtilization()
+    {
+        accrueBusyTime();
+        SlidingWindowStatistic busyTime=_busyTime;
+        long window=Math.min(busyTime.getWindowMs(),getStatsOnMs());
+        if (window<=0)
+            return 0.0;
+        double utilization=busyTime.getSum()/(window*1000.0*_maxThreads);
+        return utilization>1.0?1.0:utilization;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Add the time the busy threads spent since the last call to the busy
+     * time, spread over the buckets it spans. Called before the number of
+     * busy threads changes and before the busy time is read.
+     */
+    private void accrueBusyTime()
+    {
+        if (_statsStartedAt.get()==-1)
+            return;
+
+        long now=System.nanoTime();
+        long elapsed=now-_busyAccruedAt.getAndSet(now);
+        int busy=_threadsStarted.get()-_threadsIdle.get();
+        if (busy>0 && elapsed>0)
+        {
+            long nowMs=System.currentTimeMillis();
+            _busyTime.add(nowMs-elapsed/1000000,nowMs,busy*elapsed/1000);
+        }
+    }
+
     /* ------------------------------------------------------------ */
     private boolean startThread(int threads)
     {
+        accrueBusyTime();
         final int next=threads+1;
         if (!_threadsStarted.compareAndSet(threads,next))
             return false;
@@ -498,6 +706,12 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
         }
 
         out.append(String.valueOf(this)).append("\n");
+        dump.add(0,"queueSizeMax="+getQueueSizeMax()+",rejected="+getJobsRejected());
+        if (getStatsOn())
+        {
+            dump.add(0,String.format("busy=%dms/%dms,utilization=%.2f",getBusyTimeMs(),getStatsWindowMs(),getUtilization()));
+            dump.add(0,"queueWait(us) "+_queueWaitTime);
+        }
         AggregateLifeCycle.dump(out,indent,dump);
 
     }
@@ -530,13 +744,14 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
                     // Job loop
                     while (job!=null && isRunning())
                     {
-                        runJob(job);
+                        runQueuedJob(job);
                         job=_jobs.poll();
                     }
 
                     // Idle loop
                     try
                     {
+                        accrueBusyTime();
                         _threadsIdle.incrementAndGet();
 
                         while (isRunning() && job==null)
@@ -565,6 +780,7 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
                     }
                     finally
                     {
+                        accrueBusyTime();
                         _threadsIdle.decrementAndGet();
                     }
                 }
@@ -580,12 +796,32 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
             finally
             {
                 if (!shrink)
+                {
+                    accrueBusyTime();
                     _threadsStarted.decrementAndGet();
+                }
                 _threads.remove(Thread.currentThread());
             }
         }
     };
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Run a job taken from the queue, recording the time it waited in the
+     * queue if it was queued with statistics on.
+     */
+    private void runQueuedJob(Runnable job)
+    {
+        if (job instanceof QueuedJob)
+        {
+            QueuedJob queued=(QueuedJob)job;
+            _queueWaitTime.set((System.nanoTime()-queued._queued)/1000);
+            runJob(queued._job);
+        }
+        else
+            runJob(job);
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * <p>Runs the given job in the {@link Thread#currentThread() current thread}.</p>
@@ -600,13 +836,39 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
 
     /* ------------------------------------------------------------ */
     /**
-     * @return the job queue
+     * @return the job queue, which holds wrapped jobs while statistics are on
      */
     protected BlockingQueue<Runnable> getQueue()
     {
         return _jobs;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * A job queued with the time it was dispatched.
+     */
+    private static class QueuedJob implements Runnable
+    {
+        final Runnable _job;
+        final long _queued=System.nanoTime();
+
+        QueuedJob(Runnable job)
+        {
+            _job=job;
+        }
+
+        public void run()
+        {
+            _job.run();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.valueOf(_job);
+        }
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * @param id The thread ID to stop.
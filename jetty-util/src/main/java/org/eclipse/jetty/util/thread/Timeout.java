@@ -29,7 +29,7 @@ import org.eclipse.jetty.util.log.Logger;
 public class Timeout
 {
     private static final Logger LOG = Log.getLogger(Timeout.class);
-    private Object _lock;
+    final Object _lock;
     private long _duration;
     private volatile long _now=System.currentTimeMillis();
     private Task _head=new Task();
@@ -280,7 +280,7 @@ public class Timeout
         }
 
         /* ------------------------------------------------------------ */
-        private void unlink()
+        void unlink()
         {
             _next._prev=_prev;
             _prev._next=_next;
@@ -289,7 +289,7 @@ public class Timeout
         }
 
         /* ------------------------------------------------------------ */
-        private void link(Task task)
+        void link(Task task)
         {
             Task next_next = _next;
             _next._prev=task;
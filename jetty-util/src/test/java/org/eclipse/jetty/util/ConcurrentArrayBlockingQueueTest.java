@@ -0,0 +1,283 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.BitSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.toolchain.test.Stress;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Test;
+
+public class ConcurrentArrayBlockingQueueTest
+{
+    @Test
+    public void testGrow() throws Exception
+    {
+        ConcurrentArrayBlockingQueue<Integer> queue = new ConcurrentArrayBlockingQueue<Integer>(3,2);
+
+        int next=0;
+        for (int round=0;round<10;round++)
+        {
+            for (int i=0;i<round;i++)
+                assertTrue(queue.offer(next+i));
+            assertEquals(round,queue.size());
+
+            StringBuilder expected=new StringBuilder();
+            for (int i=0;i<round;i++)
+                expected.append(i==0?"":", ").append(next+i);
+            assertEquals("["+expected+"]",queue.toString());
+            if (round>0)
+                assertEquals(next,queue.peek().intValue());
+
+            for (int i=0;i<round;i++)
+                assertEquals(next+i,queue.poll().intValue());
+            assertNull(queue.poll());
+            assertTrue(queue.isEmpty());
+            next+=round;
+        }
+    }
+
+    @Test
+    public void testLimit() throws Exception
+    {
+        ConcurrentArrayBlockingQueue<String> queue = new ConcurrentArrayBlockingQueue<String>(2,2,3);
+        assertTrue(queue.offer("one"));
+        assertTrue(queue.offer("two"));
+        assertTrue(queue.offer("three"));
+        assertFalse(queue.offer("four"));
+        assertEquals(0,queue.remainingCapacity());
+
+        assertEquals("one",queue.poll());
+        assertTrue(queue.offer("four"));
+        assertEquals("two",queue.poll());
+        assertEquals("three",queue.poll());
+        assertEquals("four",queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testTimedOffer() throws Exception
+    {
+        final ConcurrentArrayBlockingQueue<String> queue = new ConcurrentArrayBlockingQueue<String>(2);
+        assertTrue(queue.offer("one",10,TimeUnit.MILLISECONDS));
+        assertTrue(queue.offer("two",10,TimeUnit.MILLISECONDS));
+
+        long start=System.nanoTime();
+        assertFalse(queue.offer("three",100,TimeUnit.MILLISECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start)>=90);
+
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(100);
+                    queue.poll();
+                }
+                catch(InterruptedException e)
+                {
+                }
+            }
+        };
+        thread.start();
+        assertTrue(queue.offer("three",10,TimeUnit.SECONDS));
+        thread.join();
+
+        assertEquals("two",queue.poll());
+        assertEquals("three",queue.poll());
+        assertNull(queue.poll());
+
+        ConcurrentArrayBlockingQueue<String> unlimited = new ConcurrentArrayBlockingQueue<String>(1,1);
+        for (int i=0;i<10;i++)
+            assertTrue(unlimited.offer("item"+i,0,TimeUnit.MILLISECONDS));
+        assertEquals(10,unlimited.size());
+    }
+
+    @Test
+    public void testTake() throws Exception
+    {
+        final String[] data=new String[4];
+        final AtomicReference<Throwable> failure=new AtomicReference<Throwable>();
+        final ConcurrentArrayBlockingQueue<String> queue = new ConcurrentArrayBlockingQueue<String>();
+
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    data[0]=queue.take();
+                    data[1]=queue.take();
+                    Thread.sleep(500);
+                    data[2]=queue.take();
+                    data[3]=queue.poll(100,TimeUnit.MILLISECONDS);
+                }
+                catch(Throwable th)
+                {
+                    failure.set(th);
+                }
+            }
+        };
+        thread.start();
+
+        Thread.sleep(500);
+        queue.offer("zero");
+        queue.offer("one");
+        queue.offer("two");
+        thread.join();
+
+        assertNull(failure.get());
+        assertEquals("zero",data[0]);
+        assertEquals("one",data[1]);
+        assertEquals("two",data[2]);
+        assertEquals(null,data[3]);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception
+    {
+        final int threads=8;
+        final int loops=Stress.isEnabled()?1000000:20000;
+        final ConcurrentArrayBlockingQueue<Integer> queue = new ConcurrentArrayBlockingQueue<Integer>(16,16);
+        queue.setSpins(16);
+        final BitSet consumed=new BitSet(threads*loops);
+        final AtomicInteger duplicates=new AtomicInteger();
+        final AtomicReference<Throwable> failure=new AtomicReference<Throwable>();
+        final CountDownLatch latch=new CountDownLatch(threads*2);
+
+        for (int t=0;t<threads;t++)
+        {
+            final int producer=t;
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i=0;i<loops;i++)
+                        queue.offer(producer*loops+i);
+                    latch.countDown();
+                }
+            }.start();
+
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Integer item;
+                        while ((item=queue.poll(1,TimeUnit.SECONDS))!=null)
+                        {
+                            synchronized (consumed)
+                            {
+                                if (consumed.get(item))
+                                    duplicates.incrementAndGet();
+                                consumed.set(item);
+                            }
+                        }
+                    }
+                    catch(Throwable th)
+                    {
+                        failure.set(th);
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        assertTrue(latch.await(60,TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertEquals(0,duplicates.get());
+        assertEquals(threads*loops,consumed.cardinality());
+        assertEquals(0,queue.size());
+    }
+
+    @Test
+    public void testThroughput() throws Exception
+    {
+        assumeTrue(Stress.isEnabled());
+
+        int jobs=2000000;
+        for (int r=0;r<2;r++)
+        {
+            long blocking=dispatch(new BlockingArrayQueue<Runnable>(8,8),jobs);
+            long concurrent=dispatch(new ConcurrentArrayBlockingQueue<Runnable>(8,8),jobs);
+            System.err.printf("%d jobs: BlockingArrayQueue %dms, ConcurrentArrayBlockingQueue %dms%n",
+                    jobs,blocking/1000000,concurrent/1000000);
+        }
+    }
+
+    private long dispatch(BlockingQueue<Runnable> queue, final int jobs) throws Exception
+    {
+        final int dispatchers=4;
+        final QueuedThreadPool pool=new QueuedThreadPool(queue);
+        pool.setMinThreads(16);
+        pool.setMaxThreads(16);
+        pool.start();
+        try
+        {
+            final CountDownLatch done=new CountDownLatch(jobs);
+            final Runnable job=new Runnable()
+            {
+                public void run()
+                {
+                    done.countDown();
+                }
+            };
+
+            long start=System.nanoTime();
+            Thread[] threads=new Thread[dispatchers];
+            for (int t=0;t<dispatchers;t++)
+            {
+                threads[t]=new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for (int i=0;i<jobs/dispatchers;i++)
+                            while (!pool.dispatch(job))
+                                Thread.yield();
+                    }
+                };
+                threads[t].start();
+            }
+            for (Thread thread : threads)
+                thread.join();
+            assertTrue(done.await(60,TimeUnit.SECONDS));
+            return System.nanoTime()-start;
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+}
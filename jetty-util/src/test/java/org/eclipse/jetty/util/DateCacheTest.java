@@ -16,9 +16,15 @@ package org.eclipse.jetty.util;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.jetty.toolchain.test.Stress;
 import org.junit.Test;
 
 
@@ -77,4 +83,52 @@ public class DateCacheTest
             assertTrue(s1==s2 || s2==s3);
     }
 
+    /* ------------------------------------------------------------ */
+    @Test
+    public void testConcurrentFormat() throws Exception
+    {
+        final String format="EEE, dd MMM yyyy HH:mm:ss 'GMT'";
+        final DateCache dc = new DateCache(format,Locale.US);
+        dc.setTimeZone(TimeZone.getTimeZone("GMT"));
+        final int threads=32;
+        final int loops=Stress.isEnabled()?1000000:20000;
+        final long base=System.currentTimeMillis();
+        final AtomicInteger failures=new AtomicInteger();
+        final CountDownLatch latch=new CountDownLatch(threads);
+
+        for (int t=0;t<threads;t++)
+        {
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        SimpleDateFormat expected = new SimpleDateFormat(format,Locale.US);
+                        expected.setTimeZone(TimeZone.getTimeZone("GMT"));
+                        // Step through the seconds up to now, so that the threads race to update the cached second
+                        for (int i=0;i<loops;i++)
+                        {
+                            long date=base-(loops-i)*37L;
+                            if (!expected.format(new Date(date)).equals(dc.format(date)))
+                                failures.incrementAndGet();
+                        }
+                    }
+                    catch (Throwable th)
+                    {
+                        failures.incrementAndGet();
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }
+            }.start();
+        }
+        assertTrue(latch.await(60,TimeUnit.SECONDS));
+        assertEquals(0,failures.get());
+        long now=System.currentTimeMillis();
+        assertTrue(dc.format(now)==dc.format(now));
+    }
 }
@@ -0,0 +1,120 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+
+public class UrlEncodedDecoderTest
+{
+    private static final String FORM="name=value+%30&empty=&novalue&n%C3%A3me=v%C3%A3lue&a=b=c&name=again";
+
+    /* -------------------------------------------------------------- */
+    @Test
+    public void testChunks() throws Exception
+    {
+        byte[] form=FORM.getBytes(StringUtil.__UTF8);
+        MultiMap expected=decode(form,form.length);
+        assertEquals(5,expected.size());
+        assertEquals("value 0",expected.getValue("name",0));
+        assertEquals("again",expected.getValue("name",1));
+        assertEquals("",expected.getString("empty"));
+        assertEquals("",expected.getString("novalue"));
+        assertEquals("v\u00e3lue",expected.getString("n\u00e3me"));
+        assertEquals("b=c",expected.getString("a"));
+
+        for (int chunk=1;chunk<form.length;chunk++)
+            assertEquals("chunk "+chunk,expected,decode(form,chunk));
+    }
+
+    /* -------------------------------------------------------------- */
+    @Test
+    public void testSameAsStream() throws Exception
+    {
+        String[] charsets = {StringUtil.__UTF8,StringUtil.__ISO_8859_1};
+        for (String charset : charsets)
+        {
+            String form="name\n=value+%30&name1=&name2&n\u00e3me3=value+3&%41%42=%7e";
+            MultiMap map=new MultiMap();
+            UrlEncoded.decodeTo(new ByteArrayInputStream(form.getBytes(charset)),map,charset,-1);
+            assertEquals(charset,5,map.size());
+            assertEquals(charset,"value 0",map.getString("name\n"));
+            assertEquals(charset,"",map.getString("name1"));
+            assertEquals(charset,"",map.getString("name2"));
+            assertEquals(charset,"value 3",map.getString("n\u00e3me3"));
+            assertEquals(charset,"~",map.getString("AB"));
+        }
+    }
+
+    /* -------------------------------------------------------------- */
+    @Test
+    public void testSharedKeys() throws Exception
+    {
+        MultiMap map0=new MultiMap();
+        MultiMap map1=new MultiMap();
+        UrlEncoded.decodeUtf8To("submit=Go".getBytes(),0,9,map0);
+        UrlEncoded.decodeUtf8To("submit=Go".getBytes(),0,9,map1);
+        assertSame(map0.keySet().iterator().next(),map1.keySet().iterator().next());
+    }
+
+    /* -------------------------------------------------------------- */
+    @Test
+    public void testLimits() throws Exception
+    {
+        MultiMap map=new MultiMap();
+        try
+        {
+            UrlEncoded.decodeTo(new ByteArrayInputStream("a=1&b=2&c=3&a=4".getBytes()),map,null,-1,2);
+            fail();
+        }
+        catch(IllegalStateException e)
+        {
+            assertTrue(e.getMessage().contains("keys"));
+        }
+
+        map=new MultiMap();
+        UrlEncoded.decodeTo(new ByteArrayInputStream("a=1&b=2&a=3".getBytes()),map,null,-1,2);
+        assertEquals(2,map.size());
+
+        map=new MultiMap();
+        try
+        {
+            UrlEncoded.decodeTo(new ByteArrayInputStream(new byte[10000]),map,null,9999,-1);
+            fail();
+        }
+        catch(IllegalStateException e)
+        {
+            assertTrue(e.getMessage().contains("large"));
+        }
+        assertFalse(map.size()>0);
+    }
+
+    /* -------------------------------------------------------------- */
+    private MultiMap decode(byte[] form, int chunk)
+    {
+        MultiMap map=new MultiMap();
+        UrlEncodedDecoder decoder=new UrlEncodedDecoder(map,StringUtil.__UTF8,-1,-1);
+        for (int i=0;i<form.length;i+=chunk)
+            decoder.decode(form,i,Math.min(chunk,form.length-i));
+        decoder.finish();
+        return map;
+    }
+}
@@ -16,6 +16,7 @@ package org.eclipse.jetty.util;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class Utf8StringBuilderTest
@@ -102,4 +103,88 @@ public class Utf8StringBuilderTest
         String result = buffer.toString();
         assertEquals(source,result);
     }
+
+    @Test
+    public void testFragmented() throws Exception
+    {
+        String source = "ascii \u00a4\u00e9 \u65e5\u672c\u8a9e \uD842\uDF9F end";
+        byte[] bytes = source.getBytes(StringUtil.__UTF8);
+        for (int split0 = 0; split0 <= bytes.length; split0++)
+        {
+            for (int split1 = split0; split1 <= bytes.length; split1++)
+            {
+                Utf8StringBuilder buffer = new Utf8StringBuilder();
+                buffer.append(bytes,0,split0);
+                buffer.append(bytes,split0,split1 - split0);
+                buffer.append(bytes,split1,bytes.length - split1);
+                assertEquals(split0 + "/" + split1,source,buffer.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testMaxChars() throws Exception
+    {
+        // Surrogate pairs that complete at the limit add two chars
+        String source = "abcdefgh\u00e9\u00e9ij\ud83d\ude00klm\ud83d\ude00\ud83d\ude00nop";
+        byte[] bytes = source.getBytes(StringUtil.__UTF8);
+
+        for (int max = 0; max < source.length() + 2; max++)
+        {
+            // The limit as checked before each byte
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            boolean fits = true;
+            for (byte b : bytes)
+            {
+                if (expected.length() > max)
+                {
+                    fits = false;
+                    break;
+                }
+                expected.append(b);
+            }
+
+            Utf8StringBuilder buffer = new Utf8StringBuilder();
+            assertEquals("max " + max,fits,buffer.append(bytes,0,bytes.length,max));
+            assertEquals("max " + max,expected.getStringBuilder().toString(),buffer.getStringBuilder().toString());
+        }
+
+        Utf8StringBuilder buffer = new Utf8StringBuilder();
+        assertTrue(buffer.append(bytes,0,4,10));
+        assertFalse(buffer.append(bytes,4,bytes.length - 4,10));
+    }
+
+    @Test
+    public void testBulkAppend() throws Exception
+    {
+        String[] units = { "GET /context/path/resource.html?query=value&n=", "Caf\u00e9 na\u00efve r\u00e9sum\u00e9 /path/", "\u65e5\u672c\u8a9e\u306e\u30c6\u30ad\u30b9\u30c8", "\ud83d\ude00 " };
+
+        for (String unit : units)
+        {
+            StringBuilder corpus = new StringBuilder();
+            for (int i = 0; i < 64; i++)
+                corpus.append(unit).append(i);
+            String source = corpus.toString();
+            byte[] bytes = source.getBytes(StringUtil.__UTF8);
+
+            // The bulk append decodes the same chars as the append by byte
+            Utf8StringBuilder buffer = new Utf8StringBuilder(bytes.length);
+            buffer.append(bytes,0,bytes.length);
+            assertEquals(source,buffer.toString());
+
+            buffer.reset();
+            for (byte b : bytes)
+                buffer.append(b);
+            assertEquals(source,buffer.toString());
+
+            // A sequence split between appends is completed by the next
+            for (int split = 1; split < 16; split++)
+            {
+                buffer.reset();
+                buffer.append(bytes,0,split);
+                buffer.append(bytes,split,bytes.length - split);
+                assertEquals(source,buffer.toString());
+            }
+        }
+    }
 }
@@ -0,0 +1,58 @@
+package org.eclipse.jetty.util.statistic;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+/* ------------------------------------------------------------ */
+public class HistogramStatisticTest
+{
+    @Test
+    public void testBuckets()
+        throws Exception
+    {
+        HistogramStatistic stats = new HistogramStatistic(8);
+        long[] samples = {0,1,2,3,4,7,8,100,1000};
+        for (long sample : samples)
+            stats.set(sample);
+
+        assertEquals(samples.length,stats.getCount());
+        assertEquals(1000,stats.getMax());
+        assertEquals(1,stats.getBucketCount(0));
+        assertEquals(1,stats.getBucketCount(1));
+        assertEquals(2,stats.getBucketCount(2));
+        assertEquals(2,stats.getBucketCount(3));
+        assertEquals(1,stats.getBucketCount(4));
+        assertEquals(0,stats.getBucketCount(5));
+        assertEquals(0,stats.getBucketCount(6));
+        assertEquals(2,stats.getBucketCount(7));
+        assertEquals(63,stats.getBucketLimit(6));
+        assertEquals(Long.MAX_VALUE,stats.getBucketLimit(7));
+        assertEquals("<=0:1 <=1:1 <=3:2 <=7:2 <=15:1 >63:2",stats.getHistogram());
+
+        stats.reset();
+        assertEquals(0,stats.getCount());
+        assertEquals(0,stats.getBucketCount(7));
+        assertEquals("",stats.getHistogram());
+    }
+
+    @Test
+    public void testPercentile()
+        throws Exception
+    {
+        HistogramStatistic stats = new HistogramStatistic();
+        assertEquals(0,stats.getPercentile(50));
+
+        for (int i=0;i<90;i++)
+            stats.set(10);
+        for (int i=0;i<9;i++)
+            stats.set(100);
+        stats.set(5000);
+
+        assertEquals(15,stats.getPercentile(50));
+        assertEquals(15,stats.getPercentile(90));
+        assertEquals(127,stats.getPercentile(99));
+        assertEquals(5000,stats.getPercentile(100));
+    }
+}
@@ -0,0 +1,73 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.util.statistic;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SlidingWindowStatisticTest
+{
+    @Test
+    public void testSlide()
+    {
+        SlidingWindowStatistic stat = new SlidingWindowStatistic(1000,10);
+        long now=100000;
+
+        for (int i=0;i<10;i++)
+            stat.add(now+i*100,i+1);
+        assertEquals(55,stat.getSum(now+999));
+
+        // The oldest buckets slide out of the window
+        assertEquals(54,stat.getSum(now+1000));
+        assertEquals(34,stat.getSum(now+1500));
+        assertEquals(0,stat.getSum(now+1999+1000));
+
+        // A reused bucket forgets its old sum
+        stat.add(now+1000,100);
+        assertEquals(154,stat.getSum(now+1000));
+
+        stat.reset();
+        assertEquals(0,stat.getSum(now+1000));
+    }
+
+    @Test
+    public void testSpread()
+    {
+        SlidingWindowStatistic stat = new SlidingWindowStatistic(1000,10);
+        long now=100000;
+
+        // An interval within one bucket
+        stat.add(now+10,now+60,5);
+        assertEquals(5,stat.getSum(now+99));
+
+        // An interval spanning four buckets
+        stat.add(now+150,now+450,300);
+        assertEquals(305,stat.getSum(now+499));
+        assertEquals(300,stat.getSum(now+1099));
+        assertEquals(250,stat.getSum(now+1199));
+        assertEquals(150,stat.getSum(now+1299));
+        assertEquals(0,stat.getSum(now+1499));
+
+        // Only the part of an interval within the window is kept
+        stat.reset();
+        stat.add(now-1000,now+1000,2000);
+        assertEquals(900,stat.getSum(now+1000));
+
+        // A late value for a bucket that has been reused is dropped
+        stat.add(now+1050,7);
+        stat.add(now+50,100);
+        assertEquals(907,stat.getSum(now+1099));
+    }
+}
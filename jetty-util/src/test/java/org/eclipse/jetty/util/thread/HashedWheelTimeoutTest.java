@@ -0,0 +1,118 @@
+// ========================================================================
+// Copyright (c) 2011 Mort Bay Consulting Pty. Ltd.
+// ------------------------------------------------------------------------
+// All rights reserved. This program and the accompanying materials
+// are made available under the terms of the Eclipse Public License v1.0
+// and Apache License v2.0 which accompanies this distribution.
+// The Eclipse Public License is available at
+// http://www.eclipse.org/legal/epl-v10.html
+// The Apache License v2.0 is available at
+// http://www.opensource.org/licenses/apache2.0.php
+// You may elect to redistribute this code under either of these licenses.
+// ========================================================================
+
+package org.eclipse.jetty.util.thread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.jetty.toolchain.test.Stress;
+import org.junit.Test;
+
+public class HashedWheelTimeoutTest extends TimeoutTest
+{
+    /* ------------------------------------------------------------ */
+    @Override
+    protected Timeout newTimeout(Object lock)
+    {
+        return new HashedWheelTimeout(lock,1,64);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Test
+    public void testRevolutions()
+    {
+        Timeout wheel = new HashedWheelTimeout(lock,10,8);
+        wheel.setNow(1000);
+
+        // same bucket, different revolutions
+        Timeout.Task near = new Timeout.Task();
+        Timeout.Task far = new Timeout.Task();
+        wheel.schedule(near,50);
+        wheel.schedule(far,50+80*3);
+
+        wheel.tick(1049);
+        assertFalse(near.isExpired());
+        wheel.tick(1050);
+        assertTrue(near.isExpired());
+        assertFalse(far.isExpired());
+        assertEquals(80,wheel.getTimeToNext());
+
+        wheel.tick(1289);
+        assertFalse(far.isExpired());
+        wheel.tick(1295);
+        assertTrue(far.isExpired());
+        assertTrue(wheel.isEmpty());
+        assertEquals(-1,wheel.getTimeToNext());
+    }
+
+    /* ------------------------------------------------------------ */
+    @Test
+    public void testNeverEarly()
+    {
+        Timeout wheel = new HashedWheelTimeout(lock,10,16);
+        wheel.setDuration(25);
+        wheel.setNow(1003);
+
+        Timeout.Task task = new Timeout.Task();
+        wheel.schedule(task);
+        wheel.tick(1027);
+        assertFalse(task.isExpired());
+        wheel.tick(1028);
+        assertFalse(task.isExpired());
+        wheel.tick(1030);
+        assertTrue(task.isExpired());
+    }
+
+    /* ------------------------------------------------------------ */
+    @Test
+    public void testMany()
+    {
+        final int tasks=Stress.isEnabled()?1000000:100000;
+        Timeout wheel = new HashedWheelTimeout(lock,10,1024);
+        wheel.setDuration(30000);
+        wheel.setNow(1000);
+
+        Timeout.Task[] scheduled = new Timeout.Task[tasks];
+        for (int i=0;i<tasks;i++)
+        {
+            scheduled[i]=new Timeout.Task();
+            wheel.schedule(scheduled[i],i%1000);
+        }
+
+        // touch and cancel most of them, as idle timeouts are
+        for (int i=0;i<tasks;i++)
+        {
+            if (i%10==0)
+                scheduled[i].reschedule();
+            else
+                scheduled[i].cancel();
+        }
+
+        int expired=0;
+        for (long now=1000;now<=33000;now+=100)
+        {
+            wheel.setNow(now);
+            Timeout.Task task=wheel.expired();
+            while (task!=null)
+            {
+                assertTrue(task.getTimestamp()+30000<=now);
+                expired++;
+                task=wheel.expired();
+            }
+        }
+        assertEquals(tasks/10,expired);
+        assertTrue(wheel.isEmpty());
+    }
+}
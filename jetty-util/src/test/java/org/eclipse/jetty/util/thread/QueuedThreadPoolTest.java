@@ -208,6 +208,72 @@ public class QueuedThreadPoolTest
         assertTrue(afterStop - beforeStop < 1000);
     }
 
+    @Test
+    public void testStatistics() throws Exception
+    {
+        QueuedThreadPool tp= new QueuedThreadPool();
+        tp.setMinThreads(1);
+        tp.setMaxThreads(1);
+        tp.setMaxQueued(2);
+        tp.setStatsOn(true);
+        tp.start();
+        waitForIdle(tp,1);
+
+        RunningJob blocker=new RunningJob();
+        RunningJob job0=new RunningJob();
+        RunningJob job1=new RunningJob();
+        assertTrue(tp.dispatch(blocker));
+        blocker._run.await(10,TimeUnit.SECONDS);
+        assertTrue(tp.dispatch(job0));
+        assertTrue(tp.dispatch(job1));
+        Assert.assertFalse(tp.dispatch(new RunningJob()));
+        Assert.assertEquals(1,tp.getJobsRejected());
+        Assert.assertEquals(2,tp.getQueueSizeMax());
+
+        Thread.sleep(200);
+        job0._stopping.countDown();
+        job1._stopping.countDown();
+        blocker.stop();
+        job0.stop();
+        job1.stop();
+
+        Assert.assertEquals(3,tp.getQueueWaitTime().getCount());
+        assertTrue(tp.getQueueWaitTimeMax()>=150000);
+        assertTrue(tp.getBusyTimeMs()>=150);
+        assertTrue(tp.getUtilization()>0.0 && tp.getUtilization()<=1.0);
+        assertTrue(tp.dump().contains("queueWait(us) count=3"));
+
+        tp.statsReset();
+        Assert.assertEquals(0,tp.getJobsRejected());
+        Assert.assertEquals(0,tp.getQueueWaitTime().getCount());
+        tp.setStatsOn(false);
+        assertTrue(tp.dispatch(new Runnable(){public void run(){}}));
+        Assert.assertFalse(tp.dump().contains("queueWait"));
+        tp.stop();
+    }
+
+    @Test
+    public void testBusyTimeOfRunningJob() throws Exception
+    {
+        QueuedThreadPool tp= new QueuedThreadPool();
+        tp.setMinThreads(2);
+        tp.setMaxThreads(2);
+        tp.setStatsOn(true);
+        tp.start();
+        waitForIdle(tp,2);
+
+        // A job that has not completed is counted as it runs
+        RunningJob blocker=new RunningJob();
+        assertTrue(tp.dispatch(blocker));
+        blocker._run.await(10,TimeUnit.SECONDS);
+        Thread.sleep(500);
+        long busy=tp.getBusyTimeMs();
+        assertTrue(busy>=400 && busy<1000);
+        assertTrue(tp.getUtilization()>0.2);
+
+        blocker.stop();
+        tp.stop();
+    }
 
     private void waitForIdle(QueuedThreadPool tp, int idle)
     {
@@ -28,6 +28,12 @@ public class TimeoutTest
     Timeout timeout = new Timeout(null);
     Timeout.Task[] tasks;
 
+    /* ------------------------------------------------------------ */
+    protected Timeout newTimeout(Object lock)
+    {
+        return new Timeout(lock);
+    }
+
     /* ------------------------------------------------------------ */
     /* 
      * @see junit.framework.TestCase#setUp()
@@ -35,7 +41,7 @@ public class TimeoutTest
     @Before
     public void setUp() throws Exception
     {
-        timeout=new Timeout(lock);
+        timeout=newTimeout(lock);
         tasks= new Timeout.Task[10]; 
         
         for (int i=0;i<tasks.length;i++)